@@ -0,0 +1,56 @@
+package com.art.store.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread-safe map that holds at most {@code maxEntries} entries, evicting the least
+ * recently used one when full
+ */
+public class BoundedLruCache<K, V> {
+
+    private final int maxEntries;
+    private final LinkedHashMap<K, V> entries;
+
+    public BoundedLruCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > BoundedLruCache.this.maxEntries;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        return entries.get(key);
+    }
+
+    public synchronized boolean containsKey(K key) {
+        // get() rather than containsKey() so a hit refreshes the entry's recency
+        return entries.get(key) != null;
+    }
+
+    public synchronized void put(K key, V value) {
+        entries.put(key, value);
+    }
+
+    public synchronized V remove(K key) {
+        return entries.remove(key);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+}
@@ -0,0 +1,57 @@
+package com.art.store.catalog;
+
+import com.art.store.dto.KeysetCursor;
+import com.art.store.dto.ProductDto;
+
+import java.util.List;
+
+/**
+ * One page of a catalog listing plus the cursor for the next page, if any.
+ */
+public final class CatalogPage {
+
+    private final List<ProductDto> products;
+    private final KeysetCursor nextCursor;
+
+    CatalogPage(List<ProductDto> products, KeysetCursor nextCursor) {
+        this.products = products;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Seek past the cursor in a listing sorted by (createdAt DESC, id DESC) and take up to limit rows
+     */
+    static CatalogPage of(List<ProductDto> sorted, KeysetCursor after, int limit) {
+        int from = 0;
+        if (after != null) {
+            int low = 0;
+            int high = sorted.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                ProductDto candidate = sorted.get(mid);
+                if (after.isFollowedBy(candidate.getCreatedAt(), candidate.getId())) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            from = low;
+        }
+        int to = Math.min(from + limit, sorted.size());
+        List<ProductDto> products = sorted.subList(from, to);
+        KeysetCursor next = null;
+        if (to < sorted.size() && !products.isEmpty()) {
+            ProductDto last = products.get(products.size() - 1);
+            next = new KeysetCursor(last.getCreatedAt(), last.getId());
+        }
+        return new CatalogPage(products, next);
+    }
+
+    public List<ProductDto> getProducts() {
+        return products;
+    }
+
+    public KeysetCursor getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,155 @@
+package com.art.store.catalog;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialized (plain and gzipped) catalog responses for the current snapshot version.
+ * Entries are computed once per version and dropped as soon as a newer snapshot is published.
+ */
+@Component
+public class CatalogResponseCache {
+
+    private final ProductCatalog productCatalog;
+    private final ObjectMapper objectMapper;
+    private final AtomicReference<VersionedResponses> current = new AtomicReference<>(new VersionedResponses(0));
+
+    @Autowired
+    public CatalogResponseCache(ProductCatalog productCatalog, ObjectMapper objectMapper) {
+        this.productCatalog = productCatalog;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Return the cached response for the key, rendering it from the current snapshot on first use
+     */
+    public CachedResponse get(String key, Supplier<?> body) {
+        VersionedResponses responses = responsesFor(productCatalog.snapshot().getVersion());
+        if (responses == null) {
+            // A newer snapshot was already published; render without caching
+            return render(body.get());
+        }
+        return responses.entries.computeIfAbsent(key, k -> render(body.get()));
+    }
+
+    private VersionedResponses responsesFor(long version) {
+        while (true) {
+            VersionedResponses responses = current.get();
+            if (responses.version == version) {
+                return responses;
+            }
+            if (responses.version > version) {
+                return null;
+            }
+            VersionedResponses next = new VersionedResponses(version);
+            if (current.compareAndSet(responses, next)) {
+                return next;
+            }
+        }
+    }
+
+    private CachedResponse render(Object body) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(body);
+            return new CachedResponse(json, gzip(json), digest(json));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize catalog response", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String digest(byte[] data) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(data);
+            return HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class VersionedResponses {
+        private final long version;
+        private final Map<String, CachedResponse> entries = new ConcurrentHashMap<>();
+
+        private VersionedResponses(long version) {
+            this.version = version;
+        }
+    }
+
+    public static final class CachedResponse {
+
+        private final byte[] json;
+        private final byte[] gzippedJson;
+        private final String etag;
+        private final String gzipEtag;
+
+        CachedResponse(byte[] json, byte[] gzippedJson, String digest) {
+            this.json = json;
+            this.gzippedJson = gzippedJson;
+            // Strong validators differ per representation, since the bytes differ
+            this.etag = "\"" + digest + "\"";
+            this.gzipEtag = "\"" + digest + "-gzip\"";
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        public byte[] getGzippedJson() {
+            return gzippedJson;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getGzipEtag() {
+            return gzipEtag;
+        }
+
+        /**
+         * Check an If-None-Match header against either representation of this response
+         */
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null || ifNoneMatch.isEmpty()) {
+                return false;
+            }
+            if (ifNoneMatch.trim().equals("*")) {
+                return true;
+            }
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals(etag) || tag.equals(gzipEtag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.art.store.catalog;
+
+import com.art.store.dto.KeysetCursor;
+import com.art.store.dto.ProductDto;
+import com.art.store.entity.Product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Immutable view of the active catalog at a given version.
+ * Instances are shared between request threads and must never be mutated.
+ */
+public final class CatalogSnapshot {
+
+    private final long version;
+    private final List<ProductDto> activeProducts;
+    private final List<ProductDto> availableProducts;
+    private final Map<Long, ProductDto> productsById;
+    private final Map<String, List<ProductDto>> productsByCategory;
+    private final List<String> categories;
+    private final ProductSearchIndex searchIndex;
+    private final SuggestionTrie suggestions;
+    private final FacetIndex facets;
+
+    private CatalogSnapshot(long version,
+                            List<ProductDto> activeProducts,
+                            List<ProductDto> availableProducts,
+                            Map<Long, ProductDto> productsById,
+                            Map<String, List<ProductDto>> productsByCategory,
+                            List<String> categories,
+                            ProductSearchIndex searchIndex,
+                            SuggestionTrie suggestions,
+                            FacetIndex facets) {
+        this.version = version;
+        this.activeProducts = activeProducts;
+        this.availableProducts = availableProducts;
+        this.productsById = productsById;
+        this.productsByCategory = productsByCategory;
+        this.categories = categories;
+        this.searchIndex = searchIndex;
+        this.suggestions = suggestions;
+        this.facets = facets;
+    }
+
+    /**
+     * Build a snapshot from active products ordered by (createdAt DESC, id DESC).
+     * Units sold per product rank typeahead suggestions; branches of the previous trie no changed entry touches are reused.
+     */
+    public static CatalogSnapshot build(long version, List<Product> products, Map<Long, Long> unitsSold,
+                                        SuggestionTrie previousSuggestions, int maxSuggestions,
+                                        BigDecimal[] priceBucketBounds) {
+        List<ProductDto> active = new ArrayList<>(products.size());
+        List<ProductDto> available = new ArrayList<>();
+        Map<Long, ProductDto> byId = new HashMap<>();
+        Map<String, List<ProductDto>> byCategory = new LinkedHashMap<>();
+        TreeSet<String> categoryNames = new TreeSet<>();
+        Map<String, Long> suggestionEntries = new HashMap<>();
+
+        for (Product product : products) {
+            ProductDto dto = new FrozenProductDto(product);
+            active.add(dto);
+            byId.put(dto.getId(), dto);
+            if (dto.getStockQuantity() != null && dto.getStockQuantity() > 0) {
+                available.add(dto);
+            }
+            long popularity = unitsSold.getOrDefault(dto.getId(), 0L);
+            if (dto.getName() != null) {
+                suggestionEntries.merge(dto.getName(), popularity, Long::sum);
+            }
+            if (dto.getCategory() != null) {
+                suggestionEntries.merge(dto.getCategory(), popularity, Long::sum);
+                categoryNames.add(dto.getCategory());
+                byCategory.computeIfAbsent(categoryKey(dto.getCategory()), key -> new ArrayList<>()).add(dto);
+            }
+        }
+
+        Map<String, List<ProductDto>> frozenByCategory = new HashMap<>();
+        byCategory.forEach((key, list) -> frozenByCategory.put(key, Collections.unmodifiableList(list)));
+
+        List<ProductDto> frozenActive = Collections.unmodifiableList(active);
+        return new CatalogSnapshot(
+            version,
+            frozenActive,
+            Collections.unmodifiableList(available),
+            Collections.unmodifiableMap(byId),
+            Collections.unmodifiableMap(frozenByCategory),
+            List.copyOf(categoryNames),
+            ProductSearchIndex.build(frozenActive),
+            previousSuggestions != null
+                ? previousSuggestions.rebuild(suggestionEntries, maxSuggestions)
+                : SuggestionTrie.build(suggestionEntries, maxSuggestions),
+            FacetIndex.build(frozenActive, priceBucketBounds)
+        );
+    }
+
+    static String categoryKey(String category) {
+        return category.toLowerCase(Locale.ROOT);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<ProductDto> getActiveProducts() {
+        return activeProducts;
+    }
+
+    public List<ProductDto> getAvailableProducts() {
+        return availableProducts;
+    }
+
+    public ProductDto getProduct(Long id) {
+        return id != null ? productsById.get(id) : null;
+    }
+
+    public List<ProductDto> getProductsByCategory(String category) {
+        if (category == null) {
+            return List.of();
+        }
+        return productsByCategory.getOrDefault(categoryKey(category), List.of());
+    }
+
+    public boolean hasCategory(String category) {
+        return category != null && productsByCategory.containsKey(categoryKey(category));
+    }
+
+    public List<String> getCategories() {
+        return categories;
+    }
+
+    public CatalogPage pageOfActiveProducts(KeysetCursor after, int limit) {
+        return CatalogPage.of(activeProducts, after, limit);
+    }
+
+    public CatalogPage pageOfAvailableProducts(KeysetCursor after, int limit) {
+        return CatalogPage.of(availableProducts, after, limit);
+    }
+
+    public CatalogPage pageOfCategory(String category, KeysetCursor after, int limit) {
+        return CatalogPage.of(getProductsByCategory(category), after, limit);
+    }
+
+    public ProductSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    public SuggestionTrie getSuggestions() {
+        return suggestions;
+    }
+
+    public FacetIndex getFacets() {
+        return facets;
+    }
+}
@@ -0,0 +1,181 @@
+package com.art.store.catalog;
+
+import com.art.store.dto.ProductBrowseDto;
+import com.art.store.dto.ProductDto;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * Per-facet bitsets over the active catalog. Bit positions are indexes into the
+ * snapshot's newest-first product list, so filters and facet counts are plain
+ * bitset intersections.
+ */
+public final class FacetIndex {
+
+    public enum Sort {
+        NEWEST,
+        PRICE_ASC,
+        PRICE_DESC,
+        NAME
+    }
+
+    private final List<ProductDto> documents;
+    private final Map<String, BitSet> categoryBits;
+    private final Map<String, String> categoryNames;
+    private final BigDecimal[] bucketBounds;
+    private final BitSet[] bucketBits;
+    private final BitSet inStock;
+    private final BitSet all;
+    private final int[] byPrice;
+    private final int[] byName;
+
+    private FacetIndex(List<ProductDto> documents, Map<String, BitSet> categoryBits, Map<String, String> categoryNames,
+                       BigDecimal[] bucketBounds, BitSet[] bucketBits, BitSet inStock, int[] byPrice, int[] byName) {
+        this.documents = documents;
+        this.categoryBits = categoryBits;
+        this.categoryNames = categoryNames;
+        this.bucketBounds = bucketBounds;
+        this.bucketBits = bucketBits;
+        this.inStock = inStock;
+        this.all = new BitSet(documents.size());
+        this.all.set(0, documents.size());
+        this.byPrice = byPrice;
+        this.byName = byName;
+    }
+
+    /**
+     * Index the given documents; bucket bounds split prices into [0, b0), [b0, b1), ... [bn, +inf)
+     */
+    public static FacetIndex build(List<ProductDto> documents, BigDecimal[] bucketBounds) {
+        BigDecimal[] bounds = bucketBounds.clone();
+        Arrays.sort(bounds);
+        Map<String, BitSet> categoryBits = new TreeMap<>();
+        Map<String, String> categoryNames = new TreeMap<>();
+        BitSet[] bucketBits = new BitSet[bounds.length + 1];
+        for (int i = 0; i < bucketBits.length; i++) {
+            bucketBits[i] = new BitSet(documents.size());
+        }
+        BitSet inStock = new BitSet(documents.size());
+
+        for (int doc = 0; doc < documents.size(); doc++) {
+            ProductDto product = documents.get(doc);
+            if (product.getCategory() != null) {
+                String key = CatalogSnapshot.categoryKey(product.getCategory());
+                categoryBits.computeIfAbsent(key, k -> new BitSet(documents.size())).set(doc);
+                categoryNames.putIfAbsent(key, product.getCategory());
+            }
+            if (product.getPrice() != null) {
+                bucketBits[bucketOf(bounds, product.getPrice())].set(doc);
+            }
+            if (product.getStockQuantity() != null && product.getStockQuantity() > 0) {
+                inStock.set(doc);
+            }
+        }
+
+        int[] byPrice = IntStream.range(0, documents.size()).boxed()
+                .sorted(Comparator.comparing((Integer doc) -> documents.get(doc).getPrice(),
+                        Comparator.nullsLast(Comparator.naturalOrder())))
+                .mapToInt(Integer::intValue).toArray();
+        int[] byName = IntStream.range(0, documents.size()).boxed()
+                .sorted(Comparator.comparing((Integer doc) -> documents.get(doc).getName(),
+                        Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER)))
+                .mapToInt(Integer::intValue).toArray();
+
+        return new FacetIndex(documents, categoryBits, categoryNames, bounds, bucketBits, inStock, byPrice, byName);
+    }
+
+    private static int bucketOf(BigDecimal[] bounds, BigDecimal price) {
+        int bucket = 0;
+        while (bucket < bounds.length && price.compareTo(bounds[bucket]) >= 0) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    /**
+     * Apply the filters and compute facet counts. Each facet is counted with every
+     * filter except its own, so shoppers can see what widening a filter would return.
+     */
+    public ProductBrowseDto browse(String category, BigDecimal minPrice, BigDecimal maxPrice, boolean availableOnly,
+                                   Sort sort, int offset, int limit) {
+        BitSet categoryFilter = all;
+        if (category != null && !category.isBlank()) {
+            categoryFilter = categoryBits.getOrDefault(CatalogSnapshot.categoryKey(category.trim()), new BitSet());
+        }
+        BitSet priceFilter = (minPrice != null || maxPrice != null) ? priceRange(minPrice, maxPrice) : all;
+        BitSet stockFilter = availableOnly ? inStock : all;
+
+        BitSet matches = intersect(categoryFilter, priceFilter, stockFilter);
+
+        Map<String, Integer> categoryCounts = new LinkedHashMap<>();
+        BitSet priceAndStock = intersect(priceFilter, stockFilter, all);
+        categoryBits.forEach((key, bits) ->
+            categoryCounts.put(categoryNames.get(key), intersect(bits, priceAndStock, all).cardinality()));
+
+        List<ProductBrowseDto.PriceRangeCount> priceCounts = new ArrayList<>(bucketBits.length);
+        BitSet categoryAndStock = intersect(categoryFilter, stockFilter, all);
+        for (int bucket = 0; bucket < bucketBits.length; bucket++) {
+            BigDecimal from = bucket == 0 ? BigDecimal.ZERO : bucketBounds[bucket - 1];
+            BigDecimal to = bucket < bucketBounds.length ? bucketBounds[bucket] : null;
+            priceCounts.add(new ProductBrowseDto.PriceRangeCount(from, to,
+                    intersect(bucketBits[bucket], categoryAndStock, all).cardinality()));
+        }
+
+        int availableCount = intersect(inStock, categoryFilter, priceFilter).cardinality();
+
+        return new ProductBrowseDto(collect(matches, sort, offset, limit), matches.cardinality(),
+                categoryCounts, priceCounts, availableCount);
+    }
+
+    private BitSet priceRange(BigDecimal minPrice, BigDecimal maxPrice) {
+        BitSet bits = new BitSet(documents.size());
+        for (int doc : byPrice) {
+            BigDecimal price = documents.get(doc).getPrice();
+            if (price == null || (maxPrice != null && price.compareTo(maxPrice) > 0)) {
+                break;
+            }
+            if (minPrice == null || price.compareTo(minPrice) >= 0) {
+                bits.set(doc);
+            }
+        }
+        return bits;
+    }
+
+    private List<ProductDto> collect(BitSet matches, Sort sort, int offset, int limit) {
+        List<ProductDto> page = new ArrayList<>(Math.min(limit, matches.cardinality()));
+        int skipped = 0;
+        int count = documents.size();
+        for (int i = 0; i < count && page.size() < limit; i++) {
+            int doc = switch (sort) {
+                case NEWEST -> i;
+                case PRICE_ASC -> byPrice[i];
+                case PRICE_DESC -> byPrice[count - 1 - i];
+                case NAME -> byName[i];
+            };
+            if (matches.get(doc)) {
+                if (skipped < offset) {
+                    skipped++;
+                } else {
+                    page.add(documents.get(doc));
+                }
+            }
+        }
+        return page;
+    }
+
+    private static BitSet intersect(BitSet first, BitSet second, BitSet third) {
+        BitSet result = (BitSet) first.clone();
+        result.and(second);
+        result.and(third);
+        return result;
+    }
+}
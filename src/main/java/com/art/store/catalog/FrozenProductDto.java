@@ -0,0 +1,72 @@
+package com.art.store.catalog;
+
+import com.art.store.dto.ProductDto;
+import com.art.store.entity.Product;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * The product copy a {@link CatalogSnapshot} hands out. Snapshots are shared by every request
+ * thread, so the setters throw instead of changing what other readers see.
+ */
+final class FrozenProductDto extends ProductDto {
+
+    FrozenProductDto(Product product) {
+        super(product);
+    }
+
+    @Override
+    public void setId(Long id) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setName(String name) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setPrice(BigDecimal price) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setImage(String image) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setCategory(String category) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setDescription(String description) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setStockQuantity(Integer stockQuantity) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setActive(Boolean active) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setCreatedAt(LocalDateTime createdAt) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        throw readOnly();
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Catalog snapshot products are read-only");
+    }
+}
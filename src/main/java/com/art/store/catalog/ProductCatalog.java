@@ -0,0 +1,150 @@
+package com.art.store.catalog;
+
+import com.art.store.entity.Product;
+import com.art.store.repository.OrderItemRepository;
+import com.art.store.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the current {@link CatalogSnapshot} and swaps in a new one after committed
+ * product writes, coalescing rebuilds when commits overlap. Reads never touch the database. Units sold, which only
+ * rank suggestions, are aggregated on a schedule rather than on each rebuild.
+ */
+@Component
+public class ProductCatalog {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductCatalog.class);
+
+    private final ProductRepository productRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final TransactionTemplate loadTransaction;
+    private final AtomicLong versions = new AtomicLong();
+    // Set while a rebuild is waiting to start; commits that find it set are covered by that rebuild
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+
+    @Value("${app.catalog.suggest.max-results:10}")
+    private int maxSuggestions;
+
+    @Value("${app.catalog.facets.price-buckets:50,100,200,500}")
+    private BigDecimal[] priceBucketBounds;
+
+    private volatile CatalogSnapshot snapshot;
+    private volatile Map<Long, Long> unitsSold = Map.of();
+
+    @Autowired
+    public ProductCatalog(ProductRepository productRepository,
+                          OrderItemRepository orderItemRepository,
+                          PlatformTransactionManager transactionManager) {
+        this.productRepository = productRepository;
+        this.orderItemRepository = orderItemRepository;
+        this.loadTransaction = new TransactionTemplate(transactionManager);
+        // Rebuilds run from afterCompletion callbacks, so they need their own transaction
+        this.loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.loadTransaction.setReadOnly(true);
+    }
+
+    public CatalogSnapshot snapshot() {
+        CatalogSnapshot current = snapshot;
+        return current != null ? current : refresh();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        refreshPopularity();
+    }
+
+    /**
+     * Re-aggregate units sold from paid orders and publish a new snapshot when they changed.
+     * Sales move suggestion ranking slowly, so a few minutes' lag is fine
+     */
+    @Scheduled(initialDelayString = "${app.catalog.popularity.refresh-ms:300000}",
+               fixedDelayString = "${app.catalog.popularity.refresh-ms:300000}")
+    public void refreshPopularity() {
+        Map<Long, Long> latest = loadTransaction.execute(status -> {
+            Map<Long, Long> sold = new HashMap<>();
+            for (Object[] row : orderItemRepository.sumQuantitySoldByProduct()) {
+                sold.put((Long) row[0], ((Number) row[1]).longValue());
+            }
+            return sold;
+        });
+        boolean changed = !latest.equals(unitsSold);
+        unitsSold = Map.copyOf(latest);
+        if (changed || snapshot == null) {
+            refresh();
+        }
+    }
+
+    /**
+     * Reload the active products and publish them as the next version, ranked by the last
+     * aggregated units sold
+     */
+    public synchronized CatalogSnapshot refresh() {
+        List<Product> products = loadTransaction.execute(status ->
+            productRepository.findByActiveTrueOrderByCreatedAtDescIdDesc());
+        CatalogSnapshot previous = snapshot;
+        CatalogSnapshot next = CatalogSnapshot.build(versions.incrementAndGet(), products, unitsSold,
+                previous != null ? previous.getSuggestions() : null, maxSuggestions, priceBucketBounds);
+        snapshot = next;
+        logger.debug("Catalog snapshot v{} published with {} products", next.getVersion(), next.getActiveProducts().size());
+        return next;
+    }
+
+    /**
+     * Schedule a rebuild once the surrounding transaction commits.
+     * Multiple calls within one transaction result in a single rebuild, and commits that
+     * land while a rebuild is already waiting share it.
+     */
+    public void markChanged() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refreshCoalesced();
+            return;
+        }
+        if (TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(ProductCatalog.this);
+                if (status == STATUS_COMMITTED) {
+                    refreshCoalesced();
+                }
+            }
+        });
+    }
+
+    /**
+     * At most one rebuild runs and one waits. The waiting one clears the flag before it
+     * loads, so it sees every commit that found the flag set; under a burst of checkouts
+     * the catalog is rebuilt about once per rebuild time instead of once per commit.
+     */
+    private void refreshCoalesced() {
+        if (!rebuildPending.compareAndSet(false, true)) {
+            return;
+        }
+        synchronized (this) {
+            rebuildPending.set(false);
+            refresh();
+        }
+    }
+}
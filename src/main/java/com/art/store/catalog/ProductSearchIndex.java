@@ -0,0 +1,184 @@
+package com.art.store.catalog;
+
+import com.art.store.dto.ProductDto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable inverted index over product name, category and description.
+ * Built alongside each {@link CatalogSnapshot}, so it is always in sync with the served catalog.
+ */
+public final class ProductSearchIndex {
+
+    private static final int NAME_WEIGHT = 5;
+    private static final int CATEGORY_WEIGHT = 3;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    // Whole-token matches rank above prefix-only matches
+    private static final int EXACT_BOOST = 2;
+    private static final int PREFIX_BOOST = 1;
+
+    private final List<ProductDto> documents;
+    private final String[] terms;
+    private final int[][] postings;
+    private final int[][] weights;
+
+    private ProductSearchIndex(List<ProductDto> documents, String[] terms, int[][] postings, int[][] weights) {
+        this.documents = documents;
+        this.terms = terms;
+        this.postings = postings;
+        this.weights = weights;
+    }
+
+    /**
+     * Index the given documents; their order is the tie-breaker for equally relevant results
+     */
+    public static ProductSearchIndex build(List<ProductDto> documents) {
+        Map<String, Map<Integer, Integer>> termDocs = new HashMap<>();
+        for (int doc = 0; doc < documents.size(); doc++) {
+            ProductDto product = documents.get(doc);
+            addField(termDocs, doc, product.getName(), NAME_WEIGHT);
+            addField(termDocs, doc, product.getCategory(), CATEGORY_WEIGHT);
+            addField(termDocs, doc, product.getDescription(), DESCRIPTION_WEIGHT);
+        }
+
+        String[] terms = termDocs.keySet().toArray(new String[0]);
+        Arrays.sort(terms);
+        int[][] postings = new int[terms.length][];
+        int[][] weights = new int[terms.length][];
+        for (int i = 0; i < terms.length; i++) {
+            Map<Integer, Integer> docs = termDocs.get(terms[i]);
+            int[] docIds = docs.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            int[] docWeights = new int[docIds.length];
+            for (int j = 0; j < docIds.length; j++) {
+                docWeights[j] = docs.get(docIds[j]);
+            }
+            postings[i] = docIds;
+            weights[i] = docWeights;
+        }
+        return new ProductSearchIndex(documents, terms, postings, weights);
+    }
+
+    private static void addField(Map<String, Map<Integer, Integer>> termDocs, int doc, String text, int weight) {
+        for (String token : tokenize(text)) {
+            termDocs.computeIfAbsent(token, key -> new HashMap<>()).merge(doc, weight, Math::max);
+        }
+    }
+
+    /**
+     * Lower-case the text and split it on anything that is not a letter or digit
+     */
+    static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Find products matching every query token, either as a whole word or as a word prefix,
+     * ordered by relevance
+     */
+    public SearchResult search(String query, int offset, int limit) {
+        Set<String> tokens = tokenize(query);
+        if (tokens.isEmpty()) {
+            return new SearchResult(page(documents, offset, limit), documents.size());
+        }
+
+        int docCount = documents.size();
+        int[] scores = new int[docCount];
+        int[] matchedTokens = new int[docCount];
+        int[] tokenScores = new int[docCount];
+
+        for (String token : tokens) {
+            Arrays.fill(tokenScores, 0);
+            int from = lowerBound(token);
+            for (int t = from; t < terms.length && terms[t].startsWith(token); t++) {
+                int boost = terms[t].length() == token.length() ? EXACT_BOOST : PREFIX_BOOST;
+                int[] docs = postings[t];
+                int[] docWeights = weights[t];
+                for (int i = 0; i < docs.length; i++) {
+                    tokenScores[docs[i]] = Math.max(tokenScores[docs[i]], docWeights[i] * boost);
+                }
+            }
+            for (int doc = 0; doc < docCount; doc++) {
+                if (tokenScores[doc] > 0) {
+                    scores[doc] += tokenScores[doc];
+                    matchedTokens[doc]++;
+                }
+            }
+        }
+
+        List<Integer> hits = new ArrayList<>();
+        for (int doc = 0; doc < docCount; doc++) {
+            if (matchedTokens[doc] == tokens.size()) {
+                hits.add(doc);
+            }
+        }
+        hits.sort((a, b) -> scores[a] != scores[b] ? Integer.compare(scores[b], scores[a]) : Integer.compare(a, b));
+
+        List<ProductDto> ranked = new ArrayList<>(hits.size());
+        for (int doc : hits) {
+            ranked.add(documents.get(doc));
+        }
+        return new SearchResult(page(ranked, offset, limit), ranked.size());
+    }
+
+    private int lowerBound(String token) {
+        int low = 0;
+        int high = terms.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (terms[mid].compareTo(token) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static List<ProductDto> page(List<ProductDto> results, int offset, int limit) {
+        int from = Math.min(Math.max(offset, 0), results.size());
+        int to = Math.min(from + Math.max(limit, 0), results.size());
+        return List.copyOf(results.subList(from, to));
+    }
+
+    public static final class SearchResult {
+
+        private final List<ProductDto> products;
+        private final int total;
+
+        SearchResult(List<ProductDto> products, int total) {
+            this.products = products;
+            this.total = total;
+        }
+
+        public List<ProductDto> getProducts() {
+            return products;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+    }
+}
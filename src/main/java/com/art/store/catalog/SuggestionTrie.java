@@ -0,0 +1,233 @@
+package com.art.store.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Immutable radix trie over product names and categories. Every node stores its
+ * top completions by popularity, so a lookup is a walk down the prefix and returns
+ * a precomputed list.
+ */
+public final class SuggestionTrie {
+
+    private static final SuggestionTrie EMPTY = new SuggestionTrie(Map.of(), 0, new Node(new char[0], new String[0], new Node[0], List.of()));
+
+    private final Map<String, Long> entries;
+    private final int maxResults;
+    private final Node root;
+
+    private SuggestionTrie(Map<String, Long> entries, int maxResults, Node root) {
+        this.entries = entries;
+        this.maxResults = maxResults;
+        this.root = root;
+    }
+
+    /**
+     * Build a trie from completions and their popularity. Each completion can be reached
+     * from the start of any of its words, so "tee" suggests "ESSENTIAL TEE".
+     */
+    public static SuggestionTrie build(Map<String, Long> entries, int maxResults) {
+        if (entries.isEmpty() || maxResults <= 0) {
+            return EMPTY;
+        }
+        BuildNode root = new BuildNode();
+        for (String completion : entries.keySet()) {
+            insertWordStarts(root, completion, null);
+        }
+        return new SuggestionTrie(Map.copyOf(entries), maxResults, root.freeze(byPopularity(entries), maxResults));
+    }
+
+    /**
+     * The trie for the next entries, sharing every branch of this one that they leave alone.
+     * The root's branches are keyed by the first character of a word; only branches holding a
+     * completion that was added, removed or reweighted are rebuilt, the rest are reused as is.
+     */
+    public SuggestionTrie rebuild(Map<String, Long> nextEntries, int nextMaxResults) {
+        if (nextMaxResults != maxResults || nextEntries.isEmpty() || this == EMPTY) {
+            return build(nextEntries, nextMaxResults);
+        }
+        Set<Character> changedBranches = new HashSet<>();
+        for (Map.Entry<String, Long> entry : nextEntries.entrySet()) {
+            if (!entry.getValue().equals(entries.get(entry.getKey()))) {
+                addWordStarts(entry.getKey(), changedBranches);
+            }
+        }
+        for (String completion : entries.keySet()) {
+            if (!nextEntries.containsKey(completion)) {
+                addWordStarts(completion, changedBranches);
+            }
+        }
+        if (changedBranches.isEmpty()) {
+            return this;
+        }
+
+        BuildNode changed = new BuildNode();
+        for (String completion : nextEntries.keySet()) {
+            insertWordStarts(changed, completion, changedBranches);
+        }
+        Comparator<String> byPopularity = byPopularity(nextEntries);
+        TreeMap<Character, Edge> edges = new TreeMap<>();
+        for (int i = 0; i < root.firstChars.length; i++) {
+            if (!changedBranches.contains(root.firstChars[i])) {
+                edges.put(root.firstChars[i], new Edge(root.labels[i], root.children[i]));
+            }
+        }
+        for (Map.Entry<Character, BuildNode> branch : changed.children.entrySet()) {
+            edges.put(branch.getKey(), BuildNode.freezeEdge(branch.getKey(), branch.getValue(), byPopularity, maxResults));
+        }
+        return new SuggestionTrie(Map.copyOf(nextEntries), maxResults, Node.of(edges, Set.of(), byPopularity, maxResults));
+    }
+
+    public List<String> suggest(CharSequence prefix) {
+        if (prefix == null || prefix.length() == 0) {
+            return List.of();
+        }
+        // Folded exactly as the keys were, so case mappings that change length still line up
+        String key = prefix.toString().toLowerCase(Locale.ROOT);
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            int edge = Arrays.binarySearch(node.firstChars, key.charAt(i));
+            if (edge < 0) {
+                return List.of();
+            }
+            String label = node.labels[edge];
+            for (int j = 0; j < label.length() && i < key.length(); j++, i++) {
+                if (label.charAt(j) != key.charAt(i)) {
+                    return List.of();
+                }
+            }
+            node = node.children[edge];
+        }
+        return node.top;
+    }
+
+    private static Comparator<String> byPopularity(Map<String, Long> entries) {
+        return Comparator.<String>comparingLong(entries::get).reversed()
+                .thenComparing(Comparator.naturalOrder());
+    }
+
+    /**
+     * Insert the completion under the start of each of its words, or only under those whose
+     * first character is in {@code branches} when that is given
+     */
+    private static void insertWordStarts(BuildNode root, String completion, Set<Character> branches) {
+        String key = completion.toLowerCase(Locale.ROOT);
+        for (int start = 0; start < key.length(); start++) {
+            if (isWordStart(key, start) && (branches == null || branches.contains(key.charAt(start)))) {
+                root.insert(key, start, completion);
+            }
+        }
+    }
+
+    private static void addWordStarts(String completion, Set<Character> branches) {
+        String key = completion.toLowerCase(Locale.ROOT);
+        for (int start = 0; start < key.length(); start++) {
+            if (isWordStart(key, start)) {
+                branches.add(key.charAt(start));
+            }
+        }
+    }
+
+    private static boolean isWordStart(String key, int start) {
+        boolean afterSeparator = start == 0 || !Character.isLetterOrDigit(key.charAt(start - 1));
+        return afterSeparator && Character.isLetterOrDigit(key.charAt(start));
+    }
+
+    private static final class Edge {
+        private final String label;
+        private final Node child;
+
+        private Edge(String label, Node child) {
+            this.label = label;
+            this.child = child;
+        }
+    }
+
+    private static final class Node {
+        private final char[] firstChars;
+        private final String[] labels;
+        private final Node[] children;
+        private final List<String> top;
+
+        private Node(char[] firstChars, String[] labels, Node[] children, List<String> top) {
+            this.firstChars = firstChars;
+            this.labels = labels;
+            this.children = children;
+            this.top = top;
+        }
+
+        /**
+         * A node over edges sorted by first character, ranking its own completions together
+         * with its children's top completions
+         */
+        private static Node of(TreeMap<Character, Edge> edges, Set<String> completions,
+                               Comparator<String> byPopularity, int maxResults) {
+            int size = edges.size();
+            char[] firstChars = new char[size];
+            String[] labels = new String[size];
+            Node[] children = new Node[size];
+            Set<String> candidates = new LinkedHashSet<>(completions);
+
+            int index = 0;
+            for (Map.Entry<Character, Edge> edge : edges.entrySet()) {
+                firstChars[index] = edge.getKey();
+                labels[index] = edge.getValue().label;
+                children[index] = edge.getValue().child;
+                candidates.addAll(children[index].top);
+                index++;
+            }
+
+            List<String> ranked = new ArrayList<>(candidates);
+            ranked.sort(byPopularity);
+            List<String> top = Collections.unmodifiableList(new ArrayList<>(ranked.subList(0, Math.min(maxResults, ranked.size()))));
+            return new Node(firstChars, labels, children, top);
+        }
+    }
+
+    private static final class BuildNode {
+        private final TreeMap<Character, BuildNode> children = new TreeMap<>();
+        private final Set<String> completions = new LinkedHashSet<>();
+
+        private void insert(String key, int from, String completion) {
+            BuildNode node = this;
+            for (int i = from; i < key.length(); i++) {
+                node = node.children.computeIfAbsent(key.charAt(i), c -> new BuildNode());
+            }
+            node.completions.add(completion);
+        }
+
+        /**
+         * Compute each node's top completions, bottom up
+         */
+        private Node freeze(Comparator<String> byPopularity, int maxResults) {
+            TreeMap<Character, Edge> edges = new TreeMap<>();
+            for (Map.Entry<Character, BuildNode> entry : children.entrySet()) {
+                edges.put(entry.getKey(), freezeEdge(entry.getKey(), entry.getValue(), byPopularity, maxResults));
+            }
+            return Node.of(edges, completions, byPopularity, maxResults);
+        }
+
+        /**
+         * Collapse a single-child chain below {@code first} into one edge label
+         */
+        private static Edge freezeEdge(char first, BuildNode child, Comparator<String> byPopularity, int maxResults) {
+            StringBuilder label = new StringBuilder().append(first);
+            while (child.children.size() == 1 && child.completions.isEmpty()) {
+                Map.Entry<Character, BuildNode> only = child.children.firstEntry();
+                label.append(only.getKey());
+                child = only.getValue();
+            }
+            return new Edge(label.toString(), child.freeze(byPopularity, maxResults));
+        }
+    }
+}
@@ -40,6 +40,7 @@ public class SecurityConfig {
                 
                 // Allow public access to order creation (POST) but secure individual order access
                 .requestMatchers("/api/orders").permitAll()  // POST only for creating orders
+                .requestMatchers("/api/orders/customer/**").permitAll()  // order history: the controller checks the signed history token
                 .requestMatchers("/api/orders/*").permitAll()  // GET individual orders - TODO: secure with customer auth
                 
                 // Allow public access to payment endpoints
@@ -49,6 +50,7 @@ public class SecurityConfig {
                 .requestMatchers("/api/payments/confirm-payment").permitAll()
                 .requestMatchers("/api/payments/status/**").permitAll()
                 .requestMatchers("/api/payments/session/**").permitAll()
+                .requestMatchers("/api/payments/stream/**").permitAll()
                 .requestMatchers("/api/payments/webhook").permitAll()
                 
                 // Allow access to health check endpoints
@@ -62,7 +64,6 @@ public class SecurityConfig {
                 // .requestMatchers("/api/orders/stats/**").authenticated()
                 // .requestMatchers("/api/orders/{id}/status").authenticated()
                 // .requestMatchers("/api/orders/{id}/cancel").authenticated()
-                // .requestMatchers("/api/orders/customer/**").authenticated()
                 
                 // Deny all other requests by default (security-first approach)
                 .anyRequest().denyAll()
@@ -96,6 +97,9 @@ public class SecurityConfig {
         // Allow specific headers
         configuration.setAllowedHeaders(Arrays.asList("*"));
         
+        // Expose paging and caching headers to the storefront
+        configuration.setExposedHeaders(Arrays.asList("ETag", "X-Total-Count", "X-Next-Cursor"));
+        
         // Allow credentials
         configuration.setAllowCredentials(true);
         
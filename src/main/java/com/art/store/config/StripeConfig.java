@@ -12,9 +12,16 @@ public class StripeConfig {
     @Value("${stripe.secret.key:sk_test_YOUR_SECRET_KEY_HERE}")
     private String secretKey;
 
+    // Points the client at a stand-in server (stripe-mock or the test fake) when set
+    @Value("${stripe.api.base:}")
+    private String apiBase;
+
     @PostConstruct
     public void init() {
         Stripe.apiKey = secretKey;
+        if (!apiBase.isBlank()) {
+            Stripe.overrideApiBase(apiBase);
+        }
     }
 
     public String getSecretKey() {
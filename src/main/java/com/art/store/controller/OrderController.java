@@ -1,11 +1,15 @@
 package com.art.store.controller;
 
+import com.art.store.dto.KeysetCursor;
+import com.art.store.dto.OrderHistoryPage;
 import com.art.store.dto.OrderRequestDto;
 import com.art.store.entity.Order;
+import com.art.store.service.OrderHistoryTokens;
 import com.art.store.service.OrderService;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
@@ -25,10 +29,18 @@ public class OrderController {
     private static final Logger logger = LoggerFactory.getLogger(OrderController.class);
     
     private final OrderService orderService;
+    private final OrderHistoryTokens historyTokens;
+    
+    @Value("${app.orders.history.default-size:20}")
+    private int historyDefaultSize;
+    
+    @Value("${app.orders.history.max-size:100}")
+    private int historyMaxSize;
     
     @Autowired
-    public OrderController(OrderService orderService) {
+    public OrderController(OrderService orderService, OrderHistoryTokens historyTokens) {
         this.orderService = orderService;
+        this.historyTokens = historyTokens;
     }
     
     // TODO: Consider adding rate limiting to prevent order spam
@@ -58,7 +70,8 @@ public class OrderController {
                 "success", true,
                 "message", "Order created successfully",
                 "orderId", createdOrder.getOrderId(),
-                "status", createdOrder.getStatus()
+                "status", createdOrder.getStatus(),
+                "historyToken", historyTokens.issue(createdOrder.getEmail())
             ));
         } catch (RuntimeException e) {
             logger.warn("Order creation failed with runtime exception: {}", e.getMessage());
@@ -97,7 +110,7 @@ public class OrderController {
                 ));
             }
             
-            return orderService.getOrderByOrderId(orderId.trim())
+            return orderService.getOrderView(orderId.trim())
                     .map(order -> {
                         logger.info("Order found and returned for orderId: {}", orderId);
                         return ResponseEntity.ok().body((Object) order);
@@ -118,13 +131,46 @@ public class OrderController {
         }
     }
     
-    // COMMENTED OUT - Not used by frontend and would expose all customer orders
-    // This endpoint could be a privacy/security risk without proper authentication
-    // @GetMapping("/customer/{email}")
-    // public ResponseEntity<List<Order>> getOrdersByEmail(@PathVariable String email) {
-    //     List<Order> orders = orderService.getOrdersByEmail(email);
-    //     return ResponseEntity.ok(orders);
-    // }
+    // Lists every order for an email, so it needs the X-Order-History-Token issued with an order
+    // placed as that email. Pages are newest first; the next page's cursor comes back in X-Next-Cursor
+    @GetMapping("/customer/{email}")
+    public ResponseEntity<?> getOrderHistory(@PathVariable @NotBlank String email,
+                                             @RequestHeader(value = "X-Order-History-Token", required = false) String token,
+                                             @RequestParam(required = false) String cursor,
+                                             @RequestParam(required = false) Integer limit) {
+        if (!historyTokens.verify(email, token)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of(
+                "success", false,
+                "message", "A valid order history token is required"
+            ));
+        }
+        
+        KeysetCursor after;
+        try {
+            after = cursor != null && !cursor.isBlank() ? KeysetCursor.decode(cursor) : null;
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "message", "Invalid cursor"
+            ));
+        }
+        int pageSize = limit == null ? historyDefaultSize : Math.min(Math.max(limit, 1), historyMaxSize);
+        
+        try {
+            OrderHistoryPage page = orderService.getOrderHistory(email, after, pageSize);
+            ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+            if (page.getNextCursor() != null) {
+                builder.header("X-Next-Cursor", page.getNextCursor().encode());
+            }
+            return builder.body(page.getOrders());
+        } catch (Exception e) {
+            logger.error("Error retrieving order history", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                "success", false,
+                "message", "An error occurred while retrieving the order history"
+            ));
+        }
+    }
     
     // COMMENTED OUT - Not used by frontend and exposes all orders by status
     // This is an admin-level endpoint that should require authentication
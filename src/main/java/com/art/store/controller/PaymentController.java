@@ -2,17 +2,23 @@ package com.art.store.controller;
 
 import com.art.store.dto.CheckoutSessionDto;
 import com.art.store.dto.PaymentIntentDto;
+import com.art.store.dto.PaymentIntentResultDto;
 import com.art.store.entity.Order;
 import com.art.store.entity.Payment;
+import com.art.store.service.CheckoutSessionStatusCache;
 import com.art.store.service.OrderService;
 import com.art.store.service.PaymentService;
+import com.art.store.service.PaymentStatusStreamService;
 import com.art.store.service.StripeService;
+import com.art.store.service.StripeUnavailableException;
+import com.art.store.service.WebhookInboxService;
+import com.stripe.exception.SignatureVerificationException;
 import com.stripe.exception.StripeException;
-import com.stripe.model.PaymentIntent;
 import com.stripe.model.checkout.Session;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -27,12 +33,17 @@ public class PaymentController {
     private final StripeService stripeService;
     private final PaymentService paymentService;
     private final OrderService orderService;
+    private final WebhookInboxService webhookInboxService;
+    private final PaymentStatusStreamService paymentStatusStreamService;
     
     @Autowired
-    public PaymentController(StripeService stripeService, PaymentService paymentService, OrderService orderService) {
+    public PaymentController(StripeService stripeService, PaymentService paymentService, OrderService orderService,
+                             WebhookInboxService webhookInboxService, PaymentStatusStreamService paymentStatusStreamService) {
         this.stripeService = stripeService;
         this.paymentService = paymentService;
         this.orderService = orderService;
+        this.webhookInboxService = webhookInboxService;
+        this.paymentStatusStreamService = paymentStatusStreamService;
     }
     
     @GetMapping("/config")
@@ -54,12 +65,12 @@ public class PaymentController {
             }
             
             Order order = orderOpt.get();
-            PaymentIntent paymentIntent = paymentService.createPaymentIntent(order, paymentIntentDto.getCurrency());
+            PaymentIntentResultDto paymentIntent = paymentService.createPaymentIntent(order, paymentIntentDto.getCurrency());
             
             return ResponseEntity.ok(Map.of(
                 "success", true,
                 "clientSecret", paymentIntent.getClientSecret(),
-                "paymentIntentId", paymentIntent.getId()
+                "paymentIntentId", paymentIntent.getPaymentIntentId()
             ));
             
         } catch (StripeException e) {
@@ -67,6 +78,11 @@ public class PaymentController {
                 "success", false,
                 "message", "Failed to create payment intent: " + e.getMessage()
             ));
+        } catch (StripeUnavailableException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
                 "success", false,
@@ -100,6 +116,11 @@ public class PaymentController {
                 "success", false,
                 "message", "Failed to create checkout session: " + e.getMessage()
             ));
+        } catch (StripeUnavailableException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
                 "success", false,
@@ -125,6 +146,11 @@ public class PaymentController {
                 "success", false,
                 "message", "Failed to confirm payment: " + e.getMessage()
             ));
+        } catch (StripeUnavailableException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
                 "success", false,
@@ -162,30 +188,48 @@ public class PaymentController {
     public ResponseEntity<String> handleWebhook(@RequestBody String payload, 
                                                @RequestHeader("Stripe-Signature") String sigHeader) {
         try {
-            paymentService.handleStripeWebhook(payload, sigHeader);
-            return ResponseEntity.ok("Webhook handled successfully");
+            // Only store the event here; the inbox worker applies it after we ack
+            webhookInboxService.accept(payload, sigHeader);
+            return ResponseEntity.ok("Webhook received");
+        } catch (SignatureVerificationException e) {
+            return ResponseEntity.badRequest().body("Webhook handling failed: Invalid signature");
         } catch (Exception e) {
-            return ResponseEntity.badRequest().body("Webhook handling failed: " + e.getMessage());
+            // Not acked, so Stripe retries the delivery
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Webhook handling failed: " + e.getMessage());
         }
     }
     
+    /**
+     * Stream status changes for an order as Server-Sent Events, so the success page
+     * doesn't have to poll /status or /session
+     */
+    @GetMapping(value = "/stream/{orderId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> streamPaymentStatus(@PathVariable String orderId) {
+        return paymentStatusStreamService.subscribe(orderId)
+            .<ResponseEntity<?>>map(emitter -> ResponseEntity.ok()
+                .header("Cache-Control", "no-cache")
+                // Stop nginx from buffering the stream
+                .header("X-Accel-Buffering", "no")
+                .body(emitter))
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+    
     @GetMapping("/session/{sessionId}")
     public ResponseEntity<?> getSessionStatus(@PathVariable String sessionId) {
         try {
-            Session session = stripeService.retrieveCheckoutSession(sessionId);
-            Optional<Payment> paymentOpt = paymentService.getPaymentBySessionId(sessionId);
+            Optional<CheckoutSessionStatusCache.SessionStatus> statusOpt = paymentService.getSessionStatus(sessionId);
             
-            if (paymentOpt.isEmpty()) {
+            if (statusOpt.isEmpty()) {
                 return ResponseEntity.notFound().build();
             }
             
-            Payment payment = paymentOpt.get();
+            CheckoutSessionStatusCache.SessionStatus status = statusOpt.get();
             return ResponseEntity.ok(Map.of(
                 "success", true,
-                "sessionStatus", session.getStatus(),
-                "paymentStatus", session.getPaymentStatus(),
-                "orderId", payment.getOrder().getOrderId(),
-                "customerEmail", session.getCustomerEmail()
+                "sessionStatus", status.getSessionStatus(),
+                "paymentStatus", status.getPaymentStatus(),
+                "orderId", status.getOrderId(),
+                "customerEmail", status.getCustomerEmail()
             ));
             
         } catch (StripeException e) {
@@ -193,6 +237,11 @@ public class PaymentController {
                 "success", false,
                 "message", "Failed to retrieve session: " + e.getMessage()
             ));
+        } catch (StripeUnavailableException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
                 "success", false,
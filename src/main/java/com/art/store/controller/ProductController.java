@@ -1,14 +1,29 @@
 package com.art.store.controller;
 
+import com.art.store.catalog.CatalogPage;
+import com.art.store.catalog.CatalogResponseCache;
+import com.art.store.catalog.CatalogResponseCache.CachedResponse;
+import com.art.store.catalog.FacetIndex;
+import com.art.store.catalog.ProductSearchIndex;
+import com.art.store.dto.KeysetCursor;
 import com.art.store.dto.ProductDto;
 import com.art.store.service.ProductService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiFunction;
 
 @RestController
 @RequestMapping("/api/products")
@@ -16,16 +31,40 @@ import java.util.List;
 public class ProductController {
     
     private final ProductService productService;
+    private final CatalogResponseCache responseCache;
+    
+    @Value("${app.catalog.cache-max-age-seconds:60}")
+    private long cacheMaxAgeSeconds;
+    
+    @Value("${app.catalog.page.default-size:24}")
+    private int pageDefaultSize;
+    
+    @Value("${app.catalog.page.max-size:100}")
+    private int pageMaxSize;
+    
+    @Value("${app.catalog.search.default-limit:50}")
+    private int searchDefaultLimit;
+    
+    @Value("${app.catalog.search.max-limit:100}")
+    private int searchMaxLimit;
     
     @Autowired
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService, CatalogResponseCache responseCache) {
         this.productService = productService;
+        this.responseCache = responseCache;
     }
     
     @GetMapping
-    public ResponseEntity<List<ProductDto>> getAllProducts() {
-        List<ProductDto> products = productService.getAllActiveProducts();
-        return ResponseEntity.ok(products);
+    public ResponseEntity<?> getAllProducts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        if (cursor != null || limit != null) {
+            return pagedResponse(cursor, limit, productService::getActiveProductsPage);
+        }
+        CachedResponse response = responseCache.get("all", productService::getAllActiveProducts);
+        return cachedResponse(response, ifNoneMatch, acceptEncoding);
     }
     
     @GetMapping("/{id}")
@@ -36,27 +75,80 @@ public class ProductController {
     }
     
     @GetMapping("/category/{category}")
-    public ResponseEntity<List<ProductDto>> getProductsByCategory(@PathVariable String category) {
-        List<ProductDto> products = productService.getProductsByCategory(category);
-        return ResponseEntity.ok(products);
+    public ResponseEntity<?> getProductsByCategory(
+            @PathVariable String category,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        if (cursor != null || limit != null) {
+            return pagedResponse(cursor, limit, (after, size) -> productService.getProductsByCategoryPage(category, after, size));
+        }
+        // Unknown categories share one entry so arbitrary path values cannot grow the cache
+        CachedResponse response = productService.hasCategory(category)
+                ? responseCache.get("category:" + category.toLowerCase(Locale.ROOT), () -> productService.getProductsByCategory(category))
+                : responseCache.get("category:", List::of);
+        return cachedResponse(response, ifNoneMatch, acceptEncoding);
     }
     
     @GetMapping("/search")
-    public ResponseEntity<List<ProductDto>> searchProducts(@RequestParam String q) {
-        List<ProductDto> products = productService.searchProducts(q);
-        return ResponseEntity.ok(products);
+    public ResponseEntity<List<ProductDto>> searchProducts(@RequestParam String q,
+                                                           @RequestParam(defaultValue = "0") int offset,
+                                                           @RequestParam(required = false) Integer limit) {
+        int pageSize = limit == null ? searchDefaultLimit : Math.min(Math.max(limit, 1), searchMaxLimit);
+        ProductSearchIndex.SearchResult result = productService.searchProducts(q, Math.max(offset, 0), pageSize);
+        return ResponseEntity.ok()
+                .header("X-Total-Count", String.valueOf(result.getTotal()))
+                .body(result.getProducts());
+    }
+    
+    @GetMapping("/browse")
+    public ResponseEntity<?> browse(@RequestParam(required = false) String category,
+                                    @RequestParam(required = false) BigDecimal minPrice,
+                                    @RequestParam(required = false) BigDecimal maxPrice,
+                                    @RequestParam(defaultValue = "false") boolean available,
+                                    @RequestParam(defaultValue = "newest") String sort,
+                                    @RequestParam(defaultValue = "0") int offset,
+                                    @RequestParam(required = false) Integer limit) {
+        FacetIndex.Sort order;
+        try {
+            order = FacetIndex.Sort.valueOf(sort.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "message", "Unsupported sort: " + sort
+            ));
+        }
+        int pageSize = limit == null ? pageDefaultSize : Math.min(Math.max(limit, 1), pageMaxSize);
+        return ResponseEntity.ok(productService.browse(category, minPrice, maxPrice, available, order,
+                Math.max(offset, 0), pageSize));
+    }
+    
+    @GetMapping("/suggest")
+    public ResponseEntity<List<String>> suggest(@RequestParam(defaultValue = "") String prefix,
+                                                @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(productService.suggest(prefix.trim(), Math.max(limit, 1)));
     }
     
     @GetMapping("/categories")
-    public ResponseEntity<List<String>> getAllCategories() {
-        List<String> categories = productService.getAllCategories();
-        return ResponseEntity.ok(categories);
+    public ResponseEntity<byte[]> getAllCategories(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        CachedResponse response = responseCache.get("categories", productService::getAllCategories);
+        return cachedResponse(response, ifNoneMatch, acceptEncoding);
     }
     
     @GetMapping("/available")
-    public ResponseEntity<List<ProductDto>> getAvailableProducts() {
-        List<ProductDto> products = productService.getAvailableProducts();
-        return ResponseEntity.ok(products);
+    public ResponseEntity<?> getAvailableProducts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        if (cursor != null || limit != null) {
+            return pagedResponse(cursor, limit, productService::getAvailableProductsPage);
+        }
+        CachedResponse response = responseCache.get("available", productService::getAvailableProducts);
+        return cachedResponse(response, ifNoneMatch, acceptEncoding);
     }
     
     @PostMapping
@@ -93,4 +185,90 @@ public class ProductController {
         }
         return ResponseEntity.notFound().build();
     }
+    
+    private ResponseEntity<byte[]> cachedResponse(CachedResponse response, String ifNoneMatch, String acceptEncoding) {
+        boolean gzip = acceptsGzip(acceptEncoding);
+        CacheControl cacheControl = CacheControl.maxAge(Duration.ofSeconds(cacheMaxAgeSeconds)).cachePublic();
+        String etag = gzip ? response.getGzipEtag() : response.getEtag();
+        
+        if (response.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(cacheControl)
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+        
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(response.getGzippedJson());
+        }
+        return builder.body(response.getJson());
+    }
+    
+    /**
+     * Whether the Accept-Encoding header allows gzip: listed as gzip or x-gzip, or covered by "*",
+     * with a non-zero q that is not below identity's. An explicit gzip entry wins over "*"
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return false;
+        }
+        double gzipQ = -1;
+        double wildcardQ = -1;
+        double identityQ = -1;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            double q = qValue(parts);
+            switch (coding) {
+                case "gzip", "x-gzip" -> gzipQ = Math.max(gzipQ, q);
+                case "*" -> wildcardQ = q;
+                case "identity" -> identityQ = q;
+                default -> { }
+            }
+        }
+        double q = gzipQ >= 0 ? gzipQ : wildcardQ;
+        return q > 0 && q >= identityQ;
+    }
+    
+    // A missing or malformed q counts as 1, per RFC 9110
+    private static double qValue(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.length() > 2 && (parameter.charAt(0) == 'q' || parameter.charAt(0) == 'Q') && parameter.charAt(1) == '=') {
+                try {
+                    return Math.min(Math.max(Double.parseDouble(parameter.substring(2).trim()), 0), 1);
+                } catch (NumberFormatException e) {
+                    return 1;
+                }
+            }
+        }
+        return 1;
+    }
+    
+    // Listings without cursor/limit keep returning the full cached array for existing clients
+    private ResponseEntity<?> pagedResponse(String cursor, Integer limit, BiFunction<KeysetCursor, Integer, CatalogPage> pageLoader) {
+        KeysetCursor after;
+        try {
+            after = cursor != null && !cursor.isBlank() ? KeysetCursor.decode(cursor) : null;
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "message", "Invalid cursor"
+            ));
+        }
+        int pageSize = limit == null ? pageDefaultSize : Math.min(Math.max(limit, 1), pageMaxSize);
+        CatalogPage page = pageLoader.apply(after, pageSize);
+        
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            builder.header("X-Next-Cursor", page.getNextCursor().encode());
+        }
+        return builder.body(page.getProducts());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.art.store.controller;
+
+import com.art.store.service.OrderService;
+import com.art.store.service.PaymentService;
+import com.art.store.service.StripePayloadService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Debug lookup of the raw Stripe payload last stored for an order (by order reference) or a
+ * Stripe object id. Not exposed by default: add "stripepayloads" to
+ * management.endpoints.web.exposure.include, behind an authenticated management port
+ */
+@Component
+@Endpoint(id = "stripepayloads")
+public class StripePayloadEndpoint {
+    
+    private final StripePayloadService payloadService;
+    private final PaymentService paymentService;
+    private final OrderService orderService;
+    
+    @Autowired
+    public StripePayloadEndpoint(StripePayloadService payloadService, PaymentService paymentService, OrderService orderService) {
+        this.payloadService = payloadService;
+        this.paymentService = paymentService;
+        this.orderService = orderService;
+    }
+    
+    /** Returns null, answered as 404, when nothing is stored for the id */
+    @ReadOperation
+    public Map<String, String> payload(@Selector String id) {
+        Optional<String> payload = orderService.getOrderByOrderId(id)
+            .flatMap(order -> paymentService.getPaymentByOrderId(order.getId()))
+            .flatMap(payloadService::findLatest)
+            .or(() -> payloadService.findLatest(id));
+        return payload.map(json -> Map.of("id", id, "payload", json)).orElse(null);
+    }
+}
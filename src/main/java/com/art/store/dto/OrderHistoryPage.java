@@ -0,0 +1,38 @@
+package com.art.store.dto;
+
+import java.util.List;
+
+/**
+ * One page of a customer's order history plus the cursor for the next page, if any.
+ */
+public final class OrderHistoryPage {
+
+    private final List<OrderSummaryDto> orders;
+    private final KeysetCursor nextCursor;
+
+    public OrderHistoryPage(List<OrderSummaryDto> orders, KeysetCursor nextCursor) {
+        this.orders = orders;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Build a page from up to limit + 1 rows in (createdAt DESC, id DESC) order; the extra row
+     * only signals that another page exists
+     */
+    public static OrderHistoryPage of(List<OrderSummaryDto> rows, int limit) {
+        if (rows.size() <= limit) {
+            return new OrderHistoryPage(rows, null);
+        }
+        List<OrderSummaryDto> orders = rows.subList(0, limit);
+        OrderSummaryDto last = orders.get(orders.size() - 1);
+        return new OrderHistoryPage(orders, new KeysetCursor(last.getCreatedAt(), last.getId()));
+    }
+
+    public List<OrderSummaryDto> getOrders() {
+        return orders;
+    }
+
+    public KeysetCursor getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,56 @@
+package com.art.store.dto;
+
+import com.art.store.entity.Order;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One row of a customer's order history; no items, addresses or payment
+ */
+public class OrderSummaryDto {
+    
+    private final Long id;
+    private final String orderId;
+    private final LocalDateTime createdAt;
+    private final Order.OrderStatus status;
+    private final Order.PaymentStatus paymentStatus;
+    private final BigDecimal totalAmount;
+    
+    public OrderSummaryDto(Long id, String orderId, LocalDateTime createdAt, Order.OrderStatus status,
+                           Order.PaymentStatus paymentStatus, BigDecimal totalAmount) {
+        this.id = id;
+        this.orderId = orderId;
+        this.createdAt = createdAt;
+        this.status = status;
+        this.paymentStatus = paymentStatus;
+        this.totalAmount = totalAmount;
+    }
+    
+    // Only used to build the next page's cursor
+    @JsonIgnore
+    public Long getId() {
+        return id;
+    }
+    
+    public String getOrderId() {
+        return orderId;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public Order.OrderStatus getStatus() {
+        return status;
+    }
+    
+    public Order.PaymentStatus getPaymentStatus() {
+        return paymentStatus;
+    }
+    
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+}
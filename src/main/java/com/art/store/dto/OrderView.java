@@ -0,0 +1,233 @@
+package com.art.store.dto;
+
+import com.art.store.entity.Order;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Read model behind GET /api/orders/{orderId}. Same field names as the serialized Order, but
+ * items only carry the product's id, name and image, and the payment is never touched
+ */
+public class OrderView {
+    
+    private final Long id;
+    private final String orderId;
+    private final String email;
+    private final String firstName;
+    private final String lastName;
+    private final String address;
+    private final String city;
+    private final String state;
+    private final String zipCode;
+    private final String country;
+    private final String phone;
+    private final String billingAddress;
+    private final String billingCity;
+    private final String billingState;
+    private final String billingZipCode;
+    private final String billingCountry;
+    private final Boolean sameAsBilling;
+    private final BigDecimal totalAmount;
+    private final Order.OrderStatus status;
+    private final Order.PaymentStatus paymentStatus;
+    private final LocalDateTime createdAt;
+    private final LocalDateTime updatedAt;
+    private final List<Item> orderItems;
+    
+    private OrderView(OrderViewRow row, List<Item> orderItems) {
+        this.id = row.getId();
+        this.orderId = row.getOrderId();
+        this.email = row.getEmail();
+        this.firstName = row.getFirstName();
+        this.lastName = row.getLastName();
+        this.address = row.getAddress();
+        this.city = row.getCity();
+        this.state = row.getState();
+        this.zipCode = row.getZipCode();
+        this.country = row.getCountry();
+        this.phone = row.getPhone();
+        this.billingAddress = row.getBillingAddress();
+        this.billingCity = row.getBillingCity();
+        this.billingState = row.getBillingState();
+        this.billingZipCode = row.getBillingZipCode();
+        this.billingCountry = row.getBillingCountry();
+        this.sameAsBilling = row.getSameAsBilling();
+        this.totalAmount = row.getTotalAmount();
+        this.status = row.getStatus();
+        this.paymentStatus = row.getPaymentStatus();
+        this.createdAt = row.getCreatedAt();
+        this.updatedAt = row.getUpdatedAt();
+        this.orderItems = Collections.unmodifiableList(orderItems);
+    }
+    
+    /** Fold the rows of one order (one per item, in item order) into a view */
+    public static OrderView from(List<OrderViewRow> rows) {
+        if (rows.isEmpty()) {
+            throw new IllegalArgumentException("An order view needs at least one row");
+        }
+        List<Item> items = new ArrayList<>(rows.size());
+        for (OrderViewRow row : rows) {
+            if (row.getItemId() != null) {
+                items.add(new Item(row.getItemId(), row.getQuantity(), row.getUnitPrice(), row.getTotalPrice(),
+                    new ProductSummary(row.getProductId(), row.getProductName(), row.getProductImage())));
+            }
+        }
+        return new OrderView(rows.get(0), items);
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public String getOrderId() {
+        return orderId;
+    }
+    
+    public String getEmail() {
+        return email;
+    }
+    
+    public String getFirstName() {
+        return firstName;
+    }
+    
+    public String getLastName() {
+        return lastName;
+    }
+    
+    public String getAddress() {
+        return address;
+    }
+    
+    public String getCity() {
+        return city;
+    }
+    
+    public String getState() {
+        return state;
+    }
+    
+    public String getZipCode() {
+        return zipCode;
+    }
+    
+    public String getCountry() {
+        return country;
+    }
+    
+    public String getPhone() {
+        return phone;
+    }
+    
+    public String getBillingAddress() {
+        return billingAddress;
+    }
+    
+    public String getBillingCity() {
+        return billingCity;
+    }
+    
+    public String getBillingState() {
+        return billingState;
+    }
+    
+    public String getBillingZipCode() {
+        return billingZipCode;
+    }
+    
+    public String getBillingCountry() {
+        return billingCountry;
+    }
+    
+    public Boolean getSameAsBilling() {
+        return sameAsBilling;
+    }
+    
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+    
+    public Order.OrderStatus getStatus() {
+        return status;
+    }
+    
+    public Order.PaymentStatus getPaymentStatus() {
+        return paymentStatus;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public List<Item> getOrderItems() {
+        return orderItems;
+    }
+    
+    public static final class Item {
+        private final Long id;
+        private final Integer quantity;
+        private final BigDecimal unitPrice;
+        private final BigDecimal totalPrice;
+        private final ProductSummary product;
+        
+        public Item(Long id, Integer quantity, BigDecimal unitPrice, BigDecimal totalPrice, ProductSummary product) {
+            this.id = id;
+            this.quantity = quantity;
+            this.unitPrice = unitPrice;
+            this.totalPrice = totalPrice;
+            this.product = product;
+        }
+        
+        public Long getId() {
+            return id;
+        }
+        
+        public Integer getQuantity() {
+            return quantity;
+        }
+        
+        public BigDecimal getUnitPrice() {
+            return unitPrice;
+        }
+        
+        public BigDecimal getTotalPrice() {
+            return totalPrice;
+        }
+        
+        public ProductSummary getProduct() {
+            return product;
+        }
+    }
+    
+    public static final class ProductSummary {
+        private final Long id;
+        private final String name;
+        private final String image;
+        
+        public ProductSummary(Long id, String name, String image) {
+            this.id = id;
+            this.name = name;
+            this.image = image;
+        }
+        
+        public Long getId() {
+            return id;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public String getImage() {
+            return image;
+        }
+    }
+}
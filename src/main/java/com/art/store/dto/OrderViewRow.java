@@ -0,0 +1,198 @@
+package com.art.store.dto;
+
+import com.art.store.entity.Order;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One row of the order view query: the order's columns repeated for each of its items.
+ * Item and product columns are null for an order without items
+ */
+public class OrderViewRow {
+    
+    private final Long id;
+    private final String orderId;
+    private final String email;
+    private final String firstName;
+    private final String lastName;
+    private final String address;
+    private final String city;
+    private final String state;
+    private final String zipCode;
+    private final String country;
+    private final String phone;
+    private final String billingAddress;
+    private final String billingCity;
+    private final String billingState;
+    private final String billingZipCode;
+    private final String billingCountry;
+    private final Boolean sameAsBilling;
+    private final BigDecimal totalAmount;
+    private final Order.OrderStatus status;
+    private final Order.PaymentStatus paymentStatus;
+    private final LocalDateTime createdAt;
+    private final LocalDateTime updatedAt;
+    private final Long itemId;
+    private final Integer quantity;
+    private final BigDecimal unitPrice;
+    private final BigDecimal totalPrice;
+    private final Long productId;
+    private final String productName;
+    private final String productImage;
+    
+    public OrderViewRow(Long id, String orderId, String email, String firstName, String lastName,
+                        String address, String city, String state, String zipCode, String country, String phone,
+                        String billingAddress, String billingCity, String billingState, String billingZipCode,
+                        String billingCountry, Boolean sameAsBilling, BigDecimal totalAmount,
+                        Order.OrderStatus status, Order.PaymentStatus paymentStatus,
+                        LocalDateTime createdAt, LocalDateTime updatedAt,
+                        Long itemId, Integer quantity, BigDecimal unitPrice, BigDecimal totalPrice,
+                        Long productId, String productName, String productImage) {
+        this.id = id;
+        this.orderId = orderId;
+        this.email = email;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.address = address;
+        this.city = city;
+        this.state = state;
+        this.zipCode = zipCode;
+        this.country = country;
+        this.phone = phone;
+        this.billingAddress = billingAddress;
+        this.billingCity = billingCity;
+        this.billingState = billingState;
+        this.billingZipCode = billingZipCode;
+        this.billingCountry = billingCountry;
+        this.sameAsBilling = sameAsBilling;
+        this.totalAmount = totalAmount;
+        this.status = status;
+        this.paymentStatus = paymentStatus;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.itemId = itemId;
+        this.quantity = quantity;
+        this.unitPrice = unitPrice;
+        this.totalPrice = totalPrice;
+        this.productId = productId;
+        this.productName = productName;
+        this.productImage = productImage;
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public String getOrderId() {
+        return orderId;
+    }
+    
+    public String getEmail() {
+        return email;
+    }
+    
+    public String getFirstName() {
+        return firstName;
+    }
+    
+    public String getLastName() {
+        return lastName;
+    }
+    
+    public String getAddress() {
+        return address;
+    }
+    
+    public String getCity() {
+        return city;
+    }
+    
+    public String getState() {
+        return state;
+    }
+    
+    public String getZipCode() {
+        return zipCode;
+    }
+    
+    public String getCountry() {
+        return country;
+    }
+    
+    public String getPhone() {
+        return phone;
+    }
+    
+    public String getBillingAddress() {
+        return billingAddress;
+    }
+    
+    public String getBillingCity() {
+        return billingCity;
+    }
+    
+    public String getBillingState() {
+        return billingState;
+    }
+    
+    public String getBillingZipCode() {
+        return billingZipCode;
+    }
+    
+    public String getBillingCountry() {
+        return billingCountry;
+    }
+    
+    public Boolean getSameAsBilling() {
+        return sameAsBilling;
+    }
+    
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+    
+    public Order.OrderStatus getStatus() {
+        return status;
+    }
+    
+    public Order.PaymentStatus getPaymentStatus() {
+        return paymentStatus;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public Long getItemId() {
+        return itemId;
+    }
+    
+    public Integer getQuantity() {
+        return quantity;
+    }
+    
+    public BigDecimal getUnitPrice() {
+        return unitPrice;
+    }
+    
+    public BigDecimal getTotalPrice() {
+        return totalPrice;
+    }
+    
+    public Long getProductId() {
+        return productId;
+    }
+    
+    public String getProductName() {
+        return productName;
+    }
+    
+    public String getProductImage() {
+        return productImage;
+    }
+}
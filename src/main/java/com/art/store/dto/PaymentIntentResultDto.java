@@ -0,0 +1,31 @@
+package com.art.store.dto;
+
+public class PaymentIntentResultDto {
+    
+    private String paymentIntentId;
+    private String clientSecret;
+    
+    public PaymentIntentResultDto() {}
+    
+    public PaymentIntentResultDto(String paymentIntentId, String clientSecret) {
+        this.paymentIntentId = paymentIntentId;
+        this.clientSecret = clientSecret;
+    }
+    
+    // Getters and setters
+    public String getPaymentIntentId() {
+        return paymentIntentId;
+    }
+    
+    public void setPaymentIntentId(String paymentIntentId) {
+        this.paymentIntentId = paymentIntentId;
+    }
+    
+    public String getClientSecret() {
+        return clientSecret;
+    }
+    
+    public void setClientSecret(String clientSecret) {
+        this.clientSecret = clientSecret;
+    }
+}
@@ -0,0 +1,106 @@
+package com.art.store.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+public class ProductBrowseDto {
+    
+    private List<ProductDto> products;
+    private int total;
+    private Map<String, Integer> categoryCounts;
+    private List<PriceRangeCount> priceRangeCounts;
+    private int availableCount;
+    
+    public ProductBrowseDto() {}
+    
+    public ProductBrowseDto(List<ProductDto> products, int total, Map<String, Integer> categoryCounts,
+                            List<PriceRangeCount> priceRangeCounts, int availableCount) {
+        this.products = products;
+        this.total = total;
+        this.categoryCounts = categoryCounts;
+        this.priceRangeCounts = priceRangeCounts;
+        this.availableCount = availableCount;
+    }
+    
+    // Getters and setters
+    public List<ProductDto> getProducts() {
+        return products;
+    }
+    
+    public void setProducts(List<ProductDto> products) {
+        this.products = products;
+    }
+    
+    public int getTotal() {
+        return total;
+    }
+    
+    public void setTotal(int total) {
+        this.total = total;
+    }
+    
+    public Map<String, Integer> getCategoryCounts() {
+        return categoryCounts;
+    }
+    
+    public void setCategoryCounts(Map<String, Integer> categoryCounts) {
+        this.categoryCounts = categoryCounts;
+    }
+    
+    public List<PriceRangeCount> getPriceRangeCounts() {
+        return priceRangeCounts;
+    }
+    
+    public void setPriceRangeCounts(List<PriceRangeCount> priceRangeCounts) {
+        this.priceRangeCounts = priceRangeCounts;
+    }
+    
+    public int getAvailableCount() {
+        return availableCount;
+    }
+    
+    public void setAvailableCount(int availableCount) {
+        this.availableCount = availableCount;
+    }
+    
+    public static class PriceRangeCount {
+        // Lower bound is inclusive, upper bound exclusive; a null upper bound is open-ended
+        private BigDecimal min;
+        private BigDecimal max;
+        private int count;
+        
+        public PriceRangeCount() {}
+        
+        public PriceRangeCount(BigDecimal min, BigDecimal max, int count) {
+            this.min = min;
+            this.max = max;
+            this.count = count;
+        }
+        
+        // Getters and setters
+        public BigDecimal getMin() {
+            return min;
+        }
+        
+        public void setMin(BigDecimal min) {
+            this.min = min;
+        }
+        
+        public BigDecimal getMax() {
+            return max;
+        }
+        
+        public void setMax(BigDecimal max) {
+            this.max = max;
+        }
+        
+        public int getCount() {
+            return count;
+        }
+        
+        public void setCount(int count) {
+            this.count = count;
+        }
+    }
+}
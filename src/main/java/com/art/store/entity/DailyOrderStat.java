@@ -0,0 +1,103 @@
+package com.art.store.entity;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Rollup of the orders placed on one day in one status. Rebuilt from the orders table by
+ * OrderStatsService, never edited in place
+ */
+@Entity
+@Table(name = "daily_order_stats")
+@IdClass(DailyOrderStat.Key.class)
+public class DailyOrderStat {
+    
+    @Id
+    @Column(nullable = false)
+    private LocalDate statDate;
+    
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Order.OrderStatus status;
+    
+    @Column(nullable = false)
+    private Long orderCount;
+    
+    // Sum of order totals
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal totalAmount;
+    
+    // Sum of order totals whose payment is PAID
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal paidAmount;
+    
+    // Getters and Setters
+    public LocalDate getStatDate() {
+        return statDate;
+    }
+    
+    public void setStatDate(LocalDate statDate) {
+        this.statDate = statDate;
+    }
+    
+    public Order.OrderStatus getStatus() {
+        return status;
+    }
+    
+    public void setStatus(Order.OrderStatus status) {
+        this.status = status;
+    }
+    
+    public Long getOrderCount() {
+        return orderCount;
+    }
+    
+    public void setOrderCount(Long orderCount) {
+        this.orderCount = orderCount;
+    }
+    
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+    
+    public void setTotalAmount(BigDecimal totalAmount) {
+        this.totalAmount = totalAmount;
+    }
+    
+    public BigDecimal getPaidAmount() {
+        return paidAmount;
+    }
+    
+    public void setPaidAmount(BigDecimal paidAmount) {
+        this.paidAmount = paidAmount;
+    }
+    
+    public static class Key implements Serializable {
+        private LocalDate statDate;
+        private Order.OrderStatus status;
+        
+        public Key() {}
+        
+        public Key(LocalDate statDate, Order.OrderStatus status) {
+            this.statDate = statDate;
+            this.status = status;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return Objects.equals(statDate, key.statDate) && status == key.status;
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(statDate, status);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.art.store.entity;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Units of one product sold on one day, across orders that are not cancelled. Rebuilt with
+ * {@link DailyOrderStat}
+ */
+@Entity
+@Table(name = "daily_product_units")
+@IdClass(DailyProductUnits.Key.class)
+public class DailyProductUnits {
+    
+    @Id
+    @Column(nullable = false)
+    private LocalDate statDate;
+    
+    @Id
+    @Column(nullable = false)
+    private Long productId;
+    
+    @Column(nullable = false)
+    private Long units;
+    
+    // Getters and Setters
+    public LocalDate getStatDate() {
+        return statDate;
+    }
+    
+    public void setStatDate(LocalDate statDate) {
+        this.statDate = statDate;
+    }
+    
+    public Long getProductId() {
+        return productId;
+    }
+    
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+    
+    public Long getUnits() {
+        return units;
+    }
+    
+    public void setUnits(Long units) {
+        this.units = units;
+    }
+    
+    public static class Key implements Serializable {
+        private LocalDate statDate;
+        private Long productId;
+        
+        public Key() {}
+        
+        public Key(LocalDate statDate, Long productId) {
+            this.statDate = statDate;
+            this.productId = productId;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return Objects.equals(statDate, key.statDate) && Objects.equals(productId, key.productId);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(statDate, productId);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.art.store.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "email_outbox", indexes = {
+    @Index(name = "idx_email_outbox_status_next_attempt", columnList = "status, nextAttemptAt")
+}, uniqueConstraints = {
+    @UniqueConstraint(name = "uk_email_outbox_order_kind", columnNames = {"orderId", "kind"})
+})
+public class EmailOutboxMessage {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "email_outbox_seq")
+    @SequenceGenerator(name = "email_outbox_seq", sequenceName = "email_outbox_seq", allocationSize = 50)
+    private Long id;
+    
+    // Primary key of the order; the email is rendered from the order when it is sent
+    @Column(nullable = false)
+    private Long orderId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Kind kind;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status = Status.PENDING;
+    
+    @Column(nullable = false)
+    private Integer attempts = 0;
+    
+    @Column(columnDefinition = "TEXT")
+    private String lastError;
+    
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+    
+    private LocalDateTime claimedAt;
+    
+    private LocalDateTime sentAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        LocalDateTime now = LocalDateTime.now();
+        createdAt = now;
+        if (nextAttemptAt == null) {
+            nextAttemptAt = now;
+        }
+    }
+    
+    // Constructors
+    public EmailOutboxMessage() {}
+    
+    public EmailOutboxMessage(Long orderId, Kind kind) {
+        this.orderId = orderId;
+        this.kind = kind;
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public Long getOrderId() {
+        return orderId;
+    }
+    
+    public void setOrderId(Long orderId) {
+        this.orderId = orderId;
+    }
+    
+    public Kind getKind() {
+        return kind;
+    }
+    
+    public void setKind(Kind kind) {
+        this.kind = kind;
+    }
+    
+    public Status getStatus() {
+        return status;
+    }
+    
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+    
+    public Integer getAttempts() {
+        return attempts;
+    }
+    
+    public void setAttempts(Integer attempts) {
+        this.attempts = attempts;
+    }
+    
+    public String getLastError() {
+        return lastError;
+    }
+    
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+    
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+    
+    public LocalDateTime getClaimedAt() {
+        return claimedAt;
+    }
+    
+    public void setClaimedAt(LocalDateTime claimedAt) {
+        this.claimedAt = claimedAt;
+    }
+    
+    public LocalDateTime getSentAt() {
+        return sentAt;
+    }
+    
+    public void setSentAt(LocalDateTime sentAt) {
+        this.sentAt = sentAt;
+    }
+    
+    public enum Kind {
+        CUSTOMER_CONFIRMATION, ADMIN_NOTIFICATION
+    }
+    
+    // DEAD messages are kept for inspection and never retried automatically
+    public enum Status {
+        PENDING, SENDING, SENT, DEAD
+    }
+}
@@ -12,11 +12,21 @@ import java.util.List;
 import java.util.UUID;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+    @Index(name = "idx_orders_created_at", columnList = "createdAt")
+})
+// Items are lazy; the few use cases that read every line (checkout line items, cancellation,
+// receipts) load them together with their products through this graph
+@NamedEntityGraph(name = Order.WITH_ITEMS_AND_PRODUCTS,
+    attributeNodes = @NamedAttributeNode(value = "orderItems", subgraph = "items"),
+    subgraphs = @NamedSubgraph(name = "items", attributeNodes = @NamedAttributeNode("product")))
 public class Order {
     
+    public static final String WITH_ITEMS_AND_PRODUCTS = "Order.withItemsAndProducts";
+    
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq")
+    @SequenceGenerator(name = "orders_seq", sequenceName = "orders_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false, unique = true, length = 36)
@@ -81,13 +91,10 @@ public class Order {
     @Column(nullable = false)
     private LocalDateTime updatedAt;
     
-    @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @JsonManagedReference
     private List<OrderItem> orderItems = new ArrayList<>();
     
-    @OneToOne(mappedBy = "order", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
-    private Payment payment;
-    
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private PaymentStatus paymentStatus = PaymentStatus.PENDING;
@@ -286,14 +293,6 @@ public class Order {
         this.orderItems = orderItems;
     }
     
-    public Payment getPayment() {
-        return payment;
-    }
-    
-    public void setPayment(Payment payment) {
-        this.payment = payment;
-    }
-    
     public PaymentStatus getPaymentStatus() {
         return paymentStatus;
     }
@@ -0,0 +1,64 @@
+package com.art.store.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Change feed for the daily order statistics: one row per order write, naming the day whose
+ * rollup rows have to be rebuilt. Written in the order's transaction, consumed by OrderStatsService
+ */
+@Entity
+@Table(name = "order_stats_changes", indexes = {
+    @Index(name = "idx_order_stats_changes_stat_date", columnList = "statDate")
+})
+public class OrderStatsChange {
+    
+    // Identity rather than a pooled sequence: one row per transaction, and no sequence round trips
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false, updatable = false)
+    private LocalDate statDate;
+    
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime changedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        changedAt = LocalDateTime.now();
+    }
+    
+    // Constructors
+    public OrderStatsChange() {}
+    
+    public OrderStatsChange(LocalDate statDate) {
+        this.statDate = statDate;
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public LocalDate getStatDate() {
+        return statDate;
+    }
+    
+    public void setStatDate(LocalDate statDate) {
+        this.statDate = statDate;
+    }
+    
+    public LocalDateTime getChangedAt() {
+        return changedAt;
+    }
+    
+    public void setChangedAt(LocalDateTime changedAt) {
+        this.changedAt = changedAt;
+    }
+}
@@ -12,11 +12,12 @@ import java.time.LocalDateTime;
 public class Payment {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payments_seq")
+    @SequenceGenerator(name = "payments_seq", sequenceName = "payments_seq", allocationSize = 50)
     private Long id;
     
     @OneToOne
-    @JoinColumn(name = "order_id", nullable = false)
+    @JoinColumn(name = "order_id", nullable = false, unique = true)
     @JsonBackReference
     private Order order;
     
@@ -42,9 +43,6 @@ public class Payment {
     @Column(nullable = false)
     private PaymentMethod paymentMethod = PaymentMethod.STRIPE;
     
-    @Column(length = 5000)
-    private String stripeResponse;
-    
     @Column(length = 500)
     private String failureReason;
     
@@ -149,14 +147,6 @@ public class Payment {
         this.paymentMethod = paymentMethod;
     }
     
-    public String getStripeResponse() {
-        return stripeResponse;
-    }
-    
-    public void setStripeResponse(String stripeResponse) {
-        this.stripeResponse = stripeResponse;
-    }
-    
     public String getFailureReason() {
         return failureReason;
     }
@@ -0,0 +1,60 @@
+package com.art.store.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "processed_stripe_events", indexes = {
+    @Index(name = "idx_processed_stripe_events_processed_at", columnList = "processedAt")
+})
+public class ProcessedStripeEvent {
+    
+    // Stripe event id (evt_...), unique by virtue of being the primary key
+    @Id
+    @Column(nullable = false, updatable = false)
+    private String eventId;
+    
+    @Column(nullable = false)
+    private String eventType;
+    
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime processedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        processedAt = LocalDateTime.now();
+    }
+    
+    // Constructors
+    public ProcessedStripeEvent() {}
+    
+    public ProcessedStripeEvent(String eventId, String eventType) {
+        this.eventId = eventId;
+        this.eventType = eventType;
+    }
+    
+    // Getters and Setters
+    public String getEventId() {
+        return eventId;
+    }
+    
+    public void setEventId(String eventId) {
+        this.eventId = eventId;
+    }
+    
+    public String getEventType() {
+        return eventType;
+    }
+    
+    public void setEventType(String eventType) {
+        this.eventType = eventType;
+    }
+    
+    public LocalDateTime getProcessedAt() {
+        return processedAt;
+    }
+    
+    public void setProcessedAt(LocalDateTime processedAt) {
+        this.processedAt = processedAt;
+    }
+}
@@ -1,5 +1,6 @@
 package com.art.store.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -12,7 +13,8 @@ import java.time.LocalDateTime;
 public class Product {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "products_seq")
+    @SequenceGenerator(name = "products_seq", sequenceName = "products_seq", allocationSize = 50)
     private Long id;
     
     @NotBlank(message = "Product name is required")
@@ -48,6 +50,20 @@ public class Product {
     @Column(nullable = false)
     private LocalDateTime updatedAt;
     
+    // Stripe catalog objects this product was last synced to, and the name and price they carry
+    @JsonIgnore
+    private String stripeProductId;
+    
+    @JsonIgnore
+    private String stripePriceId;
+    
+    @JsonIgnore
+    @Column(precision = 10, scale = 2)
+    private BigDecimal stripePriceAmount;
+    
+    @JsonIgnore
+    private String stripeProductName;
+    
     @PrePersist
     protected void onCreate() {
         LocalDateTime now = LocalDateTime.now();
@@ -149,4 +165,36 @@ public class Product {
     public void setUpdatedAt(LocalDateTime updatedAt) {
         this.updatedAt = updatedAt;
     }
-}
\ No newline at end of file
+    
+    public String getStripeProductId() {
+        return stripeProductId;
+    }
+    
+    public void setStripeProductId(String stripeProductId) {
+        this.stripeProductId = stripeProductId;
+    }
+    
+    public String getStripePriceId() {
+        return stripePriceId;
+    }
+    
+    public void setStripePriceId(String stripePriceId) {
+        this.stripePriceId = stripePriceId;
+    }
+    
+    public BigDecimal getStripePriceAmount() {
+        return stripePriceAmount;
+    }
+    
+    public void setStripePriceAmount(BigDecimal stripePriceAmount) {
+        this.stripePriceAmount = stripePriceAmount;
+    }
+    
+    public String getStripeProductName() {
+        return stripeProductName;
+    }
+    
+    public void setStripeProductName(String stripeProductName) {
+        this.stripeProductName = stripeProductName;
+    }
+}
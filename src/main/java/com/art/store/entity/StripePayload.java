@@ -0,0 +1,101 @@
+package com.art.store.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Raw Stripe object JSON kept for debugging, gzip-compressed and append-only. Lives apart
+ * from the payments row so loading a Payment never drags the blob along
+ */
+@Entity
+@Table(name = "stripe_payloads", indexes = {
+    @Index(name = "idx_stripe_payloads_object_id", columnList = "stripeObjectId, id"),
+    @Index(name = "idx_stripe_payloads_received_at", columnList = "receivedAt")
+})
+public class StripePayload {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stripe_payloads_seq")
+    @SequenceGenerator(name = "stripe_payloads_seq", sequenceName = "stripe_payloads_seq", allocationSize = 50)
+    private Long id;
+    
+    // PaymentIntent or Checkout Session id the payload describes
+    @Column(nullable = false, updatable = false)
+    private String stripeObjectId;
+    
+    @Column(nullable = false, updatable = false)
+    private String eventType;
+    
+    @Column(nullable = false, updatable = false, length = 1048576)
+    private byte[] compressedBody;
+    
+    @Column(nullable = false, updatable = false)
+    private Integer rawLength;
+    
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime receivedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        receivedAt = LocalDateTime.now();
+    }
+    
+    // Constructors
+    public StripePayload() {}
+    
+    public StripePayload(String stripeObjectId, String eventType, byte[] compressedBody, int rawLength) {
+        this.stripeObjectId = stripeObjectId;
+        this.eventType = eventType;
+        this.compressedBody = compressedBody;
+        this.rawLength = rawLength;
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getStripeObjectId() {
+        return stripeObjectId;
+    }
+    
+    public void setStripeObjectId(String stripeObjectId) {
+        this.stripeObjectId = stripeObjectId;
+    }
+    
+    public String getEventType() {
+        return eventType;
+    }
+    
+    public void setEventType(String eventType) {
+        this.eventType = eventType;
+    }
+    
+    public byte[] getCompressedBody() {
+        return compressedBody;
+    }
+    
+    public void setCompressedBody(byte[] compressedBody) {
+        this.compressedBody = compressedBody;
+    }
+    
+    public Integer getRawLength() {
+        return rawLength;
+    }
+    
+    public void setRawLength(Integer rawLength) {
+        this.rawLength = rawLength;
+    }
+    
+    public LocalDateTime getReceivedAt() {
+        return receivedAt;
+    }
+    
+    public void setReceivedAt(LocalDateTime receivedAt) {
+        this.receivedAt = receivedAt;
+    }
+}
@@ -0,0 +1,162 @@
+package com.art.store.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "stripe_webhook_inbox", indexes = {
+    @Index(name = "idx_webhook_inbox_status_next_attempt", columnList = "status, nextAttemptAt"),
+    @Index(name = "idx_webhook_inbox_order_key_received", columnList = "orderKey, receivedAt, id")
+})
+public class WebhookInboxEvent {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stripe_webhook_inbox_seq")
+    @SequenceGenerator(name = "stripe_webhook_inbox_seq", sequenceName = "stripe_webhook_inbox_seq", allocationSize = 50)
+    private Long id;
+    
+    @Column(nullable = false, unique = true)
+    private String stripeEventId;
+    
+    @Column(nullable = false)
+    private String eventType;
+    
+    // Events sharing a key are processed one at a time, in receivedAt order
+    @Column(nullable = false)
+    private String orderKey;
+    
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status = Status.PENDING;
+    
+    @Column(nullable = false)
+    private Integer attempts = 0;
+    
+    @Column(columnDefinition = "TEXT")
+    private String lastError;
+    
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime receivedAt;
+    
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+    
+    private LocalDateTime claimedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        LocalDateTime now = LocalDateTime.now();
+        receivedAt = now;
+        if (nextAttemptAt == null) {
+            nextAttemptAt = now;
+        }
+    }
+    
+    // Constructors
+    public WebhookInboxEvent() {}
+    
+    public WebhookInboxEvent(String stripeEventId, String eventType, String orderKey, String payload) {
+        this.stripeEventId = stripeEventId;
+        this.eventType = eventType;
+        this.orderKey = orderKey;
+        this.payload = payload;
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getStripeEventId() {
+        return stripeEventId;
+    }
+    
+    public void setStripeEventId(String stripeEventId) {
+        this.stripeEventId = stripeEventId;
+    }
+    
+    public String getEventType() {
+        return eventType;
+    }
+    
+    public void setEventType(String eventType) {
+        this.eventType = eventType;
+    }
+    
+    public String getOrderKey() {
+        return orderKey;
+    }
+    
+    public void setOrderKey(String orderKey) {
+        this.orderKey = orderKey;
+    }
+    
+    public String getPayload() {
+        return payload;
+    }
+    
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+    
+    public Status getStatus() {
+        return status;
+    }
+    
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+    
+    public Integer getAttempts() {
+        return attempts;
+    }
+    
+    public void setAttempts(Integer attempts) {
+        this.attempts = attempts;
+    }
+    
+    public String getLastError() {
+        return lastError;
+    }
+    
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+    
+    public LocalDateTime getReceivedAt() {
+        return receivedAt;
+    }
+    
+    public void setReceivedAt(LocalDateTime receivedAt) {
+        this.receivedAt = receivedAt;
+    }
+    
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+    
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+    
+    public LocalDateTime getClaimedAt() {
+        return claimedAt;
+    }
+    
+    public void setClaimedAt(LocalDateTime claimedAt) {
+        this.claimedAt = claimedAt;
+    }
+    
+    public enum Status {
+        PENDING,
+        PROCESSING,
+        FAILED
+    }
+}
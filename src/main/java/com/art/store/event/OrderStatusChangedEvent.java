@@ -0,0 +1,54 @@
+package com.art.store.event;
+
+import com.art.store.entity.Order;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published inside the transaction that changes an order's status or payment status.
+ * Listeners that talk to the outside world should use AFTER_COMMIT
+ */
+public class OrderStatusChangedEvent {
+
+    private final Long id;
+    private final String orderId;
+    private final Order.OrderStatus status;
+    private final Order.PaymentStatus paymentStatus;
+    private final LocalDateTime createdAt;
+
+    public OrderStatusChangedEvent(Long id, String orderId, Order.OrderStatus status, Order.PaymentStatus paymentStatus,
+                                   LocalDateTime createdAt) {
+        this.id = id;
+        this.orderId = orderId;
+        this.status = status;
+        this.paymentStatus = paymentStatus;
+        this.createdAt = createdAt;
+    }
+
+    public static OrderStatusChangedEvent of(Order order) {
+        return new OrderStatusChangedEvent(order.getId(), order.getOrderId(), order.getStatus(), order.getPaymentStatus(),
+            order.getCreatedAt());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    /** External order id (UUID) */
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public Order.OrderStatus getStatus() {
+        return status;
+    }
+
+    public Order.PaymentStatus getPaymentStatus() {
+        return paymentStatus;
+    }
+
+    /** When the order was placed, which is the day its statistics are kept under */
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,33 @@
+package com.art.store.repository;
+
+import com.art.store.entity.DailyOrderStat;
+import com.art.store.entity.Order;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface DailyOrderStatRepository extends JpaRepository<DailyOrderStat, DailyOrderStat.Key>, DailyOrderStatRepositoryCustom {
+    
+    // Rows of [status, order count]
+    @Query("SELECT s.status, SUM(s.orderCount) FROM DailyOrderStat s " +
+           "WHERE s.statDate BETWEEN :from AND :to GROUP BY s.status")
+    List<Object[]> sumOrderCountsByStatus(@Param("from") LocalDate from, @Param("to") LocalDate to);
+    
+    @Query("SELECT COALESCE(SUM(s.orderCount), 0) FROM DailyOrderStat s WHERE s.status = :status")
+    Long sumOrderCount(@Param("status") Order.OrderStatus status);
+    
+    // Totals of orders that were not cancelled, as OrderRepository.getTotalRevenueByDateRange counts them
+    @Query("SELECT COALESCE(SUM(s.totalAmount), 0) FROM DailyOrderStat s " +
+           "WHERE s.statDate BETWEEN :from AND :to AND s.status <> :excluded")
+    BigDecimal sumRevenue(@Param("from") LocalDate from, @Param("to") LocalDate to,
+                          @Param("excluded") Order.OrderStatus excluded);
+    
+    @Query("SELECT COALESCE(SUM(s.paidAmount), 0) FROM DailyOrderStat s WHERE s.statDate BETWEEN :from AND :to")
+    BigDecimal sumPaidRevenue(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
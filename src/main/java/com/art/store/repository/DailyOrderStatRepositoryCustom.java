@@ -0,0 +1,16 @@
+package com.art.store.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DailyOrderStatRepositoryCustom {
+    
+    /**
+     * Lock the pending change rows for a day and return their ids; empty when another worker
+     * has already folded them
+     */
+    List<Long> lockPendingChanges(LocalDate day);
+    
+    /** Replace the day's rows in daily_order_stats and daily_product_units with fresh sums over orders */
+    void rebuildDay(LocalDate day);
+}
@@ -0,0 +1,59 @@
+package com.art.store.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+
+public class DailyOrderStatRepositoryCustomImpl implements DailyOrderStatRepositoryCustom {
+    
+    private static final String LOCK_CHANGES_SQL =
+        "SELECT id FROM order_stats_changes WHERE stat_date = ? FOR UPDATE";
+    
+    private static final String DELETE_ORDER_STATS_SQL =
+        "DELETE FROM daily_order_stats WHERE stat_date = ?";
+    
+    private static final String INSERT_ORDER_STATS_SQL =
+        "INSERT INTO daily_order_stats (stat_date, status, order_count, total_amount, paid_amount) " +
+        "SELECT CAST(? AS DATE), status, COUNT(*), SUM(total_amount), " +
+        "  SUM(CASE WHEN payment_status = 'PAID' THEN total_amount ELSE 0 END) " +
+        "FROM orders WHERE created_at >= ? AND created_at < ? " +
+        "GROUP BY status";
+    
+    private static final String DELETE_PRODUCT_UNITS_SQL =
+        "DELETE FROM daily_product_units WHERE stat_date = ?";
+    
+    private static final String INSERT_PRODUCT_UNITS_SQL =
+        "INSERT INTO daily_product_units (stat_date, product_id, units) " +
+        "SELECT CAST(? AS DATE), i.product_id, SUM(i.quantity) " +
+        "FROM orders o JOIN order_items i ON i.order_id = o.id " +
+        "WHERE o.created_at >= ? AND o.created_at < ? AND o.status <> 'CANCELLED' " +
+        "GROUP BY i.product_id";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    public DailyOrderStatRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    @Override
+    public List<Long> lockPendingChanges(LocalDate day) {
+        return jdbcTemplate.queryForList(LOCK_CHANGES_SQL, Long.class, Date.valueOf(day));
+    }
+    
+    @Override
+    public void rebuildDay(LocalDate day) {
+        Date statDate = Date.valueOf(day);
+        Timestamp from = Timestamp.valueOf(day.atStartOfDay());
+        Timestamp to = Timestamp.valueOf(day.plusDays(1).atStartOfDay());
+        
+        jdbcTemplate.update(DELETE_ORDER_STATS_SQL, statDate);
+        jdbcTemplate.update(INSERT_ORDER_STATS_SQL, statDate, from, to);
+        jdbcTemplate.update(DELETE_PRODUCT_UNITS_SQL, statDate);
+        jdbcTemplate.update(INSERT_PRODUCT_UNITS_SQL, statDate, from, to);
+    }
+}
@@ -0,0 +1,19 @@
+package com.art.store.repository;
+
+import com.art.store.entity.DailyProductUnits;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface DailyProductUnitsRepository extends JpaRepository<DailyProductUnits, DailyProductUnits.Key> {
+    
+    // Rows of [productId, units]
+    @Query("SELECT u.productId, SUM(u.units) FROM DailyProductUnits u " +
+           "WHERE u.statDate BETWEEN :from AND :to GROUP BY u.productId")
+    List<Object[]> sumUnitsByProduct(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
@@ -0,0 +1,50 @@
+package com.art.store.repository;
+
+import com.art.store.entity.EmailOutboxMessage;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutboxMessage, Long> {
+    
+    /** Lock the next due messages, skipping rows another instance already holds (-2 is SKIP LOCKED) */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT m FROM EmailOutboxMessage m " +
+           "WHERE m.status = com.art.store.entity.EmailOutboxMessage.Status.PENDING AND m.nextAttemptAt <= :now " +
+           "ORDER BY m.nextAttemptAt, m.id")
+    List<EmailOutboxMessage> lockDueMessages(@Param("now") LocalDateTime now, Pageable pageable);
+    
+    @Modifying
+    @Query("UPDATE EmailOutboxMessage m SET m.status = com.art.store.entity.EmailOutboxMessage.Status.SENT, " +
+           "m.sentAt = :sentAt, m.claimedAt = null WHERE m.id IN :ids")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("sentAt") LocalDateTime sentAt);
+    
+    boolean existsByOrderId(Long orderId);
+    
+    @Query("SELECT COUNT(m) FROM EmailOutboxMessage m WHERE m.status = :status")
+    Long countByStatus(@Param("status") EmailOutboxMessage.Status status);
+    
+    /** Return messages claimed by a dispatcher that died before recording the result */
+    @Modifying
+    @Query("UPDATE EmailOutboxMessage m SET m.status = com.art.store.entity.EmailOutboxMessage.Status.PENDING, m.claimedAt = null " +
+           "WHERE m.status = com.art.store.entity.EmailOutboxMessage.Status.SENDING AND m.claimedAt < :cutoff")
+    int releaseStaleClaims(@Param("cutoff") LocalDateTime cutoff);
+    
+    @Modifying
+    @Query("DELETE FROM EmailOutboxMessage m " +
+           "WHERE m.status = com.art.store.entity.EmailOutboxMessage.Status.SENT AND m.sentAt < :cutoff")
+    int deleteSentBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -20,4 +20,11 @@ public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
     
     @Query("SELECT SUM(oi.quantity) FROM OrderItem oi WHERE oi.product.id = :productId")
     Integer getTotalQuantitySoldForProduct(@Param("productId") Long productId);
+    
+    /** Units sold per product, counting only orders that were paid and not cancelled */
+    @Query("SELECT oi.product.id, SUM(oi.quantity) FROM OrderItem oi " +
+           "WHERE oi.order.paymentStatus = com.art.store.entity.Order.PaymentStatus.PAID " +
+           "AND oi.order.status <> com.art.store.entity.Order.OrderStatus.CANCELLED " +
+           "GROUP BY oi.product.id")
+    List<Object[]> sumQuantitySoldByProduct();
 }
\ No newline at end of file
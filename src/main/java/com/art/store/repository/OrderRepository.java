@@ -1,12 +1,17 @@
 package com.art.store.repository;
 
+import com.art.store.dto.OrderSummaryDto;
+import com.art.store.dto.OrderViewRow;
 import com.art.store.entity.Order;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,8 +20,48 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     
     Optional<Order> findByOrderId(String orderId);
     
+    @EntityGraph(Order.WITH_ITEMS_AND_PRODUCTS)
+    @Query("SELECT o FROM Order o WHERE o.id = :id")
+    Optional<Order> findWithItemsById(@Param("id") Long id);
+    
+    @EntityGraph(Order.WITH_ITEMS_AND_PRODUCTS)
+    @Query("SELECT o FROM Order o WHERE o.orderId = :orderId")
+    Optional<Order> findWithItemsByOrderId(@Param("orderId") String orderId);
+    
+    @EntityGraph(Order.WITH_ITEMS_AND_PRODUCTS)
+    @Query("SELECT o FROM Order o WHERE o.id IN :ids")
+    List<Order> findWithItemsByIdIn(@Param("ids") Collection<Long> ids);
+    
+    // Order view in one round trip: no entities, no payment, only the product columns shown
+    @Query("SELECT new com.art.store.dto.OrderViewRow(o.id, o.orderId, o.email, o.firstName, o.lastName, " +
+           "o.address, o.city, o.state, o.zipCode, o.country, o.phone, " +
+           "o.billingAddress, o.billingCity, o.billingState, o.billingZipCode, o.billingCountry, " +
+           "o.sameAsBilling, o.totalAmount, o.status, o.paymentStatus, o.createdAt, o.updatedAt, " +
+           "i.id, i.quantity, i.unitPrice, i.totalPrice, p.id, p.name, p.image) " +
+           "FROM Order o LEFT JOIN o.orderItems i LEFT JOIN i.product p " +
+           "WHERE o.orderId = :orderId ORDER BY i.id")
+    List<OrderViewRow> findViewRowsByOrderId(@Param("orderId") String orderId);
+    
     List<Order> findByEmailIgnoreCaseOrderByCreatedAtDesc(String email);
     
+    // Order history pages; both seek on the (lower(email), created_at, id) index from db-migration-order-history-index.sql
+    @Query("SELECT new com.art.store.dto.OrderSummaryDto(o.id, o.orderId, o.createdAt, o.status, o.paymentStatus, o.totalAmount) " +
+           "FROM Order o WHERE lower(o.email) = :email ORDER BY o.createdAt DESC, o.id DESC")
+    List<OrderSummaryDto> findHistoryFirstPage(@Param("email") String normalizedEmail, Pageable pageable);
+    
+    @Query("SELECT new com.art.store.dto.OrderSummaryDto(o.id, o.orderId, o.createdAt, o.status, o.paymentStatus, o.totalAmount) " +
+           "FROM Order o WHERE lower(o.email) = :email " +
+           "AND (o.createdAt < :createdAt OR (o.createdAt = :createdAt AND o.id < :id)) " +
+           "ORDER BY o.createdAt DESC, o.id DESC")
+    List<OrderSummaryDto> findHistoryPageAfter(@Param("email") String normalizedEmail,
+                                               @Param("createdAt") LocalDateTime createdAt,
+                                               @Param("id") Long id,
+                                               Pageable pageable);
+    
+    /** Row-lock the order until the transaction ends, serializing writers that act on its PAID transition */
+    @Query(value = "SELECT id FROM orders WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Optional<Long> lockById(@Param("id") Long id);
+    
     List<Order> findByStatusOrderByCreatedAtDesc(Order.OrderStatus status);
     
     @Query("SELECT o FROM Order o WHERE o.createdAt BETWEEN :startDate AND :endDate ORDER BY o.createdAt DESC")
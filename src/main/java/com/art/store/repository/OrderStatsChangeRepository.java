@@ -0,0 +1,21 @@
+package com.art.store.repository;
+
+import com.art.store.entity.OrderStatsChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface OrderStatsChangeRepository extends JpaRepository<OrderStatsChange, Long> {
+    
+    @Query("SELECT DISTINCT c.statDate FROM OrderStatsChange c ORDER BY c.statDate")
+    List<LocalDate> findPendingDays(Pageable pageable);
+    
+    // Every day with at least one order, for the backfill
+    @Query("SELECT DISTINCT cast(o.createdAt as LocalDate) FROM Order o")
+    List<LocalDate> findOrderDays();
+}
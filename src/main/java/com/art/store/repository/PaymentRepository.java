@@ -10,10 +10,12 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface PaymentRepository extends JpaRepository<Payment, Long> {
+public interface PaymentRepository extends JpaRepository<Payment, Long>, PaymentRepositoryCustom {
     
     Optional<Payment> findByStripePaymentIntentId(String stripePaymentIntentId);
     
+    boolean existsByStripePaymentIntentId(String stripePaymentIntentId);
+    
     @Query("SELECT p FROM Payment p WHERE p.stripePaymentIntentId = :paymentIntentId AND p.stripePaymentIntentId IS NOT NULL")
     Optional<Payment> findByStripePaymentIntentIdNotNull(@Param("paymentIntentId") String stripePaymentIntentId);
     
@@ -0,0 +1,32 @@
+package com.art.store.repository;
+
+import com.art.store.entity.Order;
+import com.art.store.entity.Payment;
+import com.art.store.event.OrderStatusChangedEvent;
+
+import java.util.Optional;
+
+public interface PaymentRepositoryCustom {
+    
+    /**
+     * Mark the payment for the intent SUCCEEDED and its order PAID with two guarded updates. Only
+     * payments not already in a final state move, so a late or repeated event can't regress
+     * status. Returns the order's new state when the order changed
+     */
+    Optional<OrderStatusChangedEvent> markPaymentIntentSucceeded(String paymentIntentId);
+    
+    /**
+     * Mark the payment for the intent FAILED and its order's payment FAILED with two guarded updates,
+     * unless either has already been paid or has already failed. Returns the order's new state when
+     * the order changed
+     */
+    Optional<OrderStatusChangedEvent> markPaymentIntentFailed(String paymentIntentId, String failureReason);
+    
+    /**
+     * Move the payment for the intent to {@code paymentStatus}, and its order's payment to
+     * {@code orderPaymentStatus} when one is given, with the same guards: only a payment and
+     * order that are not final move. Returns the order's new state when the order changed
+     */
+    Optional<OrderStatusChangedEvent> markPaymentIntentStatus(String paymentIntentId, Payment.PaymentStatus paymentStatus,
+                                                              Order.PaymentStatus orderPaymentStatus);
+}
@@ -0,0 +1,130 @@
+package com.art.store.repository;
+
+import com.art.store.entity.Order;
+import com.art.store.entity.Payment;
+import com.art.store.event.OrderStatusChangedEvent;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Webhook status transitions as guarded bulk updates: the payment moves only from a
+ * non-final status, and its order only when the payment did, so neither entity is loaded
+ * and a late or repeated event changes nothing
+ */
+public class PaymentRepositoryCustomImpl implements PaymentRepositoryCustom {
+    
+    private static final List<Payment.PaymentStatus> OPEN_PAYMENT_STATUSES = List.of(
+        Payment.PaymentStatus.PENDING, Payment.PaymentStatus.PROCESSING, Payment.PaymentStatus.FAILED);
+    
+    private static final List<Order.PaymentStatus> OPEN_ORDER_PAYMENT_STATUSES = List.of(
+        Order.PaymentStatus.PENDING, Order.PaymentStatus.PROCESSING, Order.PaymentStatus.FAILED);
+    
+    // A payment that already failed stays put, so a redelivered payment_failed publishes nothing
+    private static final List<Payment.PaymentStatus> FAILABLE_PAYMENT_STATUSES = List.of(
+        Payment.PaymentStatus.PENDING, Payment.PaymentStatus.PROCESSING);
+    
+    private static final List<Order.PaymentStatus> FAILABLE_ORDER_PAYMENT_STATUSES = List.of(
+        Order.PaymentStatus.PENDING, Order.PaymentStatus.PROCESSING);
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    public Optional<OrderStatusChangedEvent> markPaymentIntentSucceeded(String paymentIntentId) {
+        LocalDateTime now = LocalDateTime.now();
+        int payments = entityManager.createQuery(
+                "UPDATE Payment p SET p.status = :succeeded, p.updatedAt = :now " +
+                "WHERE p.stripePaymentIntentId = :intentId AND p.status IN :open")
+            .setParameter("succeeded", Payment.PaymentStatus.SUCCEEDED)
+            .setParameter("now", now)
+            .setParameter("intentId", paymentIntentId)
+            .setParameter("open", OPEN_PAYMENT_STATUSES)
+            .executeUpdate();
+        if (payments == 0) {
+            return Optional.empty();
+        }
+    
+        int orders = entityManager.createQuery(
+                "UPDATE Order o SET o.paymentStatus = :paid, " +
+                "o.status = CASE WHEN o.status = :pending THEN :confirmed ELSE o.status END, o.updatedAt = :now " +
+                "WHERE o.id = (SELECT p.order.id FROM Payment p WHERE p.stripePaymentIntentId = :intentId) " +
+                "AND o.paymentStatus IN :open")
+            .setParameter("paid", Order.PaymentStatus.PAID)
+            .setParameter("pending", Order.OrderStatus.PENDING)
+            .setParameter("confirmed", Order.OrderStatus.CONFIRMED)
+            .setParameter("now", now)
+            .setParameter("intentId", paymentIntentId)
+            .setParameter("open", OPEN_ORDER_PAYMENT_STATUSES)
+            .executeUpdate();
+        return orders == 0 ? Optional.empty() : orderState(paymentIntentId);
+    }
+    
+    @Override
+    public Optional<OrderStatusChangedEvent> markPaymentIntentFailed(String paymentIntentId, String failureReason) {
+        LocalDateTime now = LocalDateTime.now();
+        int payments = entityManager.createQuery(
+                "UPDATE Payment p SET p.status = :failed, p.failureReason = :reason, p.updatedAt = :now " +
+                "WHERE p.stripePaymentIntentId = :intentId AND p.status IN :open")
+            .setParameter("failed", Payment.PaymentStatus.FAILED)
+            .setParameter("reason", failureReason)
+            .setParameter("now", now)
+            .setParameter("intentId", paymentIntentId)
+            .setParameter("open", FAILABLE_PAYMENT_STATUSES)
+            .executeUpdate();
+        if (payments == 0) {
+            return Optional.empty();
+        }
+    
+        int orders = entityManager.createQuery(
+                "UPDATE Order o SET o.paymentStatus = :failed, o.updatedAt = :now " +
+                "WHERE o.id = (SELECT p.order.id FROM Payment p WHERE p.stripePaymentIntentId = :intentId) " +
+                "AND o.paymentStatus IN :open")
+            .setParameter("failed", Order.PaymentStatus.FAILED)
+            .setParameter("now", now)
+            .setParameter("intentId", paymentIntentId)
+            .setParameter("open", FAILABLE_ORDER_PAYMENT_STATUSES)
+            .executeUpdate();
+        return orders == 0 ? Optional.empty() : orderState(paymentIntentId);
+    }
+    
+    @Override
+    public Optional<OrderStatusChangedEvent> markPaymentIntentStatus(String paymentIntentId, Payment.PaymentStatus paymentStatus,
+                                                                     Order.PaymentStatus orderPaymentStatus) {
+        LocalDateTime now = LocalDateTime.now();
+        int payments = entityManager.createQuery(
+                "UPDATE Payment p SET p.status = :status, p.updatedAt = :now " +
+                "WHERE p.stripePaymentIntentId = :intentId AND p.status IN :open AND p.status <> :status")
+            .setParameter("status", paymentStatus)
+            .setParameter("now", now)
+            .setParameter("intentId", paymentIntentId)
+            .setParameter("open", OPEN_PAYMENT_STATUSES)
+            .executeUpdate();
+        if (payments == 0 || orderPaymentStatus == null) {
+            return Optional.empty();
+        }
+    
+        int orders = entityManager.createQuery(
+                "UPDATE Order o SET o.paymentStatus = :status, o.updatedAt = :now " +
+                "WHERE o.id = (SELECT p.order.id FROM Payment p WHERE p.stripePaymentIntentId = :intentId) " +
+                "AND o.paymentStatus IN :open AND o.paymentStatus <> :status")
+            .setParameter("status", orderPaymentStatus)
+            .setParameter("now", now)
+            .setParameter("intentId", paymentIntentId)
+            .setParameter("open", OPEN_ORDER_PAYMENT_STATUSES)
+            .executeUpdate();
+        return orders == 0 ? Optional.empty() : orderState(paymentIntentId);
+    }
+    
+    private Optional<OrderStatusChangedEvent> orderState(String paymentIntentId) {
+        return entityManager.createQuery(
+                "SELECT new com.art.store.event.OrderStatusChangedEvent(o.id, o.orderId, o.status, o.paymentStatus, o.createdAt) " +
+                "FROM Payment p JOIN p.order o WHERE p.stripePaymentIntentId = :intentId", OrderStatusChangedEvent.class)
+            .setParameter("intentId", paymentIntentId)
+            .getResultStream()
+            .findFirst();
+    }
+}
@@ -0,0 +1,18 @@
+package com.art.store.repository;
+
+import com.art.store.entity.ProcessedStripeEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface ProcessedStripeEventRepository extends JpaRepository<ProcessedStripeEvent, String> {
+    
+    @Modifying
+    @Query("DELETE FROM ProcessedStripeEvent e WHERE e.processedAt < :cutoff")
+    int deleteProcessedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
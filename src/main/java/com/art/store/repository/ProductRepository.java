@@ -1,33 +1,43 @@
 package com.art.store.repository;
 
 import com.art.store.entity.Product;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long> {
-    
-    List<Product> findByActiveTrue();
-    
-    List<Product> findByActiveTrueAndCategoryIgnoreCase(String category);
-    
-    @Query("SELECT p FROM Product p WHERE p.active = true AND " +
-           "LOWER(p.name) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
-           "LOWER(p.category) LIKE LOWER(CONCAT('%', :searchTerm, '%'))")
-    List<Product> findByActiveTrueAndSearchTerm(@Param("searchTerm") String searchTerm);
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductRepositoryCustom {
     
     Optional<Product> findByIdAndActiveTrue(Long id);
     
     @Query("SELECT DISTINCT p.category FROM Product p WHERE p.active = true ORDER BY p.category")
     List<String> findDistinctCategoriesByActiveTrue();
     
-    @Query("SELECT p FROM Product p WHERE p.active = true AND p.stockQuantity > 0")
-    List<Product> findAvailableProducts();
+    List<Product> findByActiveTrueOrderByCreatedAtDescIdDesc();
+    
+    /** Active products whose Stripe Price is missing or no longer matches their name or price */
+    @Query("SELECT p FROM Product p WHERE p.active = true AND (p.stripePriceId IS NULL " +
+           "OR p.stripePriceAmount <> p.price OR p.stripeProductName IS NULL OR p.stripeProductName <> p.name) " +
+           "ORDER BY p.id")
+    List<Product> findNeedingStripeSync(Pageable pageable);
+    
+    /** Bulk update so recording the sync doesn't bump updatedAt */
+    @Modifying
+    @Query("UPDATE Product p SET p.stripeProductId = :stripeProductId, p.stripePriceId = :stripePriceId, " +
+           "p.stripePriceAmount = :amount, p.stripeProductName = :name WHERE p.id = :id")
+    int recordStripeSync(@Param("id") Long id,
+                         @Param("stripeProductId") String stripeProductId,
+                         @Param("stripePriceId") String stripePriceId,
+                         @Param("amount") BigDecimal amount,
+                         @Param("name") String name);
     
-    List<Product> findByActiveTrueOrderByCreatedAtDesc();
+    @Query("SELECT p.id, p.stripePriceId, p.stripePriceAmount FROM Product p WHERE p.stripePriceId IS NOT NULL")
+    List<Object[]> findStripePrices();
 }
\ No newline at end of file
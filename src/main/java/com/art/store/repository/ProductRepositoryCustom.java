@@ -0,0 +1,19 @@
+package com.art.store.repository;
+
+import java.util.List;
+import java.util.SortedMap;
+
+public interface ProductRepositoryCustom {
+    
+    /**
+     * Decrement stock for every product in one batched round trip. Each row is only
+     * updated if it still has enough stock; returns the ids that could not be decremented.
+     */
+    List<Long> decrementStock(SortedMap<Long, Integer> quantitiesByProductId);
+    
+    /**
+     * Add stock back for every product in one batched round trip, as an in-place increment
+     * so a concurrent checkout's decrement is never overwritten.
+     */
+    void incrementStock(SortedMap<Long, Integer> quantitiesByProductId);
+}
@@ -0,0 +1,84 @@
+package com.art.store.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+public class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
+    
+    private static final String DECREMENT_STOCK_SQL =
+        "UPDATE products SET stock_quantity = stock_quantity - ?, updated_at = ? " +
+        "WHERE id = ? AND stock_quantity >= ?";
+    
+    private static final String INCREMENT_STOCK_SQL =
+        "UPDATE products SET stock_quantity = stock_quantity + ?, updated_at = ? WHERE id = ?";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    public ProductRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    @Override
+    public List<Long> decrementStock(SortedMap<Long, Integer> quantitiesByProductId) {
+        // Rows are updated in id order so concurrent checkouts lock them in the same order
+        List<Map.Entry<Long, Integer>> lines = new ArrayList<>(quantitiesByProductId.entrySet());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        
+        int[] updated = jdbcTemplate.batchUpdate(DECREMENT_STOCK_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Map.Entry<Long, Integer> line = lines.get(i);
+                ps.setInt(1, line.getValue());
+                ps.setTimestamp(2, now);
+                ps.setLong(3, line.getKey());
+                ps.setInt(4, line.getValue());
+            }
+            
+            @Override
+            public int getBatchSize() {
+                return lines.size();
+            }
+        });
+        
+        List<Long> insufficient = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                insufficient.add(lines.get(i).getKey());
+            }
+        }
+        return insufficient;
+    }
+    
+    @Override
+    public void incrementStock(SortedMap<Long, Integer> quantitiesByProductId) {
+        // Same id order as decrementStock, so a cancel and a checkout never lock rows in opposite order
+        List<Map.Entry<Long, Integer>> lines = new ArrayList<>(quantitiesByProductId.entrySet());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        
+        jdbcTemplate.batchUpdate(INCREMENT_STOCK_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Map.Entry<Long, Integer> line = lines.get(i);
+                ps.setInt(1, line.getValue());
+                ps.setTimestamp(2, now);
+                ps.setLong(3, line.getKey());
+            }
+            
+            @Override
+            public int getBatchSize() {
+                return lines.size();
+            }
+        });
+    }
+}
@@ -0,0 +1,21 @@
+package com.art.store.repository;
+
+import com.art.store.entity.StripePayload;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface StripePayloadRepository extends JpaRepository<StripePayload, Long> {
+    
+    Optional<StripePayload> findFirstByStripeObjectIdOrderByIdDesc(String stripeObjectId);
+    
+    @Modifying
+    @Query("DELETE FROM StripePayload p WHERE p.receivedAt < :cutoff")
+    int deleteReceivedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,41 @@
+package com.art.store.repository;
+
+import com.art.store.entity.WebhookInboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface WebhookInboxRepository extends JpaRepository<WebhookInboxEvent, Long> {
+    
+    Optional<WebhookInboxEvent> findByStripeEventId(String stripeEventId);
+    
+    /**
+     * Lock the next due events, skipping rows another worker already holds. An event is only
+     * due once every event received earlier for the same order key has finished. Ids come from a
+     * pooled sequence and say nothing about which instance received first, so order is by
+     * received_at (as stamped by the receiving instance's clock), with the id only breaking ties
+     */
+    @Query(value = "SELECT i.* FROM stripe_webhook_inbox i " +
+                   "WHERE i.status = 'PENDING' AND i.next_attempt_at <= :now " +
+                   "AND NOT EXISTS (SELECT 1 FROM stripe_webhook_inbox e " +
+                   "WHERE e.order_key = i.order_key AND e.status IN ('PENDING', 'PROCESSING') " +
+                   "AND (e.received_at < i.received_at OR (e.received_at = i.received_at AND e.id < i.id))) " +
+                   "ORDER BY i.received_at, i.id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<WebhookInboxEvent> lockDueEvents(@Param("now") LocalDateTime now, @Param("limit") int limit);
+    
+    @Query("SELECT COUNT(e) FROM WebhookInboxEvent e WHERE e.status = :status")
+    Long countByStatus(@Param("status") WebhookInboxEvent.Status status);
+    
+    /** Return events claimed by a worker that died before finishing them */
+    @Modifying
+    @Query("UPDATE WebhookInboxEvent e SET e.status = com.art.store.entity.WebhookInboxEvent.Status.PENDING, e.claimedAt = null " +
+           "WHERE e.status = com.art.store.entity.WebhookInboxEvent.Status.PROCESSING AND e.claimedAt < :cutoff")
+    int releaseStaleClaims(@Param("cutoff") LocalDateTime cutoff);
+}
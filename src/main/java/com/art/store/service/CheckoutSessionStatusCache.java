@@ -0,0 +1,104 @@
+package com.art.store.service;
+
+import com.art.store.cache.BoundedLruCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * Local copy of Checkout Session statuses. Sessions that are settled or expired can't change
+ * again and are kept until evicted; other sessions are only trusted for a short TTL
+ */
+@Component
+public class CheckoutSessionStatusCache {
+    
+    private final BoundedLruCache<String, SessionStatus> finalStatuses;
+    private final BoundedLruCache<String, SessionStatus> openStatuses;
+    private final long openTtlMillis;
+    private final Counter finalHits;
+    private final Counter openHits;
+    private final Counter misses;
+    
+    @Autowired
+    public CheckoutSessionStatusCache(MeterRegistry meterRegistry,
+                                      @Value("${app.payments.session-cache.max-final-entries:50000}") int maxFinalEntries,
+                                      @Value("${app.payments.session-cache.max-open-entries:10000}") int maxOpenEntries,
+                                      @Value("${app.payments.session-cache.open-ttl-ms:5000}") long openTtlMillis) {
+        this.finalStatuses = new BoundedLruCache<>(maxFinalEntries);
+        this.openStatuses = new BoundedLruCache<>(maxOpenEntries);
+        this.openTtlMillis = openTtlMillis;
+        this.finalHits = meterRegistry.counter("payments.session_status.cache", "result", "hit", "state", "final");
+        this.openHits = meterRegistry.counter("payments.session_status.cache", "result", "hit", "state", "open");
+        this.misses = meterRegistry.counter("payments.session_status.cache", "result", "miss", "state", "none");
+    }
+    
+    public Optional<SessionStatus> get(String sessionId) {
+        SessionStatus status = finalStatuses.get(sessionId);
+        if (status != null) {
+            finalHits.increment();
+            return Optional.of(status);
+        }
+        
+        status = openStatuses.get(sessionId);
+        if (status != null && System.currentTimeMillis() - status.cachedAt < openTtlMillis) {
+            openHits.increment();
+            return Optional.of(status);
+        }
+        
+        misses.increment();
+        return Optional.empty();
+    }
+    
+    public void put(String sessionId, SessionStatus status) {
+        if (status.isFinal()) {
+            finalStatuses.put(sessionId, status);
+            openStatuses.remove(sessionId);
+        } else {
+            openStatuses.put(sessionId, status);
+        }
+    }
+    
+    public static final class SessionStatus {
+        private final String sessionStatus;
+        private final String paymentStatus;
+        private final String orderId;
+        private final String customerEmail;
+        private final long cachedAt = System.currentTimeMillis();
+        
+        public SessionStatus(String sessionStatus, String paymentStatus, String orderId, String customerEmail) {
+            this.sessionStatus = sessionStatus;
+            this.paymentStatus = paymentStatus;
+            this.orderId = orderId;
+            this.customerEmail = customerEmail;
+        }
+        
+        public String getSessionStatus() {
+            return sessionStatus;
+        }
+        
+        public String getPaymentStatus() {
+            return paymentStatus;
+        }
+        
+        public String getOrderId() {
+            return orderId;
+        }
+        
+        public String getCustomerEmail() {
+            return customerEmail;
+        }
+        
+        /**
+         * A session that is expired, or complete with its payment settled, will never change
+         * again. A complete but unpaid session is still waiting on a delayed payment method
+         */
+        public boolean isFinal() {
+            return "expired".equals(sessionStatus)
+                || ("complete".equals(sessionStatus) && !"unpaid".equals(paymentStatus));
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.art.store.service;
+
+import com.art.store.entity.EmailOutboxMessage;
+import com.art.store.entity.Order;
+import com.art.store.repository.OrderRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Sends the email outbox in batches. Batches are claimed one after another on the scheduler
+ * thread and handed to a fixed pool of senders; each sender delivers its whole batch over one
+ * SMTP connection, so the pool size bounds the connections held open against the mail server
+ */
+@Component
+@ConditionalOnProperty(prefix = "spring.mail", name = "host")
+public class EmailOutboxDispatcher {
+    
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutboxDispatcher.class);
+    
+    private final EmailOutboxService outboxService;
+    private final EmailService emailService;
+    private final OrderRepository orderRepository;
+    private final ExecutorService senders;
+    private final int concurrency;
+    
+    @Value("${app.mail.outbox.batch-size:50}")
+    private int batchSize;
+    
+    @Value("${app.mail.outbox.stale-after-seconds:300}")
+    private long staleAfterSeconds;
+    
+    @Value("${app.mail.outbox.retention-days:30}")
+    private long retentionDays;
+    
+    @Autowired
+    public EmailOutboxDispatcher(EmailOutboxService outboxService, EmailService emailService,
+                                 OrderRepository orderRepository,
+                                 @Value("${app.mail.outbox.concurrency:2}") int concurrency) {
+        this.outboxService = outboxService;
+        this.emailService = emailService;
+        this.orderRepository = orderRepository;
+        this.concurrency = concurrency;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "email-outbox-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    @Scheduled(fixedDelayString = "${app.mail.outbox.poll-interval-ms:2000}")
+    public void drain() {
+        try {
+            List<Callable<Void>> tasks;
+            while (!(tasks = claimBatches()).isEmpty()) {
+                senders.invokeAll(tasks);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Failed to drain email outbox", e);
+        } finally {
+            outboxService.refreshPendingCount();
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${app.mail.outbox.stale-check-interval-ms:60000}")
+    public void releaseStaleClaims() {
+        int released = outboxService.releaseStaleClaims(Duration.ofSeconds(staleAfterSeconds));
+        if (released > 0) {
+            logger.warn("Released {} outbox emails left claimed by a stopped dispatcher", released);
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${app.mail.outbox.sweep-interval-ms:3600000}")
+    public void sweepSentMessages() {
+        int removed = outboxService.sweepSentMessages(Duration.ofDays(retentionDays));
+        if (removed > 0) {
+            logger.info("Removed {} sent outbox emails older than {} days", removed, retentionDays);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        senders.shutdown();
+        senders.awaitTermination(10, TimeUnit.SECONDS);
+    }
+    
+    private List<Callable<Void>> claimBatches() {
+        List<Callable<Void>> tasks = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            List<EmailOutboxMessage> batch = outboxService.claimBatch(batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+            tasks.add(() -> {
+                send(batch);
+                return null;
+            });
+        }
+        return tasks;
+    }
+    
+    private void send(List<EmailOutboxMessage> batch) {
+        Set<Long> sent = new HashSet<>();
+        Map<Long, Exception> failures = new HashMap<>();
+        try {
+            // One query for every order in the batch, items and products included
+            Set<Long> orderIds = batch.stream().map(EmailOutboxMessage::getOrderId).collect(Collectors.toSet());
+            Map<Long, Order> orders = orderRepository.findWithItemsByIdIn(orderIds).stream()
+                .collect(Collectors.toMap(Order::getId, Function.identity()));
+            
+            Map<MimeMessage, Long> outboxIds = new IdentityHashMap<>();
+            List<MimeMessage> messages = new ArrayList<>(batch.size());
+            for (EmailOutboxMessage outboxMessage : batch) {
+                Order order = orders.get(outboxMessage.getOrderId());
+                if (order == null) {
+                    failures.put(outboxMessage.getId(), new IllegalStateException("Order not found: " + outboxMessage.getOrderId()));
+                    continue;
+                }
+                try {
+                    MimeMessage message = emailService.render(outboxMessage.getKind(), order);
+                    outboxIds.put(message, outboxMessage.getId());
+                    messages.add(message);
+                } catch (Exception e) {
+                    failures.put(outboxMessage.getId(), e);
+                }
+            }
+            
+            if (!messages.isEmpty()) {
+                Map<MimeMessage, Exception> rejected = emailService.sendAll(messages);
+                for (MimeMessage message : messages) {
+                    Exception reason = rejected.get(message);
+                    if (reason == null) {
+                        sent.add(outboxIds.get(message));
+                    } else {
+                        failures.put(outboxIds.get(message), reason);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            for (EmailOutboxMessage outboxMessage : batch) {
+                if (!sent.contains(outboxMessage.getId())) {
+                    failures.putIfAbsent(outboxMessage.getId(), e);
+                }
+            }
+        }
+        outboxService.recordResults(batch, sent, failures);
+    }
+}
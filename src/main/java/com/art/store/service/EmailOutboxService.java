@@ -0,0 +1,176 @@
+package com.art.store.service;
+
+import com.art.store.entity.EmailOutboxMessage;
+import com.art.store.repository.EmailOutboxRepository;
+import com.art.store.repository.OrderRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.mail.Address;
+import jakarta.mail.SendFailedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transactional outbox for order emails. Messages are written by the same transaction that
+ * marks the order PAID, so an email is queued exactly when the payment commits, and checkout
+ * never waits on SMTP. {@link EmailOutboxDispatcher} sends them later; delivery is at least once
+ */
+@Service
+public class EmailOutboxService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutboxService.class);
+    
+    private static final long MAX_RETRY_BACKOFF_MS = Duration.ofHours(1).toMillis();
+    
+    private final EmailOutboxRepository outboxRepository;
+    private final OrderRepository orderRepository;
+    private final boolean enabled;
+    private final Counter queuedCounter;
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+    private final Counter deadCounter;
+    private final Timer lagTimer;
+    private final AtomicLong pendingMessages = new AtomicLong();
+    
+    @Value("${app.mail.outbox.max-attempts:8}")
+    private int maxAttempts;
+    
+    @Value("${app.mail.outbox.retry-backoff-ms:30000}")
+    private long retryBackoffMs;
+    
+    @Autowired
+    public EmailOutboxService(EmailOutboxRepository outboxRepository, OrderRepository orderRepository,
+                              MeterRegistry meterRegistry, @Value("${spring.mail.host:}") String mailHost) {
+        this.outboxRepository = outboxRepository;
+        this.orderRepository = orderRepository;
+        // Without a mail server nothing would ever drain the outbox, so don't fill it
+        this.enabled = !mailHost.isBlank();
+        this.queuedCounter = meterRegistry.counter("email.outbox.queued");
+        this.sentCounter = meterRegistry.counter("email.outbox.sent");
+        this.failedCounter = meterRegistry.counter("email.outbox.failed");
+        this.deadCounter = meterRegistry.counter("email.outbox.dead");
+        this.lagTimer = meterRegistry.timer("email.outbox.lag");
+        Gauge.builder("email.outbox.pending", pendingMessages, AtomicLong::get)
+            .description("Emails waiting in the outbox as of the last drain")
+            .register(meterRegistry);
+    }
+    
+    /**
+     * Queue the customer confirmation and the admin notification for an order that just
+     * became PAID. Must run in the transaction that records the payment. Safe to call again
+     * for the same order: a second call queues nothing instead of failing the payment
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueOrderPaid(Long orderId) {
+        if (!enabled) {
+            return;
+        }
+        // Two handlers can both see the order move to PAID; the order's row lock makes the
+        // later one wait for the earlier to commit and then find its emails already queued
+        orderRepository.lockById(orderId);
+        if (outboxRepository.existsByOrderId(orderId)) {
+            logger.debug("Emails for order {} are already queued", orderId);
+            return;
+        }
+        outboxRepository.saveAll(List.of(
+            new EmailOutboxMessage(orderId, EmailOutboxMessage.Kind.CUSTOMER_CONFIRMATION),
+            new EmailOutboxMessage(orderId, EmailOutboxMessage.Kind.ADMIN_NOTIFICATION)));
+        queuedCounter.increment(2);
+    }
+    
+    /** Lock the next due messages and mark them as being sent */
+    @Transactional
+    public List<EmailOutboxMessage> claimBatch(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<EmailOutboxMessage> batch = outboxRepository.lockDueMessages(now, PageRequest.of(0, limit));
+        for (EmailOutboxMessage message : batch) {
+            message.setStatus(EmailOutboxMessage.Status.SENDING);
+            message.setClaimedAt(now);
+        }
+        return batch;
+    }
+    
+    /** Record the outcome of a sent batch: one bulk update for the delivered messages, then each failure */
+    @Transactional
+    public void recordResults(List<EmailOutboxMessage> batch, Collection<Long> sentIds, Map<Long, Exception> failures) {
+        LocalDateTime now = LocalDateTime.now();
+        if (!sentIds.isEmpty()) {
+            outboxRepository.markSent(sentIds, now);
+            sentCounter.increment(sentIds.size());
+            for (EmailOutboxMessage message : batch) {
+                if (sentIds.contains(message.getId())) {
+                    lagTimer.record(Duration.between(message.getCreatedAt(), now));
+                }
+            }
+        }
+        if (!failures.isEmpty()) {
+            for (EmailOutboxMessage message : outboxRepository.findAllById(failures.keySet())) {
+                recordFailure(message, failures.get(message.getId()), now);
+            }
+        }
+    }
+    
+    @Transactional
+    public int releaseStaleClaims(Duration staleAfter) {
+        return outboxRepository.releaseStaleClaims(LocalDateTime.now().minus(staleAfter));
+    }
+    
+    /** Delete sent messages older than the retention window; dead ones stay until someone looks at them */
+    @Transactional
+    public int sweepSentMessages(Duration retention) {
+        return outboxRepository.deleteSentBefore(LocalDateTime.now().minus(retention));
+    }
+    
+    @Transactional(readOnly = true)
+    public void refreshPendingCount() {
+        pendingMessages.set(outboxRepository.countByStatus(EmailOutboxMessage.Status.PENDING));
+    }
+    
+    /** Retry with exponential backoff; dead-letter once attempts run out or the server rejected the address */
+    private void recordFailure(EmailOutboxMessage message, Exception failure, LocalDateTime now) {
+        int attempts = message.getAttempts() + 1;
+        message.setAttempts(attempts);
+        message.setLastError(failure.toString());
+        message.setClaimedAt(null);
+        failedCounter.increment();
+        
+        if (attempts >= maxAttempts || isPermanent(failure)) {
+            message.setStatus(EmailOutboxMessage.Status.DEAD);
+            deadCounter.increment();
+            logger.error("Giving up on {} email for order {} after {} attempts",
+                message.getKind(), message.getOrderId(), attempts, failure);
+        } else {
+            long backoff = Math.min(retryBackoffMs << Math.min(attempts - 1, 20), MAX_RETRY_BACKOFF_MS);
+            message.setStatus(EmailOutboxMessage.Status.PENDING);
+            message.setNextAttemptAt(now.plusNanos(backoff * 1_000_000));
+            logger.warn("{} email for order {} failed (attempt {}), retrying in {} ms: {}",
+                message.getKind(), message.getOrderId(), attempts, backoff, failure.toString());
+        }
+    }
+    
+    // A 5xx reply to RCPT TO: resending the same message to the same address can't succeed
+    private static boolean isPermanent(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SendFailedException sendFailed) {
+                Address[] invalid = sendFailed.getInvalidAddresses();
+                return invalid != null && invalid.length > 0;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,100 @@
+package com.art.store.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * Signed lookup tokens for a customer's order history. A token is scoped to one email and
+ * expires; it is handed out with each order the customer places, so only someone who placed
+ * an order as that email can page through its history
+ */
+@Component
+public class OrderHistoryTokens {
+    
+    private static final Logger logger = LoggerFactory.getLogger(OrderHistoryTokens.class);
+    private static final String ALGORITHM = "HmacSHA256";
+    
+    private final SecretKeySpec key;
+    private final Duration ttl;
+    private final Clock clock;
+    
+    @Autowired
+    public OrderHistoryTokens(@Value("${app.orders.history.token-secret:}") String secret,
+                              @Value("${app.orders.history.token-ttl-hours:720}") long ttlHours) {
+        this(secret, Duration.ofHours(ttlHours), Clock.systemUTC());
+    }
+    
+    OrderHistoryTokens(String secret, Duration ttl, Clock clock) {
+        byte[] keyBytes;
+        if (secret == null || secret.isBlank()) {
+            // Tokens then only verify on this instance and only until it restarts
+            logger.warn("app.orders.history.token-secret is not set; using a random per-instance key");
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+    
+    /** A token for the email's history, as "expiry.signature" */
+    public String issue(String email) {
+        long expiresAt = clock.instant().plus(ttl).getEpochSecond();
+        return expiresAt + "." + sign(normalize(email), expiresAt);
+    }
+    
+    /** Whether the token was issued for this email and has not expired */
+    public boolean verify(String email, String token) {
+        if (email == null || token == null) {
+            return false;
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
+            return false;
+        }
+        long expiresAt;
+        try {
+            expiresAt = Long.parseLong(token.substring(0, dot));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (clock.instant().getEpochSecond() >= expiresAt) {
+            return false;
+        }
+        byte[] expected = sign(normalize(email), expiresAt).getBytes(StandardCharsets.US_ASCII);
+        byte[] actual = token.substring(dot + 1).getBytes(StandardCharsets.US_ASCII);
+        return MessageDigest.isEqual(expected, actual);
+    }
+    
+    private String sign(String email, long expiresAt) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            byte[] signature = mac.doFinal((email + "\n" + expiresAt).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    // Same folding as OrderService.getOrderHistory, so the token covers exactly the rows it pages
+    private static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
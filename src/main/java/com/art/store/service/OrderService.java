@@ -1,17 +1,34 @@
 package com.art.store.service;
 
+import com.art.store.catalog.ProductCatalog;
+import com.art.store.dto.KeysetCursor;
+import com.art.store.dto.OrderHistoryPage;
 import com.art.store.dto.OrderRequestDto;
+import com.art.store.dto.OrderSummaryDto;
+import com.art.store.dto.OrderView;
+import com.art.store.dto.OrderViewRow;
 import com.art.store.entity.Order;
 import com.art.store.entity.OrderItem;
 import com.art.store.entity.Product;
+import com.art.store.event.OrderStatusChangedEvent;
 import com.art.store.repository.OrderRepository;
 import com.art.store.repository.ProductRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 @Service
 @Transactional
@@ -20,14 +37,26 @@ public class OrderService {
     private final OrderRepository orderRepository;
     private final ProductRepository productRepository;
     private final ProductService productService;
+    private final ProductCatalog productCatalog;
+    private final ApplicationEventPublisher eventPublisher;
+    private final OrderViewCache orderViewCache;
+    private final OrderStatsService orderStatsService;
     
     @Autowired
     public OrderService(OrderRepository orderRepository, 
                        ProductRepository productRepository,
-                       ProductService productService) {
+                       ProductService productService,
+                       ProductCatalog productCatalog,
+                       ApplicationEventPublisher eventPublisher,
+                       OrderViewCache orderViewCache,
+                       OrderStatsService orderStatsService) {
         this.orderRepository = orderRepository;
         this.productRepository = productRepository;
         this.productService = productService;
+        this.productCatalog = productCatalog;
+        this.eventPublisher = eventPublisher;
+        this.orderViewCache = orderViewCache;
+        this.orderStatsService = orderStatsService;
     }
     
     public Order createOrder(OrderRequestDto orderRequest) {
@@ -59,33 +88,42 @@ public class OrderService {
         order.setTotalAmount(orderRequest.getTotal());
         order.setStatus(Order.OrderStatus.PENDING);
         
-        // Save order first to get ID
-        Order savedOrder = orderRepository.save(order);
+        // Load every referenced product in one query
+        Set<Long> productIds = new HashSet<>();
+        for (OrderRequestDto.CartItemDto cartItem : orderRequest.getCart()) {
+            productIds.add(cartItem.getId());
+        }
+        Map<Long, Product> productsById = new HashMap<>();
+        for (Product product : productRepository.findAllById(productIds)) {
+            productsById.put(product.getId(), product);
+        }
         
         // Create order items
+        SortedMap<Long, Integer> quantitiesByProductId = new TreeMap<>();
         for (OrderRequestDto.CartItemDto cartItem : orderRequest.getCart()) {
-            Optional<Product> productOpt = productRepository.findById(cartItem.getId());
-            if (productOpt.isPresent()) {
-                Product product = productOpt.get();
-                
-                // Check stock availability
-                if (product.getStockQuantity() < cartItem.getQuantity()) {
-                    throw new RuntimeException("Insufficient stock for product: " + product.getName());
-                }
-                
-                // Create order item
-                OrderItem orderItem = new OrderItem(product, cartItem.getQuantity(), cartItem.getPrice());
-                savedOrder.addOrderItem(orderItem);
-                
-                // Reduce product stock
-                productService.reduceStock(product.getId(), cartItem.getQuantity());
-            } else {
+            Product product = productsById.get(cartItem.getId());
+            if (product == null) {
                 throw new RuntimeException("Product not found with ID: " + cartItem.getId());
             }
+            if (cartItem.getQuantity() == null || cartItem.getQuantity() <= 0) {
+                throw new RuntimeException("Invalid quantity for product: " + product.getName());
+            }
+            
+            OrderItem orderItem = new OrderItem(product, cartItem.getQuantity(), cartItem.getPrice());
+            order.addOrderItem(orderItem);
+            quantitiesByProductId.merge(product.getId(), cartItem.getQuantity(), Integer::sum);
         }
         
-        // Save order with items
-        return orderRepository.save(savedOrder);
+        // Reduce stock for all lines with conditional updates; any shortfall rolls back the order
+        List<Long> insufficient = productService.reduceStock(quantitiesByProductId);
+        if (!insufficient.isEmpty()) {
+            throw new RuntimeException("Insufficient stock for product: " + productsById.get(insufficient.get(0)).getName());
+        }
+        
+        // Persist order and items together; they are written in a single flush at commit
+        Order saved = orderRepository.save(order);
+        eventPublisher.publishEvent(OrderStatusChangedEvent.of(saved));
+        return saved;
     }
     
     @Transactional(readOnly = true)
@@ -103,11 +141,41 @@ public class OrderService {
         return orderRepository.findByOrderId(orderId);
     }
     
+    /** Compact read model for the order page; a cache hit doesn't touch the database */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Optional<OrderView> getOrderView(String orderId) {
+        Optional<OrderView> cached = orderViewCache.get(orderId);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        
+        long generation = orderViewCache.generation();
+        List<OrderViewRow> rows = orderRepository.findViewRowsByOrderId(orderId);
+        if (rows.isEmpty()) {
+            return Optional.empty();
+        }
+        OrderView view = OrderView.from(rows);
+        orderViewCache.put(orderId, view, generation);
+        return Optional.of(view);
+    }
+    
     @Transactional(readOnly = true)
     public List<Order> getOrdersByEmail(String email) {
         return orderRepository.findByEmailIgnoreCaseOrderByCreatedAtDesc(email);
     }
     
+    /** One page of a customer's orders, newest first, seeking past the cursor when one is given */
+    @Transactional(readOnly = true)
+    public OrderHistoryPage getOrderHistory(String email, KeysetCursor after, int limit) {
+        String normalizedEmail = email.trim().toLowerCase(Locale.ROOT);
+        // One extra row tells us whether there is a next page without a count query
+        PageRequest firstRows = PageRequest.of(0, limit + 1);
+        List<OrderSummaryDto> rows = after == null
+            ? orderRepository.findHistoryFirstPage(normalizedEmail, firstRows)
+            : orderRepository.findHistoryPageAfter(normalizedEmail, after.getCreatedAt(), after.getId(), firstRows);
+        return OrderHistoryPage.of(rows, limit);
+    }
+    
     @Transactional(readOnly = true)
     public List<Order> getOrdersByStatus(Order.OrderStatus status) {
         return orderRepository.findByStatusOrderByCreatedAtDesc(status);
@@ -117,25 +185,30 @@ public class OrderService {
         return orderRepository.findById(orderId)
                 .map(order -> {
                     order.setStatus(newStatus);
-                    return orderRepository.save(order);
+                    Order saved = orderRepository.save(order);
+                    eventPublisher.publishEvent(OrderStatusChangedEvent.of(saved));
+                    return saved;
                 });
     }
     
     public boolean cancelOrder(Long orderId) {
-        return orderRepository.findById(orderId)
+        // Stock is restored for every line, so fetch the items and products up front
+        return orderRepository.findWithItemsById(orderId)
                 .map(order -> {
                     if (order.getStatus() == Order.OrderStatus.PENDING || 
                         order.getStatus() == Order.OrderStatus.CONFIRMED) {
                         
-                        // Restore stock for all items
+                        // Restore stock for all items with in-place increments, not a read-modify-write
+                        SortedMap<Long, Integer> restored = new TreeMap<>();
                         for (OrderItem item : order.getOrderItems()) {
-                            Product product = item.getProduct();
-                            product.setStockQuantity(product.getStockQuantity() + item.getQuantity());
-                            productRepository.save(product);
+                            restored.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
                         }
+                        productRepository.incrementStock(restored);
+                        productCatalog.markChanged();
                         
                         order.setStatus(Order.OrderStatus.CANCELLED);
                         orderRepository.save(order);
+                        eventPublisher.publishEvent(OrderStatusChangedEvent.of(order));
                         return true;
                     }
                     return false;
@@ -145,6 +218,7 @@ public class OrderService {
     
     @Transactional(readOnly = true)
     public Long getOrderCountByStatus(Order.OrderStatus status) {
-        return orderRepository.countByStatus(status);
+        // Answered from the daily rollup rather than a scan of orders
+        return orderStatsService.getOrderCount(status);
     }
 }
\ No newline at end of file
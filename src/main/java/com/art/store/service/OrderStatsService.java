@@ -0,0 +1,151 @@
+package com.art.store.service;
+
+import com.art.store.entity.Order;
+import com.art.store.entity.OrderStatsChange;
+import com.art.store.event.OrderStatusChangedEvent;
+import com.art.store.repository.DailyOrderStatRepository;
+import com.art.store.repository.DailyProductUnitsRepository;
+import com.art.store.repository.OrderStatsChangeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Daily order statistics. Every order write appends a row naming its day to a change feed in
+ * the same transaction; a scheduled fold rebuilds the rollup rows of the changed days from the
+ * orders table, so range queries only sum a few rollup rows. Results lag writes by at most
+ * one fold interval
+ */
+@Service
+public class OrderStatsService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(OrderStatsService.class);
+    
+    private final DailyOrderStatRepository orderStatRepository;
+    private final DailyProductUnitsRepository productUnitsRepository;
+    private final OrderStatsChangeRepository changeRepository;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate writeTransaction;
+    
+    @Value("${app.stats.fold-batch-size:50}")
+    private int foldBatchSize;
+    
+    @Autowired
+    public OrderStatsService(DailyOrderStatRepository orderStatRepository,
+                             DailyProductUnitsRepository productUnitsRepository,
+                             OrderStatsChangeRepository changeRepository,
+                             PlatformTransactionManager transactionManager) {
+        this.orderStatRepository = orderStatRepository;
+        this.productUnitsRepository = productUnitsRepository;
+        this.changeRepository = changeRepository;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+    }
+    
+    /** Record the change in the order's own transaction, so a committed order is never missed */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onOrderChanged(OrderStatusChangedEvent event) {
+        LocalDate day = event.getCreatedAt() != null ? event.getCreatedAt().toLocalDate() : LocalDate.now();
+        changeRepository.save(new OrderStatsChange(day));
+    }
+    
+    /**
+     * Rebuild the rollup rows of every day with pending changes, one day per transaction.
+     * The day's change rows stay locked while it is rebuilt, and only the rows that were read
+     * are deleted, so a change committed mid-rebuild is folded on the next run
+     */
+    @Scheduled(fixedDelayString = "${app.stats.fold-interval-ms:10000}")
+    public void foldPendingChanges() {
+        List<LocalDate> days;
+        do {
+            days = readTransaction.execute(status -> changeRepository.findPendingDays(PageRequest.of(0, foldBatchSize)));
+            for (LocalDate day : days) {
+                writeTransaction.executeWithoutResult(status -> {
+                    List<Long> changeIds = orderStatRepository.lockPendingChanges(day);
+                    if (!changeIds.isEmpty()) {
+                        orderStatRepository.rebuildDay(day);
+                        changeRepository.deleteAllByIdInBatch(changeIds);
+                    }
+                });
+            }
+        } while (days.size() == foldBatchSize);
+    }
+    
+    /** Queue every day that has orders when the rollup has never been built, e.g. right after the migration */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        boolean empty = Boolean.TRUE.equals(readTransaction.execute(status ->
+            orderStatRepository.count() == 0 && changeRepository.count() == 0));
+        if (empty) {
+            int queued = backfill();
+            if (queued > 0) {
+                logger.info("Queued {} days of orders for the daily statistics backfill", queued);
+            }
+        }
+    }
+    
+    /** Queue a rebuild of every day that has orders; the fold does the work */
+    @Transactional
+    public int backfill() {
+        List<LocalDate> days = changeRepository.findOrderDays();
+        changeRepository.saveAll(days.stream().map(OrderStatsChange::new).toList());
+        return days.size();
+    }
+    
+    @Transactional(readOnly = true)
+    public Map<Order.OrderStatus, Long> getOrderCountsByStatus(LocalDate from, LocalDate to) {
+        Map<Order.OrderStatus, Long> counts = new EnumMap<>(Order.OrderStatus.class);
+        for (Order.OrderStatus status : Order.OrderStatus.values()) {
+            counts.put(status, 0L);
+        }
+        for (Object[] row : orderStatRepository.sumOrderCountsByStatus(from, to)) {
+            counts.put((Order.OrderStatus) row[0], ((Number) row[1]).longValue());
+        }
+        return counts;
+    }
+    
+    @Transactional(readOnly = true)
+    public Long getOrderCount(Order.OrderStatus status) {
+        return orderStatRepository.sumOrderCount(status);
+    }
+    
+    /** Totals of orders placed in the range that were not cancelled */
+    @Transactional(readOnly = true)
+    public BigDecimal getRevenue(LocalDate from, LocalDate to) {
+        return orderStatRepository.sumRevenue(from, to, Order.OrderStatus.CANCELLED);
+    }
+    
+    /** Totals of orders placed in the range that have been paid */
+    @Transactional(readOnly = true)
+    public BigDecimal getPaidRevenue(LocalDate from, LocalDate to) {
+        return orderStatRepository.sumPaidRevenue(from, to);
+    }
+    
+    @Transactional(readOnly = true)
+    public Map<Long, Long> getUnitsByProduct(LocalDate from, LocalDate to) {
+        Map<Long, Long> units = new HashMap<>();
+        for (Object[] row : productUnitsRepository.sumUnitsByProduct(from, to)) {
+            units.put((Long) row[0], ((Number) row[1]).longValue());
+        }
+        return units;
+    }
+}
@@ -0,0 +1,76 @@
+package com.art.store.service;
+
+import com.art.store.cache.BoundedLruCache;
+import com.art.store.dto.OrderView;
+import com.art.store.event.OrderStatusChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Order views by external order id. Entries are dropped when a status change commits; the TTL
+ * bounds staleness for changes made by another instance
+ */
+@Component
+public class OrderViewCache {
+    
+    private final BoundedLruCache<String, CachedView> views;
+    private final long ttlMillis;
+    // Bumped on every invalidation so a load that raced a commit is not cached
+    private final AtomicLong generation = new AtomicLong();
+    private final Counter hits;
+    private final Counter misses;
+    
+    @Autowired
+    public OrderViewCache(MeterRegistry meterRegistry,
+                          @Value("${app.orders.view-cache.max-entries:10000}") int maxEntries,
+                          @Value("${app.orders.view-cache.ttl-ms:30000}") long ttlMillis) {
+        this.views = new BoundedLruCache<>(maxEntries);
+        this.ttlMillis = ttlMillis;
+        this.hits = meterRegistry.counter("orders.view.cache", "result", "hit");
+        this.misses = meterRegistry.counter("orders.view.cache", "result", "miss");
+    }
+    
+    public Optional<OrderView> get(String orderId) {
+        CachedView cached = views.get(orderId);
+        if (cached != null && System.currentTimeMillis() - cached.cachedAt < ttlMillis) {
+            hits.increment();
+            return Optional.of(cached.view);
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+    
+    /** Read before loading from the database and hand back to {@link #put} */
+    public long generation() {
+        return generation.get();
+    }
+    
+    public void put(String orderId, OrderView view, long loadedAtGeneration) {
+        if (generation.get() == loadedAtGeneration) {
+            views.put(orderId, new CachedView(view));
+        }
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        generation.incrementAndGet();
+        views.remove(event.getOrderId());
+    }
+    
+    private static final class CachedView {
+        private final OrderView view;
+        private final long cachedAt = System.currentTimeMillis();
+        
+        private CachedView(OrderView view) {
+            this.view = view;
+        }
+    }
+}
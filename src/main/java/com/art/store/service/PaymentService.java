@@ -1,95 +1,350 @@
 package com.art.store.service;
 
+import com.art.store.cache.BoundedLruCache;
+import com.art.store.dto.PaymentIntentResultDto;
 import com.art.store.entity.Order;
 import com.art.store.entity.OrderItem;
 import com.art.store.entity.Payment;
+import com.art.store.event.OrderStatusChangedEvent;
 import com.art.store.repository.OrderRepository;
 import com.art.store.repository.PaymentRepository;
+import com.stripe.exception.InvalidRequestException;
 import com.stripe.exception.StripeException;
 import com.stripe.model.Event;
 import com.stripe.model.EventDataObjectDeserializer;
 import com.stripe.model.PaymentIntent;
 import com.stripe.model.StripeObject;
 import com.stripe.model.checkout.Session;
-import com.stripe.net.Webhook;
 import com.stripe.param.checkout.SessionCreateParams;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.math.BigDecimal;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
-@Transactional
 public class PaymentService {
     
+    private static final Logger logger = LoggerFactory.getLogger(PaymentService.class);
+    
     private final StripeService stripeService;
     private final PaymentRepository paymentRepository;
     private final OrderRepository orderRepository;
-//    private final EmailService emailService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CheckoutSessionStatusCache sessionStatusCache;
+    private final StripePriceRegistry priceRegistry;
+    private final StripePayloadService payloadService;
+    private final EmailOutboxService emailOutboxService;
+    private final Counter sessionLookupCounter;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate writeTransaction;
+    
+    // Orders with a Stripe create call in flight on this instance
+    private final Set<Long> paymentsInFlight = ConcurrentHashMap.newKeySet();
+    
+    // PaymentIntent statuses in which an intent can still be confirmed and its amount changed
+    private static final Set<String> REUSABLE_INTENT_STATUSES =
+        Set.of("requires_payment_method", "requires_confirmation", "requires_action");
     
-    @Value("${stripe.webhook.secret:whsec_YOUR_WEBHOOK_SECRET_HERE}")
-    private String webhookSecret;
+    private final BoundedLruCache<Long, CachedClientSecret> clientSecrets;
+    private final Counter clientSecretHits;
+    private final Counter clientSecretMisses;
+    
+    @Value("${app.payments.client-secret-ttl-ms:60000}")
+    private long clientSecretTtlMs;
     
     @Autowired
-    public PaymentService(StripeService stripeService, PaymentRepository paymentRepository, OrderRepository orderRepository) {
+    public PaymentService(StripeService stripeService, PaymentRepository paymentRepository, OrderRepository orderRepository,
+                          ApplicationEventPublisher eventPublisher, CheckoutSessionStatusCache sessionStatusCache,
+                          StripePriceRegistry priceRegistry, StripePayloadService payloadService,
+                          EmailOutboxService emailOutboxService, MeterRegistry meterRegistry, PlatformTransactionManager transactionManager) {
         this.stripeService = stripeService;
         this.paymentRepository = paymentRepository;
         this.orderRepository = orderRepository;
-//        this.emailService = emailService;
+        this.eventPublisher = eventPublisher;
+        this.sessionStatusCache = sessionStatusCache;
+        this.priceRegistry = priceRegistry;
+        this.payloadService = payloadService;
+        this.emailOutboxService = emailOutboxService;
+        this.sessionLookupCounter = meterRegistry.counter("payments.session_status.stripe_calls");
+        this.clientSecrets = new BoundedLruCache<>(10_000);
+        this.clientSecretHits = meterRegistry.counter("payments.client_secret.cache", "result", "hit");
+        this.clientSecretMisses = meterRegistry.counter("payments.client_secret.cache", "result", "miss");
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
     }
     
-    public PaymentIntent createPaymentIntent(Order order, String currency) throws StripeException {
-        // Check if payment already exists for this order
-        Optional<Payment> existingPayment = paymentRepository.findByOrderId(order.getId());
-        if (existingPayment.isPresent()) {
-            Payment payment = existingPayment.get();
-            // Only prevent if payment is succeeded or processing, allow if pending/failed
-            if (payment.getStatus() == Payment.PaymentStatus.SUCCEEDED || 
-                payment.getStatus() == Payment.PaymentStatus.PROCESSING) {
-                throw new RuntimeException("Payment already processed for this order");
-            }
-            // If payment exists but is pending/failed, we'll update it
-        }
+    /**
+     * Return a PaymentIntent the client can confirm for the order. The order's pending or
+     * declined intent is reused while Stripe still accepts it, with its amount updated if the
+     * total changed, and repeat calls within the client secret TTL are answered without
+     * calling Stripe at all.
+     * Stripe calls run outside any transaction, between a short read and a short write.
+     */
+    public PaymentIntentResultDto createPaymentIntent(Order order, String currency) throws StripeException {
+        Long orderId = order.getId();
+        IntentContext context = readTransaction.execute(status -> {
+            Order loaded = orderRepository.findById(orderId).orElseThrow(() -> new RuntimeException("Order not found"));
+            Optional<Payment> payment = paymentRepository.findByOrderId(orderId);
+            requirePayable(payment);
+            String existingIntentId = payment.map(Payment::getStripePaymentIntentId).orElse(null);
+            boolean failed = payment.map(p -> p.getStatus() == Payment.PaymentStatus.FAILED).orElse(false);
+            // A declined intent goes back to requires_payment_method and can be confirmed again;
+            // intents made by a Checkout Session belong to that session
+            boolean reusable = existingIntentId != null
+                && (payment.get().getStatus() == Payment.PaymentStatus.PENDING || failed)
+                && payment.get().getStripeCheckoutSessionId() == null;
+            return new IntentContext(loaded, existingIntentId, reusable, failed);
+        });
+        Order current = context.order;
+        long amountInCents = current.getTotalAmount().multiply(BigDecimal.valueOf(100)).longValue();
         
-        // Create metadata for the payment
-        Map<String, String> metadata = new HashMap<>();
-        metadata.put("order_id", order.getId().toString());
-        metadata.put("customer_email", order.getEmail());
-        metadata.put("customer_name", order.getFirstName() + " " + order.getLastName());
+        CachedClientSecret cached = clientSecrets.get(orderId);
+        if (cached != null && context.reusable && !context.failed && cached.matches(context.existingIntentId, amountInCents, currency, clientSecretTtlMs)) {
+            clientSecretHits.increment();
+            return new PaymentIntentResultDto(cached.paymentIntentId, cached.clientSecret);
+        }
+        clientSecretMisses.increment();
         
-        // Create payment intent with Stripe
-        PaymentIntent paymentIntent = stripeService.createPaymentIntent(
-            order.getTotalAmount(), 
-            currency, 
-            order.getEmail(), 
-            metadata
-        );
+        beginPaymentCreation(orderId);
+        try {
+            PaymentIntent paymentIntent = null;
+            boolean changed = false;
+            if (context.reusable) {
+                paymentIntent = stripeService.retrievePaymentIntent(context.existingIntentId);
+                if (!REUSABLE_INTENT_STATUSES.contains(paymentIntent.getStatus())) {
+                    paymentIntent = null;
+                } else if (paymentIntent.getAmount() != amountInCents || !currency.equalsIgnoreCase(paymentIntent.getCurrency())) {
+                    paymentIntent = stripeService.updatePaymentIntentAmount(paymentIntent, current.getTotalAmount(), currency);
+                    changed = true;
+                } else {
+                    // Reusing a declined intent still moves the payment back to PENDING
+                    changed = context.failed;
+                }
+            }
+            
+            if (paymentIntent == null) {
+                // Create metadata for the payment
+                Map<String, String> metadata = new HashMap<>();
+                metadata.put("order_id", current.getId().toString());
+                metadata.put("customer_email", current.getEmail());
+                metadata.put("customer_name", current.getFirstName() + " " + current.getLastName());
+                
+                // Create payment intent with Stripe
+                paymentIntent = stripeService.createPaymentIntent(
+                    current.getTotalAmount(), 
+                    currency, 
+                    current.getEmail(), 
+                    metadata,
+                    current.getOrderId(),
+                    context.existingIntentId
+                );
+                changed = true;
+            }
+            
+            if (changed) {
+                String paymentIntentId = paymentIntent.getId();
+                writeTransaction.executeWithoutResult(status -> {
+                    Order managed = loadPayableOrder(orderId);
+                    
+                    // Create or update payment record
+                    Payment payment = paymentRepository.findByOrderId(orderId).orElse(new Payment());
+                    payment.setOrder(managed);
+                    payment.setStripePaymentIntentId(paymentIntentId);
+                    // Clear checkout session ID if switching from checkout to payment intent
+                    payment.setStripeCheckoutSessionId(null);
+                    payment.setAmount(managed.getTotalAmount());
+                    payment.setCurrency(currency);
+                    payment.setStatus(Payment.PaymentStatus.PENDING);
+                    
+                    paymentRepository.save(payment);
+                    
+                    // Update order payment status
+                    managed.setPaymentStatus(Order.PaymentStatus.PROCESSING);
+                    orderRepository.save(managed);
+                    eventPublisher.publishEvent(OrderStatusChangedEvent.of(managed));
+                });
+            }
+            
+            clientSecrets.put(orderId, new CachedClientSecret(paymentIntent.getId(), paymentIntent.getClientSecret(), amountInCents, currency));
+            return new PaymentIntentResultDto(paymentIntent.getId(), paymentIntent.getClientSecret());
+        } finally {
+            paymentsInFlight.remove(orderId);
+        }
+    }
+    
+    /**
+     * Create a Checkout Session for the order, using the same read / Stripe call / write split
+     * as {@link #createPaymentIntent(Order, String)}.
+     */
+    public Session createCheckoutSession(Order order) throws StripeException {
+        Long orderId = order.getId();
+        beginPaymentCreation(orderId);
+        try {
+            CheckoutRequest request = readTransaction.execute(status -> {
+                Order loaded = loadPayableOrder(orderId, true);
+                
+                // Create line items from order items, by Price id when the product is synced at this price
+                List<SessionCreateParams.LineItem> lineItems = new ArrayList<>();
+                List<SessionCreateParams.LineItem> inlineLineItems = new ArrayList<>();
+                boolean usesPriceIds = false;
+                for (OrderItem orderItem : loaded.getOrderItems()) {
+                    SessionCreateParams.LineItem inline = stripeService.createLineItem(
+                        orderItem.getProduct().getName(),
+                        orderItem.getUnitPrice(),
+                        orderItem.getQuantity().longValue(),
+                        orderItem.getProduct().getDescription()
+                    );
+                    Optional<String> priceId = priceRegistry.priceIdFor(orderItem.getProduct().getId(), orderItem.getUnitPrice());
+                    usesPriceIds |= priceId.isPresent();
+                    lineItems.add(priceId
+                        .map(id -> stripeService.createPriceLineItem(id, orderItem.getQuantity().longValue()))
+                        .orElse(inline));
+                    inlineLineItems.add(inline);
+                }
+                return new CheckoutRequest(loaded, lineItems, usesPriceIds ? inlineLineItems : null);
+            });
+            
+            // Create checkout session
+            Session session = createCheckoutSession(request, orderId);
+            
+            writeTransaction.executeWithoutResult(status -> {
+                Order managed = loadPayableOrder(orderId);
+                
+                // Create or update payment record
+                Payment payment = paymentRepository.findByOrderId(orderId).orElse(new Payment());
+                payment.setOrder(managed);
+                payment.setStripeCheckoutSessionId(session.getId());
+                // Clear payment intent ID if switching from payment intent to checkout
+                payment.setStripePaymentIntentId(null);
+                
+                // Payment intent may not be available immediately for checkout sessions
+                if (session.getPaymentIntent() != null && !session.getPaymentIntent().isEmpty()) {
+                    payment.setStripePaymentIntentId(session.getPaymentIntent());
+                }
+                
+                payment.setAmount(managed.getTotalAmount());
+                payment.setCurrency("usd");
+                payment.setStatus(Payment.PaymentStatus.PENDING);
+                
+                paymentRepository.save(payment);
+                
+                // Update order payment status
+                managed.setPaymentStatus(Order.PaymentStatus.PROCESSING);
+                orderRepository.save(managed);
+                eventPublisher.publishEvent(OrderStatusChangedEvent.of(managed));
+            });
+            
+            return session;
+        } finally {
+            paymentsInFlight.remove(orderId);
+        }
+    }
+    
+    /**
+     * The price sync archives a replaced Price as soon as the new one exists, while registries
+     * on other instances still hold the old id until their own sync. Stripe rejects an archived
+     * Price, so the session is created again with inline prices and this registry reloaded
+     */
+    private Session createCheckoutSession(CheckoutRequest request, Long orderId) throws StripeException {
+        try {
+            return stripeService.createCheckoutSession(request.order.getTotalAmount(), "usd",
+                request.order.getEmail(), orderId, request.order.getOrderId(), request.lineItems);
+        } catch (InvalidRequestException e) {
+            if (request.inlineLineItems == null || e.getParam() == null || !e.getParam().endsWith("[price]")) {
+                throw e;
+            }
+            logger.warn("Stripe rejected a synced Price for order {} ({}); using inline prices", orderId, e.getMessage());
+            priceRegistry.reload();
+            return stripeService.createCheckoutSession(request.order.getTotalAmount(), "usd",
+                request.order.getEmail(), orderId, request.order.getOrderId(), request.inlineLineItems);
+        }
+    }
+    
+    public Payment confirmPayment(String paymentIntentId) throws StripeException {
+        // Retrieve payment from database
+        boolean exists = Boolean.TRUE.equals(readTransaction.execute(status ->
+            paymentRepository.findByStripePaymentIntentIdNotNull(paymentIntentId).isPresent()));
+        if (!exists) {
+            throw new RuntimeException("Payment not found for payment intent: " + paymentIntentId);
+        }
         
-        // Create or update payment record
-        Payment payment = existingPayment.orElse(new Payment());
-        payment.setOrder(order);
-        payment.setStripePaymentIntentId(paymentIntent.getId());
-        // Clear checkout session ID if switching from checkout to payment intent
-        payment.setStripeCheckoutSessionId(null);
-        payment.setAmount(order.getTotalAmount());
-        payment.setCurrency(currency);
-        payment.setStatus(Payment.PaymentStatus.PENDING);
+        // Retrieve payment intent from Stripe
+        PaymentIntent paymentIntent = stripeService.retrievePaymentIntent(paymentIntentId);
         
-        paymentRepository.save(payment);
+        return writeTransaction.execute(status -> {
+            // Guarded like the webhook transitions: a webhook that committed while Stripe was
+            // being asked wins, and this read can't move its PAID order back to PROCESSING
+            applyIntentStatus(paymentIntent).ifPresent(eventPublisher::publishEvent);
+            
+            return paymentRepository.findByStripePaymentIntentIdNotNull(paymentIntentId)
+                .orElseThrow(() -> new RuntimeException("Payment not found for payment intent: " + paymentIntentId));
+        });
+    }
+    
+    /**
+     * Status of a Checkout Session, served from {@link CheckoutSessionStatusCache} when possible.
+     * Stripe is only asked about sessions we know of that haven't been seen to finish.
+     * Returns empty when no payment references the session
+     */
+    public Optional<CheckoutSessionStatusCache.SessionStatus> getSessionStatus(String sessionId) throws StripeException {
+        Optional<CheckoutSessionStatusCache.SessionStatus> cached = sessionStatusCache.get(sessionId);
+        if (cached.isPresent()) {
+            return cached;
+        }
         
-        // Update order payment status
-        order.setPaymentStatus(Order.PaymentStatus.PROCESSING);
-        orderRepository.save(order);
+        Optional<String> orderId = readTransaction.execute(status ->
+            paymentRepository.findByStripeCheckoutSessionId(sessionId).map(payment -> payment.getOrder().getOrderId()));
+        if (orderId == null || orderId.isEmpty()) {
+            return Optional.empty();
+        }
         
-        return paymentIntent;
+        sessionLookupCounter.increment();
+        Session session = stripeService.retrieveCheckoutSession(sessionId);
+        CheckoutSessionStatusCache.SessionStatus sessionStatus = new CheckoutSessionStatusCache.SessionStatus(
+            session.getStatus(), session.getPaymentStatus(), orderId.get(), session.getCustomerEmail());
+        sessionStatusCache.put(sessionId, sessionStatus);
+        return Optional.of(sessionStatus);
     }
     
-    public Session createCheckoutSession(Order order) throws StripeException {
+    private void beginPaymentCreation(Long orderId) {
+        if (!paymentsInFlight.add(orderId)) {
+            throw new RuntimeException("Payment is already being created for this order");
+        }
+    }
+    
+    /**
+     * Load the order and make sure it has not been paid yet. Called before and again after the
+     * Stripe call, since a webhook may have updated the payment in between.
+     */
+    private Order loadPayableOrder(Long orderId) {
+        return loadPayableOrder(orderId, false);
+    }
+    
+    /** As {@link #loadPayableOrder(Long)}, optionally fetching the items and their products in the same query */
+    private Order loadPayableOrder(Long orderId, boolean withItems) {
+        Order order = (withItems ? orderRepository.findWithItemsById(orderId) : orderRepository.findById(orderId))
+            .orElseThrow(() -> new RuntimeException("Order not found"));
+        
         // Check if payment already exists for this order
-        Optional<Payment> existingPayment = paymentRepository.findByOrderId(order.getId());
+        requirePayable(paymentRepository.findByOrderId(orderId));
+        return order;
+    }
+    
+    private static void requirePayable(Optional<Payment> existingPayment) {
         if (existingPayment.isPresent()) {
             Payment payment = existingPayment.get();
             // Only prevent if payment is succeeded or processing, allow if pending/failed
@@ -99,67 +354,56 @@ public class PaymentService {
             }
             // If payment exists but is pending/failed, we'll update it
         }
+    }
+    
+    private static final class IntentContext {
+        private final Order order;
+        private final String existingIntentId;
+        private final boolean reusable;
+        private final boolean failed;
         
-        // Create line items from order items
-        List<SessionCreateParams.LineItem> lineItems = order.getOrderItems().stream()
-            .map(orderItem -> stripeService.createLineItem(
-                orderItem.getProduct().getName(),
-                orderItem.getUnitPrice(),
-                orderItem.getQuantity().longValue(),
-                orderItem.getProduct().getDescription()
-            ))
-            .collect(Collectors.toList());
-        
-        // Create checkout session
-        Session session = stripeService.createCheckoutSession(
-            order.getTotalAmount(),
-            "usd",
-            order.getEmail(),
-            order.getId(),
-            lineItems
-        );
-        
-        // Create or update payment record
-        Payment payment = existingPayment.orElse(new Payment());
-        payment.setOrder(order);
-        payment.setStripeCheckoutSessionId(session.getId());
-        // Clear payment intent ID if switching from payment intent to checkout
-        payment.setStripePaymentIntentId(null);
-        
-        // Payment intent may not be available immediately for checkout sessions
-        if (session.getPaymentIntent() != null && !session.getPaymentIntent().isEmpty()) {
-            payment.setStripePaymentIntentId(session.getPaymentIntent());
+        private IntentContext(Order order, String existingIntentId, boolean reusable, boolean failed) {
+            this.order = order;
+            this.existingIntentId = existingIntentId;
+            this.reusable = reusable;
+            this.failed = failed;
         }
-        
-        payment.setAmount(order.getTotalAmount());
-        payment.setCurrency("usd");
-        payment.setStatus(Payment.PaymentStatus.PENDING);
-        
-        paymentRepository.save(payment);
-        
-        // Update order payment status
-        order.setPaymentStatus(Order.PaymentStatus.PROCESSING);
-        orderRepository.save(order);
-        
-        return session;
     }
     
-    public Payment confirmPayment(String paymentIntentId) throws StripeException {
-        // Retrieve payment from database
-        Optional<Payment> paymentOpt = paymentRepository.findByStripePaymentIntentIdNotNull(paymentIntentId);
-        if (paymentOpt.isEmpty()) {
-            throw new RuntimeException("Payment not found for payment intent: " + paymentIntentId);
-        }
-        
-        Payment payment = paymentOpt.get();
+    private static final class CachedClientSecret {
+        private final String paymentIntentId;
+        private final String clientSecret;
+        private final long amountInCents;
+        private final String currency;
+        private final long cachedAt = System.currentTimeMillis();
         
-        // Retrieve payment intent from Stripe
-        PaymentIntent paymentIntent = stripeService.retrievePaymentIntent(paymentIntentId);
+        private CachedClientSecret(String paymentIntentId, String clientSecret, long amountInCents, String currency) {
+            this.paymentIntentId = paymentIntentId;
+            this.clientSecret = clientSecret;
+            this.amountInCents = amountInCents;
+            this.currency = currency;
+        }
         
-        // Update payment status based on Stripe status
-        updatePaymentStatus(payment, paymentIntent.getStatus());
+        private boolean matches(String currentIntentId, long amountInCents, String currency, long ttlMs) {
+            return paymentIntentId.equals(currentIntentId)
+                && this.amountInCents == amountInCents
+                && this.currency.equalsIgnoreCase(currency)
+                && System.currentTimeMillis() - cachedAt < ttlMs;
+        }
+    }
+    
+    private static final class CheckoutRequest {
+        private final Order order;
+        private final List<SessionCreateParams.LineItem> lineItems;
+        // The same items with inline prices; null when no line uses a synced Price
+        private final List<SessionCreateParams.LineItem> inlineLineItems;
         
-        return paymentRepository.save(payment);
+        private CheckoutRequest(Order order, List<SessionCreateParams.LineItem> lineItems,
+                                List<SessionCreateParams.LineItem> inlineLineItems) {
+            this.order = order;
+            this.lineItems = lineItems;
+            this.inlineLineItems = inlineLineItems;
+        }
     }
     
     @Transactional(readOnly = true)
@@ -177,15 +421,12 @@ public class PaymentService {
         return paymentRepository.findByOrderId(orderId);
     }
     
-    public void handleStripeWebhook(String payload, String sigHeader) throws Exception {
-        Event event;
-        
-        try {
-            event = Webhook.constructEvent(payload, sigHeader, webhookSecret);
-        } catch (Exception e) {
-            throw new Exception("Invalid signature", e);
-        }
-        
+    /**
+     * Apply a verified Stripe event. Called by {@link WebhookInboxService} once the event has
+     * been taken off the inbox; failures propagate so the inbox rolls back and retries the event
+     */
+    @Transactional
+    public void handleStripeEvent(Event event) {
         // Handle the event
         switch (event.getType()) {
             case "payment_intent.succeeded":
@@ -203,209 +444,218 @@ public class PaymentService {
     }
     
     private void handlePaymentIntentSucceeded(Event event) {
-        try {
-            // Stripe v29.4.0 returns Optional<StripeObject>
-            Optional<StripeObject> stripeObjectOpt = event.getDataObjectDeserializer().getObject();
+        // Stripe v29.4.0 returns Optional<StripeObject>
+        Optional<StripeObject> stripeObjectOpt = event.getDataObjectDeserializer().getObject();
+        
+        if (stripeObjectOpt.isPresent()) {
+            PaymentIntent paymentIntent = expectObject(stripeObjectOpt.get(), PaymentIntent.class);
+            payloadService.record(paymentIntent.getId(), event.getType(), paymentIntent.toJson());
+            handlePaymentIntentSucceededById(paymentIntent.getId(), metadataOrderId(paymentIntent));
+        } else {
+            // Fallback to raw JSON parsing when deserialization fails
+            String rawJson = event.getData().getObject().toString();
+            System.out.println("Falling back to raw JSON parsing for payment_intent.succeeded: " + rawJson);
             
-            if (stripeObjectOpt.isPresent()) {
-                StripeObject stripeObject = stripeObjectOpt.get();
-                
-                if (stripeObject instanceof PaymentIntent) {
-                    PaymentIntent paymentIntent = (PaymentIntent) stripeObject;
-                    handlePaymentIntentSucceededById(paymentIntent.getId(), paymentIntent.toJson());
-                } else {
-                    System.err.println("Expected PaymentIntent but got: " + stripeObject.getClass().getSimpleName());
-                }
-            } else {
-                // Fallback to raw JSON parsing when deserialization fails
-                String rawJson = event.getData().getObject().toString();
-                System.out.println("Falling back to raw JSON parsing for payment_intent.succeeded: " + rawJson);
-                
-                com.google.gson.JsonObject jsonObject = com.google.gson.JsonParser.parseString(rawJson).getAsJsonObject();
-                String paymentIntentId = jsonObject.get("id").getAsString();
-                String status = jsonObject.get("status").getAsString();
-                
-                if ("succeeded".equals(status)) {
-                    handlePaymentIntentSucceededById(paymentIntentId, rawJson);
-                }
+            com.google.gson.JsonObject jsonObject = com.google.gson.JsonParser.parseString(rawJson).getAsJsonObject();
+            String paymentIntentId = jsonObject.get("id").getAsString();
+            String status = jsonObject.get("status").getAsString();
+            
+            if ("succeeded".equals(status)) {
+                payloadService.record(paymentIntentId, event.getType(), rawJson);
+                handlePaymentIntentSucceededById(paymentIntentId, metadataOrderId(jsonObject));
             }
-        } catch (Exception e) {
-            System.err.println("Failed to handle payment_intent.succeeded event: " + e.getMessage());
-            e.printStackTrace();
         }
     }
     
-    private void handlePaymentIntentSucceededById(String paymentIntentId, String stripeResponse) {
-        Optional<Payment> paymentOpt = paymentRepository.findByStripePaymentIntentIdNotNull(paymentIntentId);
+    private void handlePaymentIntentSucceededById(String paymentIntentId, String metadataOrderId) {
+        // Guarded UPDATEs over payments and orders; a replayed or late event matches no rows
+        Optional<OrderStatusChangedEvent> changed = paymentRepository.markPaymentIntentSucceeded(paymentIntentId);
+        if (changed.isEmpty() && attachToCheckoutPayment(paymentIntentId, metadataOrderId)) {
+            changed = paymentRepository.markPaymentIntentSucceeded(paymentIntentId);
+        }
         
-        if (paymentOpt.isPresent()) {
-            Payment payment = paymentOpt.get();
-            payment.setStatus(Payment.PaymentStatus.SUCCEEDED);
-            payment.setStripeResponse(stripeResponse);
-            paymentRepository.save(payment);
-            
-            // Update order status
-            Order order = payment.getOrder();
-            order.setPaymentStatus(Order.PaymentStatus.PAID);
-            order.setStatus(Order.OrderStatus.CONFIRMED);
-            orderRepository.save(order);
-            
-            // Send email notifications
-//            try {
-//                emailService.sendOrderConfirmationToCustomer(order);
-//                emailService.sendOrderNotificationToAdmin(order);
-//            } catch (Exception e) {
-//                System.err.println("Failed to send email notifications for order: " + order.getId() + ", Error: " + e.getMessage());
-//            }
-            
-            System.out.println("Payment succeeded for payment intent: " + paymentIntentId + ", Order: " + order.getId());
+        if (changed.isPresent()) {
+            // A returned row means this event moved the order to PAID
+            emailOutboxService.enqueueOrderPaid(changed.get().getId());
+            eventPublisher.publishEvent(changed.get());
+            logger.info("Payment succeeded for payment intent: {}, Order: {}", paymentIntentId, changed.get().getId());
         } else {
-            System.err.println("Payment not found for payment intent: " + paymentIntentId);
+            requireKnownIntent(paymentIntentId);
+            logger.debug("Payment for payment intent {} is already final; ignoring succeeded event", paymentIntentId);
         }
     }
     
     private void handlePaymentIntentFailed(Event event) {
-        try {
-            // Stripe v29.4.0 returns Optional<StripeObject>
-            Optional<StripeObject> stripeObjectOpt = event.getDataObjectDeserializer().getObject();
+        // Stripe v29.4.0 returns Optional<StripeObject>
+        Optional<StripeObject> stripeObjectOpt = event.getDataObjectDeserializer().getObject();
+        
+        if (stripeObjectOpt.isPresent()) {
+            PaymentIntent paymentIntent = expectObject(stripeObjectOpt.get(), PaymentIntent.class);
+            String failureReason = paymentIntent.getLastPaymentError() != null ? 
+                paymentIntent.getLastPaymentError().getMessage() : "Payment failed";
+            payloadService.record(paymentIntent.getId(), event.getType(), paymentIntent.toJson());
+            handlePaymentIntentFailedById(paymentIntent.getId(), metadataOrderId(paymentIntent), failureReason);
+        } else {
+            // Fallback to raw JSON parsing when deserialization fails
+            String rawJson = event.getData().getObject().toString();
+            System.out.println("Falling back to raw JSON parsing for payment_intent.payment_failed: " + rawJson);
             
-            if (stripeObjectOpt.isPresent()) {
-                StripeObject stripeObject = stripeObjectOpt.get();
-                
-                if (stripeObject instanceof PaymentIntent) {
-                    PaymentIntent paymentIntent = (PaymentIntent) stripeObject;
-                    String failureReason = paymentIntent.getLastPaymentError() != null ? 
-                        paymentIntent.getLastPaymentError().getMessage() : "Payment failed";
-                    handlePaymentIntentFailedById(paymentIntent.getId(), failureReason, paymentIntent.toJson());
-                } else {
-                    System.err.println("Expected PaymentIntent but got: " + stripeObject.getClass().getSimpleName());
-                }
-            } else {
-                // Fallback to raw JSON parsing when deserialization fails
-                String rawJson = event.getData().getObject().toString();
-                System.out.println("Falling back to raw JSON parsing for payment_intent.payment_failed: " + rawJson);
-                
-                com.google.gson.JsonObject jsonObject = com.google.gson.JsonParser.parseString(rawJson).getAsJsonObject();
-                String paymentIntentId = jsonObject.get("id").getAsString();
-                
-                String failureReason = "Payment failed";
-                if (jsonObject.has("last_payment_error") && !jsonObject.get("last_payment_error").isJsonNull()) {
-                    com.google.gson.JsonObject errorObj = jsonObject.getAsJsonObject("last_payment_error");
-                    if (errorObj.has("message")) {
-                        failureReason = errorObj.get("message").getAsString();
-                    }
+            com.google.gson.JsonObject jsonObject = com.google.gson.JsonParser.parseString(rawJson).getAsJsonObject();
+            String paymentIntentId = jsonObject.get("id").getAsString();
+            
+            String failureReason = "Payment failed";
+            if (jsonObject.has("last_payment_error") && !jsonObject.get("last_payment_error").isJsonNull()) {
+                com.google.gson.JsonObject errorObj = jsonObject.getAsJsonObject("last_payment_error");
+                if (errorObj.has("message")) {
+                    failureReason = errorObj.get("message").getAsString();
                 }
-                
-                handlePaymentIntentFailedById(paymentIntentId, failureReason, rawJson);
             }
-        } catch (Exception e) {
-            System.err.println("Failed to handle payment_intent.payment_failed event: " + e.getMessage());
-            e.printStackTrace();
+            
+            payloadService.record(paymentIntentId, event.getType(), rawJson);
+            handlePaymentIntentFailedById(paymentIntentId, metadataOrderId(jsonObject), failureReason);
+        }
+    }
+    
+    private void handlePaymentIntentFailedById(String paymentIntentId, String metadataOrderId, String failureReason) {
+        // Guarded like the success path, so a failure that arrives after the payment succeeded is ignored
+        Optional<OrderStatusChangedEvent> changed = paymentRepository.markPaymentIntentFailed(paymentIntentId, failureReason);
+        if (changed.isEmpty() && attachToCheckoutPayment(paymentIntentId, metadataOrderId)) {
+            changed = paymentRepository.markPaymentIntentFailed(paymentIntentId, failureReason);
         }
+        
+        if (changed.isPresent()) {
+            eventPublisher.publishEvent(changed.get());
+            logger.info("Payment failed for payment intent: {}, Reason: {}", paymentIntentId, failureReason);
+        } else {
+            requireKnownIntent(paymentIntentId);
+            logger.debug("Payment for payment intent {} is already final; ignoring failed event", paymentIntentId);
+        }
+    }
+    
+    /**
+     * A Checkout payment learns its intent id from checkout.session.completed, which Stripe
+     * may deliver after the intent's own events. Link the intent to the order's session
+     * payment from the intent's order_id metadata so those events can still apply
+     */
+    private boolean attachToCheckoutPayment(String paymentIntentId, String metadataOrderId) {
+        if (metadataOrderId == null || paymentRepository.existsByStripePaymentIntentId(paymentIntentId)) {
+            return false;
+        }
+        Optional<Payment> payment = paymentRepository.findByOrderId(Long.valueOf(metadataOrderId))
+            .filter(candidate -> candidate.getStripePaymentIntentId() == null && candidate.getStripeCheckoutSessionId() != null);
+        payment.ifPresent(candidate -> {
+            candidate.setStripePaymentIntentId(paymentIntentId);
+            paymentRepository.saveAndFlush(candidate);
+        });
+        return payment.isPresent();
+    }
+    
+    /**
+     * No row changed: either the payment is already final, or no payment has this intent yet
+     * (its row hasn't committed). Throwing in the second case lets the inbox retry the event
+     */
+    private void requireKnownIntent(String paymentIntentId) {
+        if (!paymentRepository.existsByStripePaymentIntentId(paymentIntentId)) {
+            throw new RuntimeException("Payment not found for payment intent: " + paymentIntentId);
+        }
+    }
+    
+    private static String metadataOrderId(PaymentIntent paymentIntent) {
+        return paymentIntent.getMetadata() != null ? paymentIntent.getMetadata().get("order_id") : null;
     }
     
-    private void handlePaymentIntentFailedById(String paymentIntentId, String failureReason, String stripeResponse) {
-        Optional<Payment> paymentOpt = paymentRepository.findByStripePaymentIntentIdNotNull(paymentIntentId);
+    private static String metadataOrderId(com.google.gson.JsonObject object) {
+        com.google.gson.JsonElement metadata = object.get("metadata");
+        if (metadata == null || !metadata.isJsonObject() || !metadata.getAsJsonObject().has("order_id")) {
+            return null;
+        }
+        return metadata.getAsJsonObject().get("order_id").getAsString();
+    }
+    
+    private void handleCheckoutSessionCompleted(Event event) {
+        // Stripe v29.4.0 returns Optional<StripeObject>
+        Session session = expectObject(event.getDataObjectDeserializer().getObject()
+            .orElseThrow(() -> new IllegalStateException("Deserialization failed for checkout.session.completed event " + event.getId())),
+            Session.class);
+        
+        // The session may be created faster than its payment row commits; throwing lets the inbox retry
+        Payment payment = paymentRepository.findByStripeCheckoutSessionId(session.getId())
+            .orElseThrow(() -> new RuntimeException("Payment not found for checkout session: " + session.getId()));
         
-        if (paymentOpt.isPresent()) {
-            Payment payment = paymentOpt.get();
-            payment.setStatus(Payment.PaymentStatus.FAILED);
-            payment.setFailureReason(failureReason);
-            payment.setStripeResponse(stripeResponse);
-            paymentRepository.save(payment);
+        // Update payment intent ID if available
+        if (session.getPaymentIntent() != null && !session.getPaymentIntent().isEmpty()) {
+            payment.setStripePaymentIntentId(session.getPaymentIntent());
+        }
+        
+        // Update payment status based on session payment status
+        if ("paid".equals(session.getPaymentStatus())) {
+            payment.setStatus(Payment.PaymentStatus.SUCCEEDED);
             
             // Update order status
             Order order = payment.getOrder();
-            order.setPaymentStatus(Order.PaymentStatus.FAILED);
+            boolean newlyPaid = order.getPaymentStatus() != Order.PaymentStatus.PAID;
+            order.setPaymentStatus(Order.PaymentStatus.PAID);
+            order.setStatus(Order.OrderStatus.CONFIRMED);
             orderRepository.save(order);
+            eventPublisher.publishEvent(OrderStatusChangedEvent.of(order));
             
-            System.out.println("Payment failed for payment intent: " + paymentIntentId + ", Reason: " + failureReason);
-        } else {
-            System.err.println("Payment not found for payment intent: " + paymentIntentId);
+            // Queue the email notifications; they are sent after this transaction commits
+            if (newlyPaid) {
+                emailOutboxService.enqueueOrderPaid(order.getId());
+            }
+            
+            System.out.println("Checkout session completed successfully for session: " + session.getId() + ", Order: " + order.getId());
         }
+        
+        paymentRepository.save(payment);
+        
+        // Polls of /session/{id} can now be answered without asking Stripe
+        putSessionStatusAfterCommit(session.getId(), new CheckoutSessionStatusCache.SessionStatus(
+            session.getStatus(), session.getPaymentStatus(),
+            payment.getOrder().getOrderId(), session.getCustomerEmail()));
     }
     
-    private void handleCheckoutSessionCompleted(Event event) {
-        try {
-            // Stripe v29.4.0 returns Optional<StripeObject>
-            Optional<StripeObject> stripeObjectOpt = event.getDataObjectDeserializer().getObject();
-            
-            if (stripeObjectOpt.isPresent()) {
-                StripeObject stripeObject = stripeObjectOpt.get();
-                
-                if (stripeObject instanceof Session) {
-                    Session session = (Session) stripeObject;
-                    Optional<Payment> paymentOpt = paymentRepository.findByStripeCheckoutSessionId(session.getId());
-                    
-                    if (paymentOpt.isPresent()) {
-                        Payment payment = paymentOpt.get();
-                        
-                        // Update payment intent ID if available
-                        if (session.getPaymentIntent() != null && !session.getPaymentIntent().isEmpty()) {
-                            payment.setStripePaymentIntentId(session.getPaymentIntent());
-                        }
-                        
-                        // Update payment status based on session payment status
-                        if ("paid".equals(session.getPaymentStatus())) {
-                            payment.setStatus(Payment.PaymentStatus.SUCCEEDED);
-                            
-                            // Update order status
-                            Order order = payment.getOrder();
-                            order.setPaymentStatus(Order.PaymentStatus.PAID);
-                            order.setStatus(Order.OrderStatus.CONFIRMED);
-                            orderRepository.save(order);
-                            
-                            // Send email notifications
-//                            try {
-//                                emailService.sendOrderConfirmationToCustomer(order);
-//                                emailService.sendOrderNotificationToAdmin(order);
-//                            } catch (Exception e) {
-//                                System.err.println("Failed to send email notifications for order: " + order.getId() + ", Error: " + e.getMessage());
-//                            }
-                            
-                            System.out.println("Checkout session completed successfully for session: " + session.getId() + ", Order: " + order.getId());
-                        }
-                        
-                        paymentRepository.save(payment);
-                    } else {
-                        System.err.println("Payment not found for checkout session: " + session.getId());
-                    }
-                } else {
-                    System.err.println("Expected Session but got: " + stripeObject.getClass().getSimpleName());
-                }
-            } else {
-                System.err.println("Deserialization failed for checkout.session.completed event");
+    /**
+     * Cache the status only once the payment update commits, so a rolled back event can't
+     * leave pollers seeing a status the database never recorded
+     */
+    private void putSessionStatusAfterCommit(String sessionId, CheckoutSessionStatusCache.SessionStatus status) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                sessionStatusCache.put(sessionId, status);
             }
-        } catch (Exception e) {
-            System.err.println("Failed to handle checkout.session.completed event: " + e.getMessage());
-            e.printStackTrace();
+        });
+    }
+    
+    private static <T extends StripeObject> T expectObject(StripeObject stripeObject, Class<T> type) {
+        if (!type.isInstance(stripeObject)) {
+            throw new IllegalStateException("Expected " + type.getSimpleName() + " but got: " + stripeObject.getClass().getSimpleName());
         }
+        return type.cast(stripeObject);
     }
     
-    private void updatePaymentStatus(Payment payment, String stripeStatus) {
-        switch (stripeStatus) {
+    /** Returns the order's new state when the intent's status changed it */
+    private Optional<OrderStatusChangedEvent> applyIntentStatus(PaymentIntent paymentIntent) {
+        String paymentIntentId = paymentIntent.getId();
+        switch (paymentIntent.getStatus()) {
             case "succeeded":
-                payment.setStatus(Payment.PaymentStatus.SUCCEEDED);
-                payment.getOrder().setPaymentStatus(Order.PaymentStatus.PAID);
-                payment.getOrder().setStatus(Order.OrderStatus.CONFIRMED);
-                break;
+                Optional<OrderStatusChangedEvent> paid = paymentRepository.markPaymentIntentSucceeded(paymentIntentId);
+                paid.ifPresent(state -> emailOutboxService.enqueueOrderPaid(state.getId()));
+                return paid;
             case "processing":
-                payment.setStatus(Payment.PaymentStatus.PROCESSING);
-                payment.getOrder().setPaymentStatus(Order.PaymentStatus.PROCESSING);
-                break;
+                return paymentRepository.markPaymentIntentStatus(paymentIntentId,
+                    Payment.PaymentStatus.PROCESSING, Order.PaymentStatus.PROCESSING);
             case "requires_payment_method":
             case "requires_confirmation":
-                payment.setStatus(Payment.PaymentStatus.PENDING);
-                break;
+                return paymentRepository.markPaymentIntentStatus(paymentIntentId, Payment.PaymentStatus.PENDING, null);
             case "canceled":
-                payment.setStatus(Payment.PaymentStatus.CANCELLED);
-                payment.getOrder().setPaymentStatus(Order.PaymentStatus.FAILED);
-                break;
+                return paymentRepository.markPaymentIntentStatus(paymentIntentId,
+                    Payment.PaymentStatus.CANCELLED, Order.PaymentStatus.FAILED);
             default:
-                payment.setStatus(Payment.PaymentStatus.FAILED);
-                payment.getOrder().setPaymentStatus(Order.PaymentStatus.FAILED);
+                String failureReason = paymentIntent.getLastPaymentError() != null
+                    ? paymentIntent.getLastPaymentError().getMessage() : "Payment failed";
+                return paymentRepository.markPaymentIntentFailed(paymentIntentId, failureReason);
         }
-        
-        orderRepository.save(payment.getOrder());
     }
 }
\ No newline at end of file
@@ -0,0 +1,136 @@
+package com.art.store.service;
+
+import com.art.store.entity.Order;
+import com.art.store.event.OrderStatusChangedEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes order status changes to clients over Server-Sent Events. Streams are async servlet
+ * requests, so an idle subscriber holds no thread, only its entry in this registry
+ */
+@Service
+public class PaymentStatusStreamService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PaymentStatusStreamService.class);
+    
+    private final OrderService orderService;
+    private final Map<String, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger openStreams = new AtomicInteger();
+    
+    @Value("${app.payments.stream.timeout-ms:600000}")
+    private long timeoutMs;
+    
+    @Autowired
+    public PaymentStatusStreamService(OrderService orderService, MeterRegistry meterRegistry) {
+        this.orderService = orderService;
+        Gauge.builder("payments.stream.open", openStreams, AtomicInteger::get)
+            .description("Open payment status streams")
+            .register(meterRegistry);
+    }
+    
+    /**
+     * Open a stream for the order, starting with its current status.
+     * Returns empty when the order doesn't exist
+     */
+    public Optional<SseEmitter> subscribe(String orderId) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        // Register before reading the current status so no change can slip in between
+        subscribers.computeIfAbsent(orderId, key -> ConcurrentHashMap.newKeySet()).add(emitter);
+        openStreams.incrementAndGet();
+        emitter.onCompletion(() -> unsubscribe(orderId, emitter));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> unsubscribe(orderId, emitter));
+        
+        Optional<Order> order = orderService.getOrderByOrderId(orderId);
+        if (order.isEmpty()) {
+            unsubscribe(orderId, emitter);
+            return Optional.empty();
+        }
+        
+        push(orderId, emitter, OrderStatusChangedEvent.of(order.get()));
+        return Optional.of(emitter);
+    }
+    
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        Set<SseEmitter> emitters = subscribers.get(event.getOrderId());
+        if (emitters == null) {
+            return;
+        }
+        for (SseEmitter emitter : emitters) {
+            push(event.getOrderId(), emitter, event);
+        }
+    }
+    
+    /** Keep proxies from closing idle streams and find clients that went away */
+    @Scheduled(fixedDelayString = "${app.payments.stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        subscribers.forEach((orderId, emitters) -> {
+            for (SseEmitter emitter : emitters) {
+                send(orderId, emitter, SseEmitter.event().comment("keep-alive"));
+            }
+        });
+    }
+    
+    public int getOpenStreamCount() {
+        return openStreams.get();
+    }
+    
+    private void push(String orderId, SseEmitter emitter, OrderStatusChangedEvent event) {
+        boolean sent = send(orderId, emitter, SseEmitter.event()
+            .name("status")
+            .data(Map.of(
+                "orderId", event.getOrderId(),
+                "status", event.getStatus(),
+                "paymentStatus", event.getPaymentStatus()
+            )));
+        if (sent && isFinal(event)) {
+            emitter.complete();
+        }
+    }
+    
+    private boolean send(String orderId, SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // Client disconnected or the emitter already completed
+            logger.debug("Dropping payment status stream for order {}: {}", orderId, e.getMessage());
+            unsubscribe(orderId, emitter);
+            return false;
+        }
+    }
+    
+    private void unsubscribe(String orderId, SseEmitter emitter) {
+        subscribers.computeIfPresent(orderId, (key, emitters) -> {
+            if (emitters.remove(emitter)) {
+                openStreams.decrementAndGet();
+            }
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+    
+    /** Nothing further will change for a paid, refunded or cancelled order; failed payments can be retried */
+    private static boolean isFinal(OrderStatusChangedEvent event) {
+        return event.getPaymentStatus() == Order.PaymentStatus.PAID
+            || event.getPaymentStatus() == Order.PaymentStatus.REFUNDED
+            || event.getStatus() == Order.OrderStatus.CANCELLED;
+    }
+}
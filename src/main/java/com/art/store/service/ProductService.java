@@ -1,5 +1,11 @@
 package com.art.store.service;
 
+import com.art.store.catalog.CatalogPage;
+import com.art.store.catalog.FacetIndex;
+import com.art.store.catalog.ProductCatalog;
+import com.art.store.catalog.ProductSearchIndex;
+import com.art.store.dto.KeysetCursor;
+import com.art.store.dto.ProductBrowseDto;
 import com.art.store.dto.ProductDto;
 import com.art.store.entity.Product;
 import com.art.store.repository.ProductRepository;
@@ -7,70 +13,86 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 @Service
-@Transactional
 public class ProductService {
     
     private final ProductRepository productRepository;
+    private final ProductCatalog productCatalog;
     
     @Autowired
-    public ProductService(ProductRepository productRepository) {
+    public ProductService(ProductRepository productRepository, ProductCatalog productCatalog) {
         this.productRepository = productRepository;
+        this.productCatalog = productCatalog;
     }
     
-    @Transactional(readOnly = true)
+    // Catalog reads are served from the in-memory snapshot and never open a transaction
     public List<ProductDto> getAllActiveProducts() {
-        return productRepository.findByActiveTrueOrderByCreatedAtDesc()
-                .stream()
-                .map(ProductDto::new)
-                .collect(Collectors.toList());
+        return productCatalog.snapshot().getActiveProducts();
+    }
+    
+    public CatalogPage getActiveProductsPage(KeysetCursor after, int limit) {
+        return productCatalog.snapshot().pageOfActiveProducts(after, limit);
     }
     
-    @Transactional(readOnly = true)
     public Optional<ProductDto> getProductById(Long id) {
-        return productRepository.findByIdAndActiveTrue(id)
-                .map(ProductDto::new);
+        return Optional.ofNullable(productCatalog.snapshot().getProduct(id));
     }
     
-    @Transactional(readOnly = true)
     public List<ProductDto> getProductsByCategory(String category) {
-        return productRepository.findByActiveTrueAndCategoryIgnoreCase(category)
-                .stream()
-                .map(ProductDto::new)
-                .collect(Collectors.toList());
+        return productCatalog.snapshot().getProductsByCategory(category);
+    }
+    
+    public boolean hasCategory(String category) {
+        return productCatalog.snapshot().hasCategory(category);
+    }
+    
+    public CatalogPage getProductsByCategoryPage(String category, KeysetCursor after, int limit) {
+        return productCatalog.snapshot().pageOfCategory(category, after, limit);
+    }
+    
+    public ProductSearchIndex.SearchResult searchProducts(String searchTerm, int offset, int limit) {
+        return productCatalog.snapshot().getSearchIndex().search(searchTerm, offset, limit);
+    }
+    
+    public ProductBrowseDto browse(String category, BigDecimal minPrice, BigDecimal maxPrice, boolean availableOnly,
+                                   FacetIndex.Sort sort, int offset, int limit) {
+        return productCatalog.snapshot().getFacets()
+                .browse(category, minPrice, maxPrice, availableOnly, sort, offset, limit);
     }
     
-    @Transactional(readOnly = true)
-    public List<ProductDto> searchProducts(String searchTerm) {
-        return productRepository.findByActiveTrueAndSearchTerm(searchTerm)
-                .stream()
-                .map(ProductDto::new)
-                .collect(Collectors.toList());
+    public List<String> suggest(String prefix, int limit) {
+        List<String> suggestions = productCatalog.snapshot().getSuggestions().suggest(prefix);
+        return suggestions.size() > limit ? suggestions.subList(0, limit) : suggestions;
     }
     
-    @Transactional(readOnly = true)
     public List<String> getAllCategories() {
-        return productRepository.findDistinctCategoriesByActiveTrue();
+        return productCatalog.snapshot().getCategories();
     }
     
-    @Transactional(readOnly = true)
     public List<ProductDto> getAvailableProducts() {
-        return productRepository.findAvailableProducts()
-                .stream()
-                .map(ProductDto::new)
-                .collect(Collectors.toList());
+        return productCatalog.snapshot().getAvailableProducts();
+    }
+    
+    public CatalogPage getAvailableProductsPage(KeysetCursor after, int limit) {
+        return productCatalog.snapshot().pageOfAvailableProducts(after, limit);
     }
     
+    @Transactional
     public ProductDto createProduct(ProductDto productDto) {
         Product product = productDto.toEntity();
         Product savedProduct = productRepository.save(product);
+        productCatalog.markChanged();
         return new ProductDto(savedProduct);
     }
     
+    @Transactional
     public Optional<ProductDto> updateProduct(Long id, ProductDto productDto) {
         return productRepository.findById(id)
                 .map(existingProduct -> {
@@ -83,40 +105,59 @@ public class ProductService {
                     existingProduct.setActive(productDto.getActive());
                     
                     Product updatedProduct = productRepository.save(existingProduct);
+                    productCatalog.markChanged();
                     return new ProductDto(updatedProduct);
                 });
     }
     
+    @Transactional
     public boolean deleteProduct(Long id) {
         return productRepository.findById(id)
                 .map(product -> {
                     product.setActive(false);
                     productRepository.save(product);
+                    productCatalog.markChanged();
                     return true;
                 })
                 .orElse(false);
     }
     
+    @Transactional
     public boolean updateStock(Long productId, Integer newStock) {
         return productRepository.findById(productId)
                 .map(product -> {
                     product.setStockQuantity(newStock);
                     productRepository.save(product);
+                    productCatalog.markChanged();
                     return true;
                 })
                 .orElse(false);
     }
     
+    @Transactional
     public boolean reduceStock(Long productId, Integer quantity) {
-        return productRepository.findById(productId)
-                .map(product -> {
-                    if (product.getStockQuantity() >= quantity) {
-                        product.setStockQuantity(product.getStockQuantity() - quantity);
-                        productRepository.save(product);
-                        return true;
-                    }
-                    return false;
-                })
-                .orElse(false);
+        return reduceStock(new TreeMap<>(Map.of(productId, quantity))).isEmpty();
+    }
+    
+    /**
+     * Atomically reduce stock for all lines of an order with conditional updates in one batch.
+     * Returns the ids of products without enough stock; callers must roll back if any are returned.
+     * Quantities must be positive, since a negative one would pass the stock guard and add stock.
+     */
+    @Transactional
+    public List<Long> reduceStock(SortedMap<Long, Integer> quantitiesByProductId) {
+        quantitiesByProductId.forEach((productId, quantity) -> {
+            if (quantity == null || quantity <= 0) {
+                throw new IllegalArgumentException("Quantity must be positive for product " + productId + ": " + quantity);
+            }
+        });
+        if (quantitiesByProductId.isEmpty()) {
+            return List.of();
+        }
+        List<Long> insufficient = productRepository.decrementStock(quantitiesByProductId);
+        if (insufficient.size() < quantitiesByProductId.size()) {
+            productCatalog.markChanged();
+        }
+        return insufficient;
     }
 }
\ No newline at end of file
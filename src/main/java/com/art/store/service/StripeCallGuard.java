@@ -0,0 +1,213 @@
+package com.art.store.service;
+
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.RateLimitException;
+import com.stripe.exception.StripeException;
+import com.stripe.net.RequestOptions;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs every outbound Stripe call with a timeout, a concurrency bulkhead, a circuit breaker
+ * and retries of transient failures. Writes are only retried with an idempotency key, which
+ * is sent unchanged on every attempt so Stripe applies the request at most once
+ */
+@Component
+public class StripeCallGuard {
+    
+    private static final Logger logger = LoggerFactory.getLogger(StripeCallGuard.class);
+    
+    public enum Kind {
+        READ,
+        WRITE
+    }
+    
+    public enum CircuitState {
+        CLOSED,
+        HALF_OPEN,
+        OPEN
+    }
+    
+    @FunctionalInterface
+    public interface StripeCall<T> {
+        T execute(RequestOptions options) throws StripeException;
+    }
+    
+    private final MeterRegistry meterRegistry;
+    private final Semaphore bulkhead;
+    
+    @Value("${app.stripe.connect-timeout-ms:2000}")
+    private int connectTimeoutMs;
+    
+    @Value("${app.stripe.read-timeout-ms:5000}")
+    private int readTimeoutMs;
+    
+    @Value("${app.stripe.write-timeout-ms:15000}")
+    private int writeTimeoutMs;
+    
+    @Value("${app.stripe.bulkhead.max-wait-ms:250}")
+    private long bulkheadMaxWaitMs;
+    
+    @Value("${app.stripe.retry.max-attempts:3}")
+    private int maxAttempts;
+    
+    @Value("${app.stripe.retry.backoff-ms:200}")
+    private long retryBackoffMs;
+    
+    @Value("${app.stripe.circuit.failure-threshold:5}")
+    private int failureThreshold;
+    
+    @Value("${app.stripe.circuit.open-ms:30000}")
+    private long openMs;
+    
+    private CircuitState circuitState = CircuitState.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    
+    @Autowired
+    public StripeCallGuard(MeterRegistry meterRegistry,
+                           @Value("${app.stripe.bulkhead.max-concurrent:20}") int maxConcurrent) {
+        this.meterRegistry = meterRegistry;
+        this.bulkhead = new Semaphore(maxConcurrent);
+        Gauge.builder("stripe.circuit.state", this, guard -> guard.getCircuitState().ordinal())
+            .description("0 = closed, 1 = half open, 2 = open")
+            .register(meterRegistry);
+        Gauge.builder("stripe.bulkhead.available", bulkhead, Semaphore::availablePermits)
+            .register(meterRegistry);
+    }
+    
+    /**
+     * Run a Stripe call. {@code idempotencyKey} may be null for reads, which are safe to repeat;
+     * a write without a key is attempted once
+     */
+    public <T> T call(String operation, Kind kind, String idempotencyKey, StripeCall<T> call) throws StripeException {
+        RequestOptions options = RequestOptions.builder()
+            .setConnectTimeout(connectTimeoutMs)
+            .setReadTimeout(kind == Kind.READ ? readTimeoutMs : writeTimeoutMs)
+            // Retries are ours, so they go through the bulkhead and breaker too
+            .setMaxNetworkRetries(0)
+            .setIdempotencyKey(idempotencyKey)
+            .build();
+        int attempts = kind == Kind.WRITE && idempotencyKey == null ? 1 : Math.max(1, maxAttempts);
+        
+        for (int attempt = 1; ; attempt++) {
+            acquire(operation);
+            try {
+                if (!allowRequest()) {
+                    reject(operation, "circuit_open");
+                }
+                
+                Timer.Sample sample = Timer.start(meterRegistry);
+                try {
+                    T result = call.execute(options);
+                    sample.stop(timer(operation, "success"));
+                    recordSuccess();
+                    return result;
+                } catch (StripeException e) {
+                    boolean transientFailure = isTransient(e);
+                    sample.stop(timer(operation, transientFailure ? "transient_error" : "client_error"));
+                    if (!transientFailure) {
+                        // Stripe answered, so it is up; the request itself was wrong
+                        recordSuccess();
+                        throw e;
+                    }
+                    recordFailure(operation);
+                    if (attempt >= attempts) {
+                        throw e;
+                    }
+                    logger.warn("Stripe {} failed (attempt {} of {}), retrying: {}", operation, attempt, attempts, e.getMessage());
+                } catch (RuntimeException e) {
+                    // Not retried, but it must still settle a half-open trial or the circuit stays half open
+                    sample.stop(timer(operation, "unexpected_error"));
+                    recordFailure(operation);
+                    throw e;
+                }
+            } finally {
+                bulkhead.release();
+            }
+            
+            meterRegistry.counter("stripe.calls.retries", "operation", operation).increment();
+            sleep(retryBackoffMs << (attempt - 1));
+        }
+    }
+    
+    public synchronized CircuitState getCircuitState() {
+        return circuitState;
+    }
+    
+    private void acquire(String operation) {
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire(bulkheadMaxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            reject(operation, "bulkhead_full");
+        }
+    }
+    
+    private void reject(String operation, String reason) {
+        meterRegistry.counter("stripe.calls.rejected", "operation", operation, "reason", reason).increment();
+        throw new StripeUnavailableException("Payment provider is temporarily unavailable (" + reason + ")");
+    }
+    
+    /** While half open, exactly one trial call is let through */
+    private synchronized boolean allowRequest() {
+        if (circuitState == CircuitState.CLOSED) {
+            return true;
+        }
+        if (circuitState == CircuitState.OPEN && System.currentTimeMillis() - openedAt >= openMs) {
+            circuitState = CircuitState.HALF_OPEN;
+            return true;
+        }
+        return false;
+    }
+    
+    private synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        circuitState = CircuitState.CLOSED;
+    }
+    
+    private synchronized void recordFailure(String operation) {
+        consecutiveFailures++;
+        if (circuitState == CircuitState.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (circuitState != CircuitState.OPEN) {
+                logger.error("Opening Stripe circuit after {} consecutive failures (last: {})", consecutiveFailures, operation);
+            }
+            circuitState = CircuitState.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+    
+    private Timer timer(String operation, String outcome) {
+        return meterRegistry.timer("stripe.calls", "operation", operation, "outcome", outcome);
+    }
+    
+    private static boolean isTransient(StripeException e) {
+        Integer status = e.getStatusCode();
+        return e instanceof ApiConnectionException
+            || e instanceof RateLimitException
+            || (status != null && (status >= 500 || status == 409));
+    }
+    
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StripeUnavailableException("Interrupted while waiting to retry Stripe call");
+        }
+    }
+}
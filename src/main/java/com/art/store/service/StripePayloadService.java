@@ -0,0 +1,99 @@
+package com.art.store.service;
+
+import com.art.store.entity.Payment;
+import com.art.store.entity.StripePayload;
+import com.art.store.repository.StripePayloadRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stores raw Stripe payloads compressed in their own table and expires them after the
+ * retention window. Payloads are only read back on demand, when debugging a payment
+ */
+@Service
+public class StripePayloadService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(StripePayloadService.class);
+    
+    private final StripePayloadRepository payloadRepository;
+    
+    @Value("${app.stripe.payloads.retention-days:30}")
+    private long retentionDays;
+    
+    @Autowired
+    public StripePayloadService(StripePayloadRepository payloadRepository) {
+        this.payloadRepository = payloadRepository;
+    }
+    
+    /** Append a payload; joins the caller's transaction so it is kept only if the webhook applies */
+    @Transactional
+    public void record(String stripeObjectId, String eventType, String json) {
+        if (stripeObjectId == null || json == null) {
+            return;
+        }
+        byte[] raw = json.getBytes(StandardCharsets.UTF_8);
+        payloadRepository.save(new StripePayload(stripeObjectId, eventType, gzip(raw), raw.length));
+    }
+    
+    /** Most recent payload stored for a Stripe object */
+    @Transactional(readOnly = true)
+    public Optional<String> findLatest(String stripeObjectId) {
+        return payloadRepository.findFirstByStripeObjectIdOrderByIdDesc(stripeObjectId)
+            .map(payload -> new String(gunzip(payload.getCompressedBody()), StandardCharsets.UTF_8));
+    }
+    
+    /** Most recent payload for a payment, preferring its PaymentIntent over its Checkout Session */
+    @Transactional(readOnly = true)
+    public Optional<String> findLatest(Payment payment) {
+        Optional<String> payload = Optional.empty();
+        if (payment.getStripePaymentIntentId() != null) {
+            payload = findLatest(payment.getStripePaymentIntentId());
+        }
+        if (payload.isEmpty() && payment.getStripeCheckoutSessionId() != null) {
+            payload = findLatest(payment.getStripeCheckoutSessionId());
+        }
+        return payload;
+    }
+    
+    @Scheduled(fixedDelayString = "${app.stripe.payloads.sweep-interval-ms:3600000}")
+    @Transactional
+    public void purgeExpired() {
+        int removed = payloadRepository.deleteReceivedBefore(LocalDateTime.now().minusDays(retentionDays));
+        if (removed > 0) {
+            logger.info("Removed {} Stripe payloads older than {} days", removed, retentionDays);
+        }
+    }
+    
+    static byte[] gzip(byte[] raw) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(raw);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+    
+    static byte[] gunzip(byte[] compressed) {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return gzip.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
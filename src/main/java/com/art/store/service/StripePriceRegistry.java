@@ -0,0 +1,68 @@
+package com.art.store.service;
+
+import com.art.store.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * In-memory map from product id to its synced Stripe Price, used to build checkout line items
+ * without touching the database
+ */
+@Component
+public class StripePriceRegistry {
+    
+    private final ProductRepository productRepository;
+    
+    private volatile Map<Long, SyncedPrice> prices = Map.of();
+    
+    @Autowired
+    public StripePriceRegistry(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void reload() {
+        List<Object[]> rows = productRepository.findStripePrices();
+        Map<Long, SyncedPrice> loaded = new HashMap<>(rows.size() * 2);
+        for (Object[] row : rows) {
+            loaded.put((Long) row[0], new SyncedPrice((String) row[1], (BigDecimal) row[2]));
+        }
+        prices = Map.copyOf(loaded);
+    }
+    
+    /**
+     * The Stripe Price for the product, if one is synced at exactly {@code unitPrice}. An order
+     * placed before a price change keeps the amount it was placed at, so it gets no match
+     */
+    public Optional<String> priceIdFor(Long productId, BigDecimal unitPrice) {
+        SyncedPrice price = prices.get(productId);
+        if (price == null || price.amount == null || price.amount.compareTo(unitPrice) != 0) {
+            return Optional.empty();
+        }
+        return Optional.of(price.priceId);
+    }
+    
+    public int size() {
+        return prices.size();
+    }
+    
+    private static final class SyncedPrice {
+        private final String priceId;
+        private final BigDecimal amount;
+        
+        private SyncedPrice(String priceId, BigDecimal amount) {
+            this.priceId = priceId;
+            this.amount = amount;
+        }
+    }
+}
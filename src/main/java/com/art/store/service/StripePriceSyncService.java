@@ -0,0 +1,127 @@
+package com.art.store.service;
+
+import com.art.store.entity.Product;
+import com.art.store.repository.ProductRepository;
+import com.stripe.exception.StripeException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps a Stripe Product and Price for every active product. Runs in the background in
+ * batches; Stripe calls happen outside any transaction and each batch's results are written
+ * back in one short transaction
+ */
+@Service
+public class StripePriceSyncService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(StripePriceSyncService.class);
+    
+    private final ProductRepository productRepository;
+    private final StripeService stripeService;
+    private final StripePriceRegistry priceRegistry;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate writeTransaction;
+    private final Counter syncedCounter;
+    private final Counter failedCounter;
+    
+    @Value("${app.stripe.price-sync.batch-size:50}")
+    private int batchSize;
+    
+    @Autowired
+    public StripePriceSyncService(ProductRepository productRepository, StripeService stripeService,
+                                  StripePriceRegistry priceRegistry, MeterRegistry meterRegistry,
+                                  PlatformTransactionManager transactionManager) {
+        this.productRepository = productRepository;
+        this.stripeService = stripeService;
+        this.priceRegistry = priceRegistry;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.syncedCounter = meterRegistry.counter("stripe.price_sync.synced");
+        this.failedCounter = meterRegistry.counter("stripe.price_sync.failed");
+    }
+    
+    @Scheduled(initialDelayString = "${app.stripe.price-sync.initial-delay-ms:10000}",
+               fixedDelayString = "${app.stripe.price-sync.interval-ms:300000}")
+    public void syncPrices() {
+        List<Product> batch;
+        do {
+            batch = readTransaction.execute(status ->
+                productRepository.findNeedingStripeSync(PageRequest.of(0, batchSize)));
+            List<SyncResult> results = new ArrayList<>(batch.size());
+            for (Product product : batch) {
+                try {
+                    results.add(sync(product));
+                } catch (StripeException | StripeUnavailableException e) {
+                    failedCounter.increment();
+                    logger.warn("Could not sync product {} to Stripe: {}", product.getId(), e.getMessage());
+                }
+            }
+            
+            writeTransaction.executeWithoutResult(status -> {
+                for (SyncResult result : results) {
+                    productRepository.recordStripeSync(result.productId, result.stripeProductId,
+                        result.stripePriceId, result.amount, result.name);
+                }
+            });
+            syncedCounter.increment(results.size());
+            
+            // Stop when nothing in this batch could be synced, rather than retrying it at once
+            if (results.isEmpty()) {
+                break;
+            }
+        } while (batch.size() == batchSize);
+        
+        priceRegistry.reload();
+    }
+    
+    private SyncResult sync(Product product) throws StripeException {
+        String stripeProductId = product.getStripeProductId();
+        if (stripeProductId == null) {
+            stripeProductId = stripeService.createCatalogProduct(product.getId(), product.getName(), product.getDescription()).getId();
+        } else if (!product.getName().equals(product.getStripeProductName())) {
+            stripeService.renameCatalogProduct(stripeProductId, product.getName());
+        }
+        
+        String stripePriceId = product.getStripePriceId();
+        BigDecimal syncedAmount = product.getStripePriceAmount();
+        if (stripePriceId == null || syncedAmount == null || syncedAmount.compareTo(product.getPrice()) != 0) {
+            String previousPriceId = stripePriceId;
+            stripePriceId = stripeService.createCatalogPrice(stripeProductId, product.getId(), product.getPrice(), previousPriceId).getId();
+            if (previousPriceId != null) {
+                stripeService.archivePrice(previousPriceId);
+            }
+        }
+        
+        return new SyncResult(product.getId(), stripeProductId, stripePriceId, product.getPrice(), product.getName());
+    }
+    
+    private static final class SyncResult {
+        private final Long productId;
+        private final String stripeProductId;
+        private final String stripePriceId;
+        private final BigDecimal amount;
+        private final String name;
+        
+        private SyncResult(Long productId, String stripeProductId, String stripePriceId, BigDecimal amount, String name) {
+            this.productId = productId;
+            this.stripeProductId = stripeProductId;
+            this.stripePriceId = stripePriceId;
+            this.amount = amount;
+            this.name = name;
+        }
+    }
+}
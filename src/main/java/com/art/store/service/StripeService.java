@@ -2,36 +2,61 @@ package com.art.store.service;
 
 import com.stripe.exception.StripeException;
 import com.stripe.model.PaymentIntent;
+import com.stripe.model.Price;
 import com.stripe.model.checkout.Session;
+import com.stripe.param.PaymentIntentCancelParams;
+import com.stripe.param.PaymentIntentConfirmParams;
 import com.stripe.param.PaymentIntentCreateParams;
+import com.stripe.param.PaymentIntentUpdateParams;
+import com.stripe.param.PriceCreateParams;
+import com.stripe.param.PriceUpdateParams;
+import com.stripe.param.ProductCreateParams;
+import com.stripe.param.ProductUpdateParams;
 import com.stripe.param.checkout.SessionCreateParams;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 @Service
 public class StripeService {
 
+    private final StripeCallGuard callGuard;
+
     @Value("${stripe.publishable.key:pk_test_YOUR_PUBLISHABLE_KEY_HERE}")
     private String publishableKey;
 
     @Value("${app.frontend.url:http://localhost:3000}")
     private String frontendUrl;
 
+    @Autowired
+    public StripeService(StripeCallGuard callGuard) {
+        this.callGuard = callGuard;
+    }
+
     public String getPublishableKey() {
         return publishableKey;
     }
 
     /**
-     * Create a PaymentIntent for collecting payment details on the client
+     * Create a PaymentIntent for collecting payment details on the client.
+     * {@code orderReference} is the order's external orderId, used for the idempotency key;
+     * {@code replacesPaymentIntentId} is the order's previous intent, if any
      */
-    public PaymentIntent createPaymentIntent(BigDecimal amount, String currency, String customerEmail, Map<String, String> metadata) throws StripeException {
+    public PaymentIntent createPaymentIntent(BigDecimal amount, String currency, String customerEmail, Map<String, String> metadata,
+                                             String orderReference, String replacesPaymentIntentId) throws StripeException {
+        long amountInCents = amount.multiply(BigDecimal.valueOf(100)).longValue(); // Convert to cents
         PaymentIntentCreateParams params = PaymentIntentCreateParams.builder()
-                .setAmount(amount.multiply(BigDecimal.valueOf(100)).longValue()) // Convert to cents
+                .setAmount(amountInCents)
                 .setCurrency(currency)
                 .setReceiptEmail(customerEmail)
                 .putAllMetadata(metadata)
@@ -42,14 +67,33 @@ public class StripeService {
                 )
                 .build();
 
-        return PaymentIntent.create(params);
+        // Keyed on the intent being replaced too, so replacing a canceled intent can't return it again
+        String idempotencyKey = idempotencyKey(orderReference, "payment-intent", amountInCents, currency)
+                + "-" + (replacesPaymentIntentId != null ? replacesPaymentIntentId : "first");
+        return callGuard.call("payment_intent.create", StripeCallGuard.Kind.WRITE, idempotencyKey,
+                options -> PaymentIntent.create(params, options));
+    }
+
+    /**
+     * Change the amount of a PaymentIntent that has not been confirmed yet
+     */
+    public PaymentIntent updatePaymentIntentAmount(PaymentIntent paymentIntent, BigDecimal amount, String currency) throws StripeException {
+        long amountInCents = amount.multiply(BigDecimal.valueOf(100)).longValue(); // Convert to cents
+        PaymentIntentUpdateParams params = PaymentIntentUpdateParams.builder()
+                .setAmount(amountInCents)
+                .setCurrency(currency)
+                .build();
+        String idempotencyKey = "update-" + paymentIntent.getId() + "-" + amountInCents + "-" + currency.toLowerCase();
+        return callGuard.call("payment_intent.update", StripeCallGuard.Kind.WRITE, idempotencyKey,
+                options -> paymentIntent.update(params, options));
     }
 
     /**
      * Create a Checkout Session for hosted payment page
      */
     public Session createCheckoutSession(BigDecimal amount, String currency, String customerEmail, 
-                                       Long orderId, List<SessionCreateParams.LineItem> lineItems) throws StripeException {
+                                       Long orderId, String orderReference,
+                                       List<SessionCreateParams.LineItem> lineItems) throws StripeException {
         
         SessionCreateParams.Builder paramsBuilder = SessionCreateParams.builder()
                 .setMode(SessionCreateParams.Mode.PAYMENT)
@@ -57,13 +101,21 @@ public class StripeService {
                 .setCancelUrl(frontendUrl + "?canceled=true&order_id=" + orderId)
                 .setCustomerEmail(customerEmail)
                 .addAllLineItem(lineItems)
+                // On the session too, so its events share the order's webhook inbox key
+                .putMetadata("order_id", orderId.toString())
                 .setPaymentIntentData(
                     SessionCreateParams.PaymentIntentData.builder()
                         .putMetadata("order_id", orderId.toString())
                         .build()
                 );
 
-        return Session.create(paramsBuilder.build());
+        SessionCreateParams params = paramsBuilder.build();
+        long amountInCents = amount.multiply(BigDecimal.valueOf(100)).longValue();
+        // Line items can switch between price_data and a synced Price id at the same total
+        String idempotencyKey = idempotencyKey(orderReference, "checkout-session", amountInCents, currency)
+                + "-" + paramsDigest(params.toMap());
+        return callGuard.call("checkout_session.create", StripeCallGuard.Kind.WRITE, idempotencyKey,
+                options -> Session.create(params, options));
     }
 
     /**
@@ -87,33 +139,142 @@ public class StripeService {
                 .build();
     }
 
+    /**
+     * Line item referencing a synced Stripe Price, so the request carries only the id and quantity
+     */
+    public SessionCreateParams.LineItem createPriceLineItem(String priceId, Long quantity) {
+        return SessionCreateParams.LineItem.builder()
+                .setPrice(priceId)
+                .setQuantity(quantity)
+                .build();
+    }
+
+    /**
+     * Create the Stripe Product for a store product
+     */
+    public com.stripe.model.Product createCatalogProduct(Long productId, String name, String description) throws StripeException {
+        ProductCreateParams.Builder params = ProductCreateParams.builder()
+                .setName(name)
+                .putMetadata("product_id", productId.toString());
+        if (description != null && !description.isBlank()) {
+            params.setDescription(description);
+        }
+        ProductCreateParams createParams = params.build();
+        return callGuard.call("product.create", StripeCallGuard.Kind.WRITE, "catalog-product-" + productId,
+                options -> com.stripe.model.Product.create(createParams, options));
+    }
+
+    /**
+     * Rename a Stripe Product
+     */
+    public com.stripe.model.Product renameCatalogProduct(String stripeProductId, String name) throws StripeException {
+        com.stripe.model.Product product = new com.stripe.model.Product();
+        product.setId(stripeProductId);
+        ProductUpdateParams params = ProductUpdateParams.builder().setName(name).build();
+        return callGuard.call("product.update", StripeCallGuard.Kind.WRITE, null,
+                options -> product.update(params, options));
+    }
+
+    /**
+     * Create a Price for a Stripe Product. Prices are immutable, so a price change means a new
+     * Price; {@code previousPriceId} is part of the idempotency key so going back to an
+     * earlier amount still creates a fresh one
+     */
+    public Price createCatalogPrice(String stripeProductId, Long productId, BigDecimal amount, String previousPriceId) throws StripeException {
+        long amountInCents = amount.multiply(BigDecimal.valueOf(100)).longValue(); // Convert to cents
+        PriceCreateParams params = PriceCreateParams.builder()
+                .setProduct(stripeProductId)
+                .setUnitAmount(amountInCents)
+                .setCurrency("usd")
+                .build();
+        String idempotencyKey = "catalog-price-" + productId + "-" + amountInCents + "-" + (previousPriceId != null ? previousPriceId : "first");
+        return callGuard.call("price.create", StripeCallGuard.Kind.WRITE, idempotencyKey,
+                options -> Price.create(params, options));
+    }
+
+    /**
+     * Deactivate a Price that has been replaced
+     */
+    public Price archivePrice(String priceId) throws StripeException {
+        Price price = new Price();
+        price.setId(priceId);
+        PriceUpdateParams params = PriceUpdateParams.builder().setActive(false).build();
+        return callGuard.call("price.update", StripeCallGuard.Kind.WRITE, "archive-" + priceId,
+                options -> price.update(params, options));
+    }
+
     /**
      * Retrieve a PaymentIntent by ID
      */
     public PaymentIntent retrievePaymentIntent(String paymentIntentId) throws StripeException {
-        return PaymentIntent.retrieve(paymentIntentId);
+        return callGuard.call("payment_intent.retrieve", StripeCallGuard.Kind.READ, null,
+                options -> PaymentIntent.retrieve(paymentIntentId, options));
     }
 
     /**
      * Retrieve a Checkout Session by ID
      */
     public Session retrieveCheckoutSession(String sessionId) throws StripeException {
-        return Session.retrieve(sessionId);
+        return callGuard.call("checkout_session.retrieve", StripeCallGuard.Kind.READ, null,
+                options -> Session.retrieve(sessionId, options));
     }
 
     /**
-     * Confirm a PaymentIntent
+     * Confirm a PaymentIntent. The key covers the attached payment method and the intent's
+     * latest charge, so a repeated click shares a key, while a confirmation after a decline
+     * (which left a new latest charge) is a new attempt rather than a replay of the cached decline
      */
     public PaymentIntent confirmPaymentIntent(String paymentIntentId) throws StripeException {
-        PaymentIntent paymentIntent = PaymentIntent.retrieve(paymentIntentId);
-        return paymentIntent.confirm();
+        PaymentIntent paymentIntent = retrievePaymentIntent(paymentIntentId);
+        Map<String, Object> attempt = new HashMap<>();
+        attempt.put("payment_method", paymentIntent.getPaymentMethod());
+        attempt.put("latest_charge", paymentIntent.getLatestCharge());
+        String idempotencyKey = "confirm-" + paymentIntentId + "-" + paramsDigest(attempt);
+        return callGuard.call("payment_intent.confirm", StripeCallGuard.Kind.WRITE, idempotencyKey,
+                options -> paymentIntent.confirm(PaymentIntentConfirmParams.builder().build(), options));
     }
 
     /**
      * Cancel a PaymentIntent
      */
     public PaymentIntent cancelPaymentIntent(String paymentIntentId) throws StripeException {
-        PaymentIntent paymentIntent = PaymentIntent.retrieve(paymentIntentId);
-        return paymentIntent.cancel();
+        PaymentIntent paymentIntent = retrievePaymentIntent(paymentIntentId);
+        return callGuard.call("payment_intent.cancel", StripeCallGuard.Kind.WRITE, "cancel-" + paymentIntentId,
+                options -> paymentIntent.cancel(PaymentIntentCancelParams.builder().build(), options));
+    }
+
+    /**
+     * Same key for the same order and amount, so a retried or repeated create returns the
+     * object Stripe already made. A changed total gets a fresh key instead of an
+     * idempotency error
+     */
+    static String idempotencyKey(String orderReference, String operation, long amountInCents, String currency) {
+        return "order-" + orderReference + "-" + operation + "-" + amountInCents + "-" + currency.toLowerCase();
+    }
+
+    /**
+     * Short digest of request params with map keys sorted, so identical requests share a
+     * key and any change to them gets a new one
+     */
+    static String paramsDigest(Map<String, Object> params) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(String.valueOf(canonical(params)).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object canonical(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            Map<String, Object> sorted = new TreeMap<>();
+            map.forEach((key, entry) -> sorted.put(String.valueOf(key), canonical(entry)));
+            return sorted;
+        }
+        if (value instanceof List<?> list) {
+            return list.stream().map(StripeService::canonical).toList();
+        }
+        return value;
     }
 }
\ No newline at end of file
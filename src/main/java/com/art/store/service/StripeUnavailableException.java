@@ -0,0 +1,12 @@
+package com.art.store.service;
+
+/**
+ * Thrown instead of calling Stripe when the circuit is open or too many calls are already
+ * in flight. Callers should answer 503 rather than wait
+ */
+public class StripeUnavailableException extends RuntimeException {
+    
+    public StripeUnavailableException(String message) {
+        super(message);
+    }
+}
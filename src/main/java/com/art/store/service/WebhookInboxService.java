@@ -0,0 +1,259 @@
+package com.art.store.service;
+
+import com.art.store.cache.BoundedLruCache;
+import com.art.store.entity.ProcessedStripeEvent;
+import com.art.store.entity.WebhookInboxEvent;
+import com.art.store.repository.ProcessedStripeEventRepository;
+import com.art.store.repository.WebhookInboxRepository;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.stripe.exception.SignatureVerificationException;
+import com.stripe.model.Event;
+import com.stripe.net.ApiResource;
+import com.stripe.net.Webhook;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Durable inbox for Stripe webhooks. The HTTP request only verifies and stores the raw
+ * event; {@link WebhookInboxWorker} applies it later through {@link PaymentService}
+ */
+@Service
+public class WebhookInboxService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(WebhookInboxService.class);
+    
+    private static final long MAX_RETRY_BACKOFF_MS = Duration.ofMinutes(10).toMillis();
+    
+    private final WebhookInboxRepository inboxRepository;
+    private final ProcessedStripeEventRepository processedEventRepository;
+    private final PaymentService paymentService;
+    private final BoundedLruCache<String, Boolean> knownEventIds;
+    private final Counter receivedCounter;
+    private final Counter cachedDuplicateCounter;
+    private final Counter storedDuplicateCounter;
+    private final Counter processedCounter;
+    private final Counter failedCounter;
+    private final Counter deadCounter;
+    private final Timer lagTimer;
+    private final AtomicLong pendingEvents = new AtomicLong();
+    
+    @Value("${stripe.webhook.secret:whsec_YOUR_WEBHOOK_SECRET_HERE}")
+    private String webhookSecret;
+    
+    @Value("${app.webhooks.inbox.max-attempts:8}")
+    private int maxAttempts;
+    
+    @Value("${app.webhooks.inbox.retry-backoff-ms:2000}")
+    private long retryBackoffMs;
+    
+    @Autowired
+    public WebhookInboxService(WebhookInboxRepository inboxRepository,
+                               ProcessedStripeEventRepository processedEventRepository,
+                               PaymentService paymentService,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.webhooks.dedupe.cache-size:10000}") int dedupeCacheSize) {
+        this.inboxRepository = inboxRepository;
+        this.processedEventRepository = processedEventRepository;
+        this.paymentService = paymentService;
+        this.knownEventIds = new BoundedLruCache<>(dedupeCacheSize);
+        this.receivedCounter = meterRegistry.counter("webhook.inbox.received");
+        this.cachedDuplicateCounter = meterRegistry.counter("webhook.inbox.duplicates", "source", "cache");
+        this.storedDuplicateCounter = meterRegistry.counter("webhook.inbox.duplicates", "source", "database");
+        this.processedCounter = meterRegistry.counter("webhook.inbox.processed");
+        this.failedCounter = meterRegistry.counter("webhook.inbox.failed");
+        this.deadCounter = meterRegistry.counter("webhook.inbox.dead");
+        this.lagTimer = meterRegistry.timer("webhook.inbox.lag");
+        Gauge.builder("webhook.inbox.pending", pendingEvents, AtomicLong::get)
+            .description("Events waiting in the inbox as of the last drain")
+            .register(meterRegistry);
+    }
+    
+    /**
+     * Verify the signature and append the raw event to the inbox.
+     * Returns false when the event was already received; redeliveries are recognised from the
+     * event id alone, before the rest of the payload is parsed. Redelivering an event the
+     * inbox gave up on (a resend from the Stripe dashboard) queues it again
+     */
+    @Transactional
+    public boolean accept(String payload, String sigHeader) throws SignatureVerificationException {
+        Webhook.Signature.verifyHeader(payload, sigHeader, webhookSecret, Webhook.DEFAULT_TOLERANCE);
+        
+        String eventId = readEventId(payload);
+        // Only processed ids are cached, so a redelivery can still reach a FAILED row
+        if (knownEventIds.containsKey(eventId)) {
+            cachedDuplicateCounter.increment();
+            return false;
+        }
+        if (processedEventRepository.existsById(eventId)) {
+            knownEventIds.put(eventId, Boolean.TRUE);
+            storedDuplicateCounter.increment();
+            return false;
+        }
+        Optional<WebhookInboxEvent> queued = inboxRepository.findByStripeEventId(eventId);
+        if (queued.isPresent()) {
+            if (queued.get().getStatus() != WebhookInboxEvent.Status.FAILED) {
+                storedDuplicateCounter.increment();
+                return false;
+            }
+            requeue(queued.get());
+            return true;
+        }
+        
+        JsonObject json = JsonParser.parseString(payload).getAsJsonObject();
+        inboxRepository.save(new WebhookInboxEvent(eventId, json.get("type").getAsString(), orderKey(json), payload));
+        receivedCounter.increment();
+        return true;
+    }
+    
+    private void requeue(WebhookInboxEvent inboxEvent) {
+        inboxEvent.setStatus(WebhookInboxEvent.Status.PENDING);
+        inboxEvent.setAttempts(0);
+        inboxEvent.setNextAttemptAt(LocalDateTime.now());
+        logger.info("Stripe event {} redelivered after it failed ({}); queued again",
+            inboxEvent.getStripeEventId(), inboxEvent.getLastError());
+    }
+    
+    /** Lock the next due events and mark them as being processed */
+    @Transactional
+    public List<WebhookInboxEvent> claimBatch(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<WebhookInboxEvent> batch = inboxRepository.lockDueEvents(now, limit);
+        for (WebhookInboxEvent inboxEvent : batch) {
+            inboxEvent.setStatus(WebhookInboxEvent.Status.PROCESSING);
+            inboxEvent.setClaimedAt(now);
+        }
+        return batch;
+    }
+    
+    /**
+     * Apply a claimed event. The payment updates, the processed-event record and the removal
+     * from the inbox commit together
+     */
+    @Transactional
+    public void process(Long inboxEventId) {
+        WebhookInboxEvent inboxEvent = inboxRepository.findById(inboxEventId)
+            .orElseThrow(() -> new RuntimeException("Inbox event not found: " + inboxEventId));
+        
+        String eventId = inboxEvent.getStripeEventId();
+        if (!processedEventRepository.existsById(eventId)) {
+            Event event = ApiResource.GSON.fromJson(inboxEvent.getPayload(), Event.class);
+            paymentService.handleStripeEvent(event);
+            processedEventRepository.save(new ProcessedStripeEvent(eventId, inboxEvent.getEventType()));
+            processedCounter.increment();
+            lagTimer.record(Duration.between(inboxEvent.getReceivedAt(), LocalDateTime.now()));
+        }
+        inboxRepository.delete(inboxEvent);
+        rememberAfterCommit(eventId);
+    }
+    
+    /** Schedule a retry with exponential backoff, or park the event once attempts run out */
+    @Transactional
+    public void recordFailure(Long inboxEventId, Exception failure) {
+        inboxRepository.findById(inboxEventId).ifPresent(inboxEvent -> {
+            int attempts = inboxEvent.getAttempts() + 1;
+            inboxEvent.setAttempts(attempts);
+            inboxEvent.setLastError(failure.toString());
+            inboxEvent.setClaimedAt(null);
+            failedCounter.increment();
+            
+            if (attempts >= maxAttempts) {
+                inboxEvent.setStatus(WebhookInboxEvent.Status.FAILED);
+                deadCounter.increment();
+                logger.error("Giving up on Stripe event {} after {} attempts", inboxEvent.getStripeEventId(), attempts, failure);
+            } else {
+                long backoff = Math.min(retryBackoffMs << Math.min(attempts - 1, 20), MAX_RETRY_BACKOFF_MS);
+                inboxEvent.setStatus(WebhookInboxEvent.Status.PENDING);
+                inboxEvent.setNextAttemptAt(LocalDateTime.now().plusNanos(backoff * 1_000_000));
+                logger.warn("Stripe event {} failed (attempt {}), retrying in {} ms", inboxEvent.getStripeEventId(), attempts, backoff, failure);
+            }
+        });
+    }
+    
+    @Transactional
+    public int releaseStaleClaims(Duration staleAfter) {
+        return inboxRepository.releaseStaleClaims(LocalDateTime.now().minus(staleAfter));
+    }
+    
+    /** Forget processed event ids older than the retention window */
+    @Transactional
+    public int sweepProcessedEvents(Duration retention) {
+        return processedEventRepository.deleteProcessedBefore(LocalDateTime.now().minus(retention));
+    }
+    
+    @Transactional(readOnly = true)
+    public void refreshPendingCount() {
+        pendingEvents.set(inboxRepository.countByStatus(WebhookInboxEvent.Status.PENDING));
+    }
+    
+    /**
+     * Cache the id only once the row that records it has committed, so a rolled back insert
+     * can't make a redelivery look like a duplicate
+     */
+    private void rememberAfterCommit(String eventId) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                knownEventIds.put(eventId, Boolean.TRUE);
+            }
+        });
+    }
+    
+    /**
+     * Read the top-level "id" without building a tree. Stripe serializes it as the first
+     * field, so this normally stops after a single token
+     */
+    static String readEventId(String payload) {
+        try (JsonReader reader = new JsonReader(new StringReader(payload))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("id".equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+                    return reader.nextString();
+                }
+                reader.skipValue();
+            }
+        } catch (IOException | IllegalStateException e) {
+            throw new IllegalArgumentException("Malformed Stripe event payload", e);
+        }
+        throw new IllegalArgumentException("Stripe event payload has no id");
+    }
+    
+    /**
+     * Key used to serialize events: the order id from the object's metadata when present,
+     * otherwise the id of the Stripe object the event is about
+     */
+    static String orderKey(JsonObject event) {
+        JsonObject object = event.has("data") ? event.getAsJsonObject("data").getAsJsonObject("object") : null;
+        if (object != null) {
+            JsonElement metadata = object.get("metadata");
+            if (metadata != null && metadata.isJsonObject() && metadata.getAsJsonObject().has("order_id")) {
+                return "order:" + metadata.getAsJsonObject().get("order_id").getAsString();
+            }
+            if (object.has("id")) {
+                return "object:" + object.get("id").getAsString();
+            }
+        }
+        return "event:" + event.get("id").getAsString();
+    }
+}
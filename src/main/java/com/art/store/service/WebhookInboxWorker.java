@@ -0,0 +1,115 @@
+package com.art.store.service;
+
+import com.art.store.entity.WebhookInboxEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drains the webhook inbox in batches on a fixed-size pool. A batch is finished before the
+ * next one is claimed, so the backlog stays in the database rather than in memory
+ */
+@Component
+public class WebhookInboxWorker {
+    
+    private static final Logger logger = LoggerFactory.getLogger(WebhookInboxWorker.class);
+    
+    private final WebhookInboxService inboxService;
+    private final ExecutorService workers;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    
+    @Value("${app.webhooks.inbox.batch-size:50}")
+    private int batchSize;
+    
+    @Value("${app.webhooks.inbox.stale-after-seconds:300}")
+    private long staleAfterSeconds;
+    
+    @Value("${app.webhooks.dedupe.retention-days:30}")
+    private long dedupeRetentionDays;
+    
+    @Autowired
+    public WebhookInboxWorker(WebhookInboxService inboxService, MeterRegistry meterRegistry,
+                              @Value("${app.webhooks.inbox.concurrency:4}") int concurrency) {
+        this.inboxService = inboxService;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "webhook-inbox-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("webhook.inbox.in_flight", inFlight, AtomicInteger::get)
+            .description("Events currently being applied")
+            .register(meterRegistry);
+    }
+    
+    @Scheduled(fixedDelayString = "${app.webhooks.inbox.poll-interval-ms:500}")
+    public void drain() {
+        try {
+            List<WebhookInboxEvent> batch;
+            while (!(batch = inboxService.claimBatch(batchSize)).isEmpty()) {
+                List<Callable<Void>> tasks = new ArrayList<>(batch.size());
+                for (WebhookInboxEvent inboxEvent : batch) {
+                    tasks.add(() -> {
+                        apply(inboxEvent.getId());
+                        return null;
+                    });
+                }
+                workers.invokeAll(tasks);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Failed to drain webhook inbox", e);
+        } finally {
+            inboxService.refreshPendingCount();
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${app.webhooks.inbox.stale-check-interval-ms:60000}")
+    public void releaseStaleClaims() {
+        int released = inboxService.releaseStaleClaims(Duration.ofSeconds(staleAfterSeconds));
+        if (released > 0) {
+            logger.warn("Released {} webhook inbox events left claimed by a stopped worker", released);
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${app.webhooks.dedupe.sweep-interval-ms:3600000}")
+    public void sweepProcessedEvents() {
+        int removed = inboxService.sweepProcessedEvents(Duration.ofDays(dedupeRetentionDays));
+        if (removed > 0) {
+            logger.info("Removed {} processed Stripe event ids older than {} days", removed, dedupeRetentionDays);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        workers.shutdown();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+    
+    private void apply(Long inboxEventId) {
+        inFlight.incrementAndGet();
+        try {
+            inboxService.process(inboxEventId);
+        } catch (Exception e) {
+            inboxService.recordFailure(inboxEventId, e);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+}
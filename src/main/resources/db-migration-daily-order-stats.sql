@@ -0,0 +1,37 @@
+-- Migration: Daily order statistics rollup
+-- Order writes append the order's day to order_stats_changes; a scheduled fold rebuilds
+-- that day's rows in daily_order_stats and daily_product_units from the orders table.
+-- On first start with an empty rollup the application queues every day that has orders.
+
+CREATE TABLE IF NOT EXISTS order_stats_changes (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    stat_date DATE NOT NULL,
+    changed_at TIMESTAMP(6) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_order_stats_changes_stat_date ON order_stats_changes(stat_date);
+
+CREATE TABLE IF NOT EXISTS daily_order_stats (
+    stat_date DATE NOT NULL,
+    status VARCHAR(255) NOT NULL,
+    order_count BIGINT NOT NULL,
+    total_amount NUMERIC(14,2) NOT NULL,
+    paid_amount NUMERIC(14,2) NOT NULL,
+    PRIMARY KEY (stat_date, status)
+);
+
+CREATE TABLE IF NOT EXISTS daily_product_units (
+    stat_date DATE NOT NULL,
+    product_id BIGINT NOT NULL,
+    units BIGINT NOT NULL,
+    PRIMARY KEY (stat_date, product_id)
+);
+
+-- Rebuilding a day reads its orders by creation time
+CREATE INDEX IF NOT EXISTS idx_orders_created_at ON orders(created_at);
+
+-- Verify the tables
+SELECT table_name, column_name, is_nullable, data_type
+FROM information_schema.columns
+WHERE table_name IN ('order_stats_changes', 'daily_order_stats', 'daily_product_units')
+ORDER BY table_name, ordinal_position;
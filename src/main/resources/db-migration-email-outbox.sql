@@ -0,0 +1,27 @@
+-- Migration: Transactional outbox for order emails
+-- Rows are inserted by the transaction that marks an order PAID; a background dispatcher sends them
+
+CREATE SEQUENCE IF NOT EXISTS email_outbox_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS email_outbox (
+    id BIGINT PRIMARY KEY,
+    order_id BIGINT NOT NULL,
+    kind VARCHAR(255) NOT NULL,
+    status VARCHAR(255) NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    last_error TEXT,
+    created_at TIMESTAMP(6) NOT NULL,
+    next_attempt_at TIMESTAMP(6) NOT NULL,
+    claimed_at TIMESTAMP(6),
+    sent_at TIMESTAMP(6),
+    CONSTRAINT uk_email_outbox_order_kind UNIQUE (order_id, kind),
+    CONSTRAINT ck_email_outbox_kind CHECK (kind IN ('CUSTOMER_CONFIRMATION', 'ADMIN_NOTIFICATION')),
+    CONSTRAINT ck_email_outbox_status CHECK (status IN ('PENDING', 'SENDING', 'SENT', 'DEAD'))
+);
+
+CREATE INDEX IF NOT EXISTS idx_email_outbox_status_next_attempt ON email_outbox(status, next_attempt_at);
+
+-- Verify the table
+SELECT column_name, is_nullable, data_type
+FROM information_schema.columns
+WHERE table_name = 'email_outbox';
@@ -0,0 +1,10 @@
+-- Migration: Index for customer order history
+-- History pages filter on lower(email) and seek on (created_at, id), newest first
+
+CREATE INDEX IF NOT EXISTS idx_orders_lower_email_created_at
+    ON orders (lower(email), created_at DESC, id DESC);
+
+-- Verify the index
+SELECT indexname, indexdef
+FROM pg_indexes
+WHERE tablename = 'orders' AND indexname = 'idx_orders_lower_email_created_at';
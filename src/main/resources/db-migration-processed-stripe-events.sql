@@ -0,0 +1,22 @@
+-- Migration: Registry of Stripe events that have already been applied
+-- Redelivered webhooks are acknowledged without being processed again
+
+CREATE TABLE IF NOT EXISTS processed_stripe_events (
+    event_id VARCHAR(255) PRIMARY KEY,
+    event_type VARCHAR(255) NOT NULL,
+    processed_at TIMESTAMP(6) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_processed_stripe_events_processed_at ON processed_stripe_events(processed_at);
+
+-- Inbox rows are now deleted once applied
+DELETE FROM stripe_webhook_inbox WHERE status = 'DONE';
+ALTER TABLE stripe_webhook_inbox DROP COLUMN IF EXISTS processed_at;
+ALTER TABLE stripe_webhook_inbox DROP CONSTRAINT IF EXISTS ck_stripe_webhook_inbox_status;
+ALTER TABLE stripe_webhook_inbox ADD CONSTRAINT ck_stripe_webhook_inbox_status
+    CHECK (status IN ('PENDING', 'PROCESSING', 'FAILED'));
+
+-- Verify the table
+SELECT column_name, is_nullable, data_type
+FROM information_schema.columns
+WHERE table_name = 'processed_stripe_events';
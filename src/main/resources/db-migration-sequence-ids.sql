@@ -0,0 +1,21 @@
+-- Migration: switch primary keys from IDENTITY columns to pooled sequences
+-- Hibernate reserves ids in blocks of 50 (allocationSize), which lets inserts be
+-- JDBC-batched. Each sequence must increment by 50 and start above the current
+-- max id of its table. Run this before deploying with ddl-auto=validate, and
+-- before starting a development database that already has rows.
+
+CREATE SEQUENCE IF NOT EXISTS products_seq INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS orders_seq INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS order_items_seq INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS payments_seq INCREMENT BY 50;
+
+-- Sync sequences past existing ids
+SELECT setval('products_seq', COALESCE((SELECT MAX(id) FROM products), 0) + 50);
+SELECT setval('orders_seq', COALESCE((SELECT MAX(id) FROM orders), 0) + 50);
+SELECT setval('order_items_seq', COALESCE((SELECT MAX(id) FROM order_items), 0) + 50);
+SELECT setval('payments_seq', COALESCE((SELECT MAX(id) FROM payments), 0) + 50);
+
+-- Verify the change
+SELECT sequencename, increment_by, last_value
+FROM pg_sequences
+WHERE sequencename IN ('products_seq', 'orders_seq', 'order_items_seq', 'payments_seq');
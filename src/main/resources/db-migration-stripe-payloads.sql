@@ -0,0 +1,24 @@
+-- Migration: Raw Stripe payloads move off the payments row
+-- Payloads are gzip-compressed into an append-only table and expired by a retention job
+
+CREATE SEQUENCE IF NOT EXISTS stripe_payloads_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS stripe_payloads (
+    id BIGINT PRIMARY KEY,
+    stripe_object_id VARCHAR(255) NOT NULL,
+    event_type VARCHAR(255) NOT NULL,
+    compressed_body BYTEA NOT NULL,
+    raw_length INTEGER NOT NULL,
+    received_at TIMESTAMP(6) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_stripe_payloads_object_id ON stripe_payloads(stripe_object_id, id);
+CREATE INDEX IF NOT EXISTS idx_stripe_payloads_received_at ON stripe_payloads(received_at);
+
+-- Existing inline payloads are debug-only and are not carried over; export them first if needed
+ALTER TABLE payments DROP COLUMN IF EXISTS stripe_response;
+
+-- Verify the table
+SELECT column_name, is_nullable, data_type
+FROM information_schema.columns
+WHERE table_name = 'stripe_payloads';
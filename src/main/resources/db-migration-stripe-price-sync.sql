@@ -0,0 +1,13 @@
+-- Migration: Stripe Product/Price ids on products
+-- Checkout sends synced Price ids instead of inline price data
+
+ALTER TABLE products ADD COLUMN IF NOT EXISTS stripe_product_id VARCHAR(255);
+ALTER TABLE products ADD COLUMN IF NOT EXISTS stripe_price_id VARCHAR(255);
+ALTER TABLE products ADD COLUMN IF NOT EXISTS stripe_price_amount NUMERIC(10, 2);
+ALTER TABLE products ADD COLUMN IF NOT EXISTS stripe_product_name VARCHAR(255);
+
+-- Verify the change
+SELECT column_name, is_nullable, data_type
+FROM information_schema.columns
+WHERE table_name = 'products'
+AND column_name LIKE 'stripe_%';
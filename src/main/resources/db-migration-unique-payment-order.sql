@@ -0,0 +1,27 @@
+-- Migration: One payment row per order
+-- Payment creation no longer holds a transaction open across the Stripe call,
+-- so the database has to reject a second payment row for the same order
+
+-- Remove duplicate payment rows, keeping the most recently updated one per order
+DELETE FROM payments p
+USING payments newer
+WHERE p.order_id = newer.order_id
+AND (p.updated_at < newer.updated_at OR (p.updated_at = newer.updated_at AND p.id < newer.id));
+
+-- Add unique constraint if it doesn't exist
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1 FROM information_schema.table_constraints 
+        WHERE constraint_name = 'uk_payments_order_id' 
+        AND table_name = 'payments'
+    ) THEN
+        ALTER TABLE payments ADD CONSTRAINT uk_payments_order_id UNIQUE (order_id);
+    END IF;
+END $$;
+
+-- Verify the change
+SELECT constraint_name, constraint_type
+FROM information_schema.table_constraints
+WHERE table_name = 'payments'
+AND constraint_name = 'uk_payments_order_id';
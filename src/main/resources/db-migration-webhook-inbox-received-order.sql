@@ -0,0 +1,11 @@
+-- Migration: Order webhook inbox events per key by receipt time
+-- Ids come from a pooled sequence, so across instances they do not follow receipt order
+
+DROP INDEX IF EXISTS idx_webhook_inbox_order_key;
+CREATE INDEX IF NOT EXISTS idx_webhook_inbox_order_key_received
+    ON stripe_webhook_inbox (order_key, received_at, id);
+
+-- Verify the index
+SELECT indexname, indexdef
+FROM pg_indexes
+WHERE tablename = 'stripe_webhook_inbox' AND indexname = 'idx_webhook_inbox_order_key_received';
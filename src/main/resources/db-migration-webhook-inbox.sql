@@ -0,0 +1,29 @@
+-- Migration: Durable inbox for Stripe webhook events
+-- The webhook endpoint stores the raw event here and acks; a background worker applies it
+
+CREATE SEQUENCE IF NOT EXISTS stripe_webhook_inbox_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS stripe_webhook_inbox (
+    id BIGINT PRIMARY KEY,
+    stripe_event_id VARCHAR(255) NOT NULL,
+    event_type VARCHAR(255) NOT NULL,
+    order_key VARCHAR(255) NOT NULL,
+    payload TEXT NOT NULL,
+    status VARCHAR(255) NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    last_error TEXT,
+    received_at TIMESTAMP(6) NOT NULL,
+    next_attempt_at TIMESTAMP(6) NOT NULL,
+    claimed_at TIMESTAMP(6),
+    processed_at TIMESTAMP(6),
+    CONSTRAINT uk_stripe_webhook_inbox_event_id UNIQUE (stripe_event_id),
+    CONSTRAINT ck_stripe_webhook_inbox_status CHECK (status IN ('PENDING', 'PROCESSING', 'DONE', 'FAILED'))
+);
+
+CREATE INDEX IF NOT EXISTS idx_webhook_inbox_status_next_attempt ON stripe_webhook_inbox(status, next_attempt_at);
+CREATE INDEX IF NOT EXISTS idx_webhook_inbox_order_key ON stripe_webhook_inbox(order_key, id);
+
+-- Verify the table
+SELECT column_name, is_nullable, data_type
+FROM information_schema.columns
+WHERE table_name = 'stripe_webhook_inbox';
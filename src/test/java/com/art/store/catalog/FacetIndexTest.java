@@ -0,0 +1,84 @@
+package com.art.store.catalog;
+
+import com.art.store.dto.ProductBrowseDto;
+import com.art.store.dto.ProductDto;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Filtered browse results and facet counts, each facet counted under every filter but its own
+ */
+class FacetIndexTest {
+
+	private static final ProductDto CHEAP_PRINT = product(1, "Prints", "10.00", 1);
+	private static final ProductDto SOLD_OUT_PRINT = product(2, "Prints", "30.00", 0);
+	private static final ProductDto TOTE = product(3, "Bags", "30.00", 2);
+	private static final ProductDto BACKPACK = product(4, "Bags", "60.00", 1);
+	private static final ProductDto SOLD_OUT_MUG = product(5, "Mugs", "5.00", 0);
+
+	private static final FacetIndex INDEX = FacetIndex.build(
+			List.of(CHEAP_PRINT, SOLD_OUT_PRINT, TOTE, BACKPACK, SOLD_OUT_MUG),
+			new BigDecimal[] {new BigDecimal("50"), new BigDecimal("20")});
+
+	@Test
+	void categoryFilterDoesNotNarrowCategoryCounts() {
+		ProductBrowseDto result = INDEX.browse("prints", null, null, false, FacetIndex.Sort.NEWEST, 0, 10);
+
+		assertEquals(List.of(CHEAP_PRINT, SOLD_OUT_PRINT), result.getProducts());
+		assertEquals(2, result.getTotal());
+		assertEquals(Map.of("Bags", 2, "Mugs", 1, "Prints", 2), result.getCategoryCounts());
+		assertEquals(List.of(1, 1, 0), bucketCounts(result));
+		assertEquals(1, result.getAvailableCount());
+	}
+
+	@Test
+	void priceAndStockFiltersCountAcrossFacets() {
+		ProductBrowseDto result = INDEX.browse(null, new BigDecimal("20"), null, true, FacetIndex.Sort.PRICE_ASC, 0, 10);
+
+		assertEquals(List.of(TOTE, BACKPACK), result.getProducts());
+		assertEquals(Map.of("Bags", 2, "Mugs", 0, "Prints", 0), result.getCategoryCounts());
+		// Buckets ignore the price filter: [0, 20), [20, 50), [50, +inf) among in-stock products
+		assertEquals(List.of(1, 1, 1), bucketCounts(result));
+		assertEquals(new BigDecimal("20"), result.getPriceRangeCounts().get(1).getMin());
+		assertEquals(new BigDecimal("50"), result.getPriceRangeCounts().get(1).getMax());
+		// Availability ignores the stock filter but keeps the price filter
+		assertEquals(2, result.getAvailableCount());
+	}
+
+	@Test
+	void unknownCategoryMatchesNothingButKeepsCounts() {
+		ProductBrowseDto result = INDEX.browse("posters", null, null, false, FacetIndex.Sort.NEWEST, 0, 10);
+
+		assertEquals(List.of(), result.getProducts());
+		assertEquals(0, result.getTotal());
+		assertEquals(Map.of("Bags", 2, "Mugs", 1, "Prints", 2), result.getCategoryCounts());
+		assertEquals(List.of(0, 0, 0), bucketCounts(result));
+	}
+
+	@Test
+	void sortedPagesSkipTheOffset() {
+		ProductBrowseDto result = INDEX.browse(null, null, null, false, FacetIndex.Sort.PRICE_DESC, 1, 2);
+
+		assertEquals(List.of(TOTE, SOLD_OUT_PRINT), result.getProducts());
+		assertEquals(5, result.getTotal());
+	}
+
+	private static List<Integer> bucketCounts(ProductBrowseDto result) {
+		return result.getPriceRangeCounts().stream().map(ProductBrowseDto.PriceRangeCount::getCount).toList();
+	}
+
+	private static ProductDto product(long id, String category, String price, int stock) {
+		ProductDto product = new ProductDto();
+		product.setId(id);
+		product.setName("Product " + id);
+		product.setCategory(category);
+		product.setPrice(new BigDecimal(price));
+		product.setStockQuantity(stock);
+		return product;
+	}
+}
@@ -0,0 +1,102 @@
+package com.art.store.catalog;
+
+import com.art.store.dto.ProductDto;
+import com.art.store.service.ProductService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * When the catalog publishes a new snapshot: after a commit, never after a rollback, and once
+ * for a burst of commits that land while a rebuild is waiting
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ProductCatalogTest {
+
+	@Autowired
+	private ProductCatalog catalog;
+
+	@Autowired
+	private ProductService productService;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Test
+	void committedStockChangeSwapsInNewSnapshot() {
+		CatalogSnapshot before = catalog.snapshot();
+		ProductDto product = before.getActiveProducts().get(0);
+		int stock = product.getStockQuantity();
+
+		assertTrue(productService.reduceStock(product.getId(), 1));
+
+		CatalogSnapshot after = catalog.snapshot();
+		assertTrue(after.getVersion() > before.getVersion());
+		assertEquals(stock - 1, after.getProduct(product.getId()).getStockQuantity());
+		// Readers still holding the old snapshot keep a consistent view
+		assertEquals(stock, before.getProduct(product.getId()).getStockQuantity());
+	}
+
+	@Test
+	void rolledBackChangeKeepsSnapshot() {
+		CatalogSnapshot before = catalog.snapshot();
+		ProductDto product = before.getActiveProducts().get(1);
+
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			productService.reduceStock(product.getId(), 1);
+			status.setRollbackOnly();
+		});
+
+		assertSame(before, catalog.snapshot());
+	}
+
+	@Test
+	void snapshotProductsAreReadOnly() {
+		ProductDto product = catalog.snapshot().getActiveProducts().get(0);
+
+		assertThrows(UnsupportedOperationException.class, () -> product.setStockQuantity(0));
+		assertThrows(UnsupportedOperationException.class, () -> product.setPrice(null));
+	}
+
+	@Test
+	void commitsWhileARebuildWaitsShareIt() throws Exception {
+		CatalogSnapshot before = catalog.snapshot();
+		ProductDto product = before.getActiveProducts().get(2);
+		int stock = product.getStockQuantity();
+		int checkouts = 5;
+
+		List<CompletableFuture<Boolean>> commits = new ArrayList<>();
+		synchronized (catalog) {
+			// The first commit takes the pending rebuild and waits here; the rest find it pending
+			for (int i = 0; i < checkouts; i++) {
+				commits.add(CompletableFuture.supplyAsync(() -> productService.reduceStock(product.getId(), 1)));
+			}
+			long deadline = System.currentTimeMillis() + 10_000;
+			while (commits.stream().filter(CompletableFuture::isDone).count() < checkouts - 1) {
+				assertTrue(System.currentTimeMillis() < deadline, "commits did not return while the rebuild waited");
+				Thread.sleep(10);
+			}
+		}
+		for (CompletableFuture<Boolean> commit : commits) {
+			assertTrue(commit.get(10, TimeUnit.SECONDS));
+		}
+
+		CatalogSnapshot after = catalog.snapshot();
+		assertEquals(before.getVersion() + 1, after.getVersion());
+		assertEquals(stock - checkouts, after.getProduct(product.getId()).getStockQuantity());
+	}
+}
@@ -0,0 +1,60 @@
+package com.art.store.catalog;
+
+import com.art.store.dto.ProductDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Relevance ordering of the inverted index: field weights, whole words over prefixes, every
+ * query token required, and catalog order breaking ties
+ */
+class ProductSearchIndexTest {
+
+	private static final ProductDto CANVAS_PRINT = product(1, "Canvas Print", "Prints", "Stretched on a pine frame");
+	private static final ProductDto LINEN_TOTE = product(2, "Linen Tote", "Canvases", "Printed by hand");
+	private static final ProductDto FRAMED_POSTER = product(3, "Framed Poster", "Prints", "Archival canvas texture");
+	private static final ProductDto CANVAS_BAG = product(4, "Canvas Bag", "Accessories", "Roomy");
+	private static final ProductDto PRINTING_KIT = product(5, "Printing Kit", "Supplies", "Everything for block printing");
+
+	private static final ProductSearchIndex INDEX = ProductSearchIndex.build(
+			List.of(CANVAS_PRINT, LINEN_TOTE, FRAMED_POSTER, CANVAS_BAG, PRINTING_KIT));
+
+	@Test
+	void nameOutranksCategoryOutranksDescription() {
+		// Name matches tie on score and keep catalog order; the category and description matches follow
+		assertEquals(List.of(CANVAS_PRINT, CANVAS_BAG, LINEN_TOTE, FRAMED_POSTER), INDEX.search("canvas", 0, 10).getProducts());
+	}
+
+	@Test
+	void wholeWordOutranksPrefix() {
+		// "print" is a whole word in Canvas Print's name and only a prefix of "printing"
+		assertEquals(List.of(CANVAS_PRINT, PRINTING_KIT, FRAMED_POSTER, LINEN_TOTE), INDEX.search("Print", 0, 10).getProducts());
+	}
+
+	@Test
+	void everyTokenMustMatch() {
+		assertEquals(List.of(CANVAS_PRINT), INDEX.search("canvas pine", 0, 10).getProducts());
+		assertEquals(List.of(), INDEX.search("canvas velvet", 0, 10).getProducts());
+	}
+
+	@Test
+	void pagesKeepTheTotal() {
+		ProductSearchIndex.SearchResult page = INDEX.search("canvas", 1, 2);
+
+		assertEquals(List.of(CANVAS_BAG, LINEN_TOTE), page.getProducts());
+		assertEquals(4, page.getTotal());
+		assertEquals(5, INDEX.search("  ", 0, 2).getTotal());
+	}
+
+	private static ProductDto product(long id, String name, String category, String description) {
+		ProductDto product = new ProductDto();
+		product.setId(id);
+		product.setName(name);
+		product.setCategory(category);
+		product.setDescription(description);
+		return product;
+	}
+}
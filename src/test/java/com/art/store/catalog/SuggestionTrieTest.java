@@ -0,0 +1,62 @@
+package com.art.store.catalog;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Typeahead ranking and case folding, and incremental rebuilds agreeing with a full build
+ */
+class SuggestionTrieTest {
+
+	private static final Map<String, Long> ENTRIES = Map.of(
+			"Essential Tee", 5L,
+			"Tee Shirt Dress", 10L,
+			"Tote Bag", 1L,
+			"Apparel", 3L,
+			"Accessories", 7L);
+
+	@Test
+	void suggestsFromAnyWordStartByPopularity() {
+		SuggestionTrie trie = SuggestionTrie.build(ENTRIES, 2);
+
+		assertEquals(List.of("Tee Shirt Dress", "Essential Tee"), trie.suggest("tee"));
+		assertEquals(List.of("Tee Shirt Dress", "Essential Tee"), trie.suggest("T"));
+		assertEquals(List.of("Tote Bag"), trie.suggest("bag"));
+		assertEquals(List.of(), trie.suggest("ential"));
+		assertEquals(List.of(), trie.suggest(""));
+	}
+
+	@Test
+	void prefixIsFoldedLikeTheKeys() {
+		SuggestionTrie trie = SuggestionTrie.build(Map.of("İstanbul Print", 1L, "Ink Wash", 2L), 5);
+
+		// Dotted capital I lower-cases to two chars; folding the prefix per char would miss it
+		assertEquals(List.of("İstanbul Print"), trie.suggest("İST"));
+		assertEquals(List.of("Ink Wash"), trie.suggest("INK"));
+	}
+
+	@Test
+	void rebuildMatchesFullBuild() {
+		SuggestionTrie trie = SuggestionTrie.build(ENTRIES, 3);
+		assertSame(trie, trie.rebuild(new HashMap<>(ENTRIES), 3));
+
+		Map<String, Long> next = new HashMap<>(ENTRIES);
+		next.put("Tote Bag", 20L);
+		next.remove("Apparel");
+		next.put("Art Print", 4L);
+		SuggestionTrie rebuilt = trie.rebuild(next, 3);
+		SuggestionTrie built = SuggestionTrie.build(next, 3);
+
+		for (String prefix : List.of("t", "te", "tee", "to", "b", "a", "ap", "ar", "acc", "e", "es", "p", "d", "x")) {
+			assertEquals(built.suggest(prefix), rebuilt.suggest(prefix), prefix);
+		}
+		assertEquals(List.of("Tote Bag", "Tee Shirt Dress", "Essential Tee"), rebuilt.suggest("t"));
+		assertEquals(List.of(), rebuilt.suggest("app"));
+	}
+}
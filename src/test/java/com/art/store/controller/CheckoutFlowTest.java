@@ -0,0 +1,263 @@
+package com.art.store.controller;
+
+import com.art.store.entity.Order;
+import com.art.store.entity.Product;
+import com.art.store.entity.WebhookInboxEvent;
+import com.art.store.repository.ProductRepository;
+import com.art.store.repository.WebhookInboxRepository;
+import com.art.store.service.OrderService;
+import com.art.store.service.WebhookInboxService;
+import com.art.store.support.CheckoutRequests;
+import com.art.store.support.FakeStripeServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"app.stripe.retry.backoff-ms=1",
+		"app.stripe.circuit.failure-threshold=3",
+		"app.webhooks.inbox.max-attempts=2"
+})
+@ActiveProfiles("test")
+class CheckoutFlowTest {
+
+	private static final String WEBHOOK_SECRET = "whsec_checkout_flow_test";
+
+	private static final FakeStripeServer stripe = FakeStripeServer.start(WEBHOOK_SECRET);
+
+	@DynamicPropertySource
+	static void stripeProperties(DynamicPropertyRegistry registry) {
+		registry.add("stripe.api.base", stripe::baseUrl);
+		registry.add("stripe.webhook.secret", () -> WEBHOOK_SECRET);
+	}
+
+	@Autowired
+	private TestRestTemplate rest;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private OrderService orderService;
+
+	@Autowired
+	private WebhookInboxRepository inboxRepository;
+
+	@Autowired
+	private WebhookInboxService inboxService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@AfterEach
+	void resetStripe() {
+		stripe.setErrorRate(0);
+		stripe.setLatency(0, 0);
+	}
+
+	@AfterAll
+	static void stopStripe() {
+		stripe.close();
+	}
+
+	@Test
+	void paidCheckoutSessionMarksOrderPaidOnce() {
+		String orderId = createOrder();
+		String sessionId = createCheckoutSession(orderId);
+
+		String payload = stripe.completeCheckoutSession(sessionId);
+		assertEquals(HttpStatus.OK, postWebhook(payload).getStatusCode());
+
+		// Session events are serialized with the order's payment_intent events
+		Order order = orderService.getOrderByOrderId(orderId).orElseThrow();
+		assertEquals(List.of("order:" + order.getId()),
+				inboxRepository.findAll().stream().map(WebhookInboxEvent::getOrderKey).toList());
+		drainInbox();
+
+		order = orderService.getOrderByOrderId(orderId).orElseThrow();
+		assertEquals(Order.PaymentStatus.PAID, order.getPaymentStatus());
+		assertEquals(Order.OrderStatus.CONFIRMED, order.getStatus());
+
+		// The committed webhook left the paid session in the status cache
+		long requestsBefore = stripe.requestCount();
+		ResponseEntity<Map> status = rest.getForEntity("/api/payments/session/" + sessionId, Map.class);
+		assertEquals("paid", status.getBody().get("paymentStatus"));
+		assertEquals(requestsBefore, stripe.requestCount());
+
+		// A redelivery is acknowledged but never queued again
+		assertEquals(HttpStatus.OK, postWebhook(payload).getStatusCode());
+		assertTrue(inboxRepository.findAll().isEmpty());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void orderViewIsRefreshedWhenPaymentCommits() {
+		String orderId = createOrder();
+
+		Map<String, Object> pending = getOrderView(orderId);
+		assertEquals("PENDING", pending.get("paymentStatus"));
+		List<Map<String, Object>> items = (List<Map<String, Object>>) pending.get("orderItems");
+		assertEquals(2, items.size());
+		Map<String, Object> product = (Map<String, Object>) items.get(0).get("product");
+		assertTrue(product.containsKey("name"));
+		assertFalse(product.containsKey("description"));
+
+		assertEquals(HttpStatus.OK, postWebhook(stripe.completeCheckoutSession(createCheckoutSession(orderId))).getStatusCode());
+		drainInbox();
+
+		// The cached PENDING view was dropped when the webhook's transaction committed
+		assertEquals("PAID", getOrderView(orderId).get("paymentStatus"));
+	}
+
+	@Test
+	void failedEventIsQueuedAgainWhenRedelivered() {
+		String orderId = createOrder();
+		String payload = stripe.completeCheckoutSession(createCheckoutSession(orderId));
+		assertEquals(HttpStatus.OK, postWebhook(payload).getStatusCode());
+
+		WebhookInboxEvent inboxEvent = inboxRepository.findAll().get(0);
+		inboxService.recordFailure(inboxEvent.getId(), new IllegalStateException("first"));
+		inboxService.recordFailure(inboxEvent.getId(), new IllegalStateException("second"));
+		assertEquals(WebhookInboxEvent.Status.FAILED, inboxRepository.findById(inboxEvent.getId()).orElseThrow().getStatus());
+
+		// A resend from the Stripe dashboard gives the parked event a fresh set of attempts
+		assertEquals(HttpStatus.OK, postWebhook(payload).getStatusCode());
+		WebhookInboxEvent requeued = inboxRepository.findById(inboxEvent.getId()).orElseThrow();
+		assertEquals(WebhookInboxEvent.Status.PENDING, requeued.getStatus());
+		assertEquals(0, requeued.getAttempts());
+
+		drainInbox();
+		assertEquals(Order.PaymentStatus.PAID, orderService.getOrderByOrderId(orderId).orElseThrow().getPaymentStatus());
+	}
+
+	@Test
+	void inboxEventsForAnOrderAreClaimedInReceiptOrder() {
+		WebhookInboxEvent later = inboxRepository.save(new WebhookInboxEvent("evt_order_a", "payment_intent.succeeded", "order:ordering", "{}"));
+		WebhookInboxEvent earlier = inboxRepository.save(new WebhookInboxEvent("evt_order_b", "payment_intent.payment_failed", "order:ordering", "{}"));
+		// Another instance took its id from an older sequence block but received its event first
+		jdbcTemplate.update("UPDATE stripe_webhook_inbox SET received_at = received_at - INTERVAL '1' SECOND WHERE id = ?", earlier.getId());
+
+		try {
+			assertEquals(List.of(earlier.getId()), claimedIds("order:ordering"));
+			inboxRepository.deleteById(earlier.getId());
+			assertEquals(List.of(later.getId()), claimedIds("order:ordering"));
+		} finally {
+			inboxRepository.deleteAll(inboxRepository.findAllById(List.of(later.getId(), earlier.getId())));
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void orderHistoryNeedsTheTokenIssuedForThatEmail() {
+		List<Product> products = productRepository.findAll();
+		ResponseEntity<Map> created = rest.postForEntity("/api/orders",
+				CheckoutRequests.order(products.subList(0, 2)), Map.class);
+		String orderId = (String) created.getBody().get("orderId");
+		String token = (String) created.getBody().get("historyToken");
+
+		assertEquals(HttpStatus.UNAUTHORIZED, getOrderHistory("buyer@example.com", null).getStatusCode());
+		assertEquals(HttpStatus.UNAUTHORIZED, getOrderHistory("someone@example.com", token).getStatusCode());
+		assertEquals(HttpStatus.UNAUTHORIZED, getOrderHistory("buyer@example.com", token + "x").getStatusCode());
+
+		ResponseEntity<Object> history = getOrderHistory("Buyer@Example.com", token);
+		assertEquals(HttpStatus.OK, history.getStatusCode());
+		assertTrue(((List<Map<String, Object>>) history.getBody()).stream()
+				.anyMatch(summary -> orderId.equals(summary.get("orderId"))));
+	}
+
+	@Test
+	void webhookWithBadSignatureIsRejected() {
+		String orderId = createOrder();
+		String payload = stripe.completeCheckoutSession(createCheckoutSession(orderId));
+
+		ResponseEntity<String> response = rest.postForEntity("/api/payments/webhook",
+				CheckoutRequests.webhook(payload, stripe.signatureFor(payload + " ")), String.class);
+
+		assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+	}
+
+	@Test
+	@DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+	void failingStripeOpensCircuitAndFailsFast() {
+		String orderId = createOrder();
+		stripe.setErrorRate(1.0);
+
+		ResponseEntity<Map> first = createCheckoutSessionResponse(orderId);
+		assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, first.getStatusCode());
+
+		long requestsBefore = stripe.requestCount();
+		ResponseEntity<Map> second = createCheckoutSessionResponse(orderId);
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, second.getStatusCode());
+		assertEquals(requestsBefore, stripe.requestCount());
+	}
+
+	private String createOrder() {
+		List<Product> products = productRepository.findAll();
+		ResponseEntity<Map> response = rest.postForEntity("/api/orders",
+				CheckoutRequests.order(products.subList(0, 2)), Map.class);
+		assertEquals(HttpStatus.CREATED, response.getStatusCode());
+		return (String) response.getBody().get("orderId");
+	}
+
+	private Map<String, Object> getOrderView(String orderId) {
+		ResponseEntity<Map> response = rest.getForEntity("/api/orders/" + orderId, Map.class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		return response.getBody();
+	}
+
+	private ResponseEntity<Object> getOrderHistory(String email, String token) {
+		HttpHeaders headers = new HttpHeaders();
+		if (token != null) {
+			headers.set("X-Order-History-Token", token);
+		}
+		return rest.exchange("/api/orders/customer/" + email, HttpMethod.GET, new HttpEntity<>(headers), Object.class);
+	}
+
+	private String createCheckoutSession(String orderId) {
+		ResponseEntity<Map> response = createCheckoutSessionResponse(orderId);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		return (String) response.getBody().get("sessionId");
+	}
+
+	private ResponseEntity<Map> createCheckoutSessionResponse(String orderId) {
+		return rest.postForEntity("/api/payments/create-checkout-session", Map.of("orderId", orderId), Map.class);
+	}
+
+	private ResponseEntity<String> postWebhook(String payload) {
+		return rest.postForEntity("/api/payments/webhook",
+				CheckoutRequests.webhook(payload, stripe.signatureFor(payload)), String.class);
+	}
+
+	private List<Long> claimedIds(String orderKey) {
+		return inboxService.claimBatch(10).stream()
+				.filter(inboxEvent -> orderKey.equals(inboxEvent.getOrderKey()))
+				.map(WebhookInboxEvent::getId)
+				.toList();
+	}
+
+	private void drainInbox() {
+		for (WebhookInboxEvent inboxEvent : inboxRepository.findAll()) {
+			inboxService.process(inboxEvent.getId());
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package com.art.store.controller;
+
+import com.art.store.entity.Order;
+import com.art.store.entity.Product;
+import com.art.store.repository.ProductRepository;
+import com.art.store.service.OrderService;
+import com.art.store.service.PaymentService;
+import com.art.store.service.PaymentStatusStreamService;
+import com.art.store.support.CheckoutRequests;
+import com.art.store.support.FakeStripeServer;
+import com.stripe.model.Event;
+import com.stripe.net.ApiResource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The payment status stream over a real connection: it opens with the current status and the
+ * server ends it once the order reaches a final status
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class PaymentStatusStreamTest {
+
+	private static final FakeStripeServer stripe = FakeStripeServer.start("whsec_payment_status_stream_test");
+
+	@DynamicPropertySource
+	static void stripeProperties(DynamicPropertyRegistry registry) {
+		registry.add("stripe.api.base", stripe::baseUrl);
+	}
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private OrderService orderService;
+
+	@Autowired
+	private PaymentService paymentService;
+
+	@Autowired
+	private PaymentStatusStreamService streamService;
+
+	private final HttpClient client = HttpClient.newHttpClient();
+
+	@AfterAll
+	static void stopStripe() {
+		stripe.close();
+	}
+
+	@Test
+	void streamEndsOncePaymentSucceeds() throws Exception {
+		List<Product> products = productRepository.findAll();
+		Order order = orderService.createOrder(CheckoutRequests.order(products.subList(0, 1)));
+		String paymentIntentId = paymentService.createPaymentIntent(order, "usd").getPaymentIntentId();
+		int openBefore = streamService.getOpenStreamCount();
+
+		HttpResponse<Stream<String>> response = client.send(stream(order.getOrderId()), HttpResponse.BodyHandlers.ofLines());
+		assertEquals(200, response.statusCode());
+		BlockingQueue<String> events = new LinkedBlockingQueue<>();
+		CompletableFuture<Void> ended = CompletableFuture.runAsync(() -> response.body()
+				.filter(line -> line.startsWith("data:"))
+				.forEach(events::add));
+
+		String initial = events.poll(5, TimeUnit.SECONDS);
+		assertNotNull(initial, "expected the current status first");
+		assertTrue(initial.contains("\"paymentStatus\":\"PROCESSING\""), initial);
+		assertEquals(openBefore + 1, streamService.getOpenStreamCount());
+
+		paymentService.handleStripeEvent(event(stripe.succeedPaymentIntent(paymentIntentId)));
+
+		// The server completes the response after the final status, so the body runs out
+		ended.get(5, TimeUnit.SECONDS);
+		String last = events.poll(1, TimeUnit.SECONDS);
+		assertNotNull(last, "expected the paid status before the stream ended");
+		assertTrue(last.contains("\"paymentStatus\":\"PAID\""), last);
+		assertEquals(openBefore, streamService.getOpenStreamCount());
+	}
+
+	@Test
+	void streamForPaidOrderEndsAfterCurrentStatus() throws Exception {
+		List<Product> products = productRepository.findAll();
+		Order order = orderService.createOrder(CheckoutRequests.order(products.subList(0, 1)));
+		String paymentIntentId = paymentService.createPaymentIntent(order, "usd").getPaymentIntentId();
+		paymentService.handleStripeEvent(event(stripe.succeedPaymentIntent(paymentIntentId)));
+
+		HttpResponse<Stream<String>> response = client.send(stream(order.getOrderId()), HttpResponse.BodyHandlers.ofLines());
+		List<String> data = CompletableFuture.supplyAsync(() -> response.body().filter(line -> line.startsWith("data:")).toList())
+				.get(5, TimeUnit.SECONDS);
+
+		assertEquals(1, data.size());
+		assertTrue(data.get(0).contains("\"paymentStatus\":\"PAID\""), data.get(0));
+	}
+
+	@Test
+	void unknownOrderIsNotFound() throws Exception {
+		HttpResponse<Void> response = client.send(stream("ORD-DOES-NOT-EXIST"), HttpResponse.BodyHandlers.discarding());
+
+		assertEquals(404, response.statusCode());
+	}
+
+	private HttpRequest stream(String orderId) {
+		return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/payments/stream/" + orderId))
+				.header("Accept", "text/event-stream")
+				.build();
+	}
+
+	private static Event event(String payload) {
+		return ApiResource.GSON.fromJson(payload, Event.class);
+	}
+}
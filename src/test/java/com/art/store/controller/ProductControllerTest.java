@@ -0,0 +1,188 @@
+package com.art.store.controller;
+
+import com.art.store.dto.ProductDto;
+import com.art.store.service.ProductService;
+import com.art.store.support.FakeStripeServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The catalog listings over HTTP: validators, 304s, gzip negotiation and cursor paging
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class ProductControllerTest {
+
+	private static final FakeStripeServer stripe = FakeStripeServer.start("whsec_product_controller_test");
+
+	@DynamicPropertySource
+	static void stripeProperties(DynamicPropertyRegistry registry) {
+		registry.add("stripe.api.base", stripe::baseUrl);
+	}
+
+	@Autowired
+	private TestRestTemplate rest;
+
+	@Autowired
+	private ProductService productService;
+
+	@AfterAll
+	static void stopStripe() {
+		stripe.close();
+	}
+
+	@Test
+	void matchingEtagAnswersNotModified() {
+		ResponseEntity<byte[]> first = get("/api/products/categories", null, null);
+		assertEquals(HttpStatus.OK, first.getStatusCode());
+		String etag = first.getHeaders().getETag();
+		assertNotNull(etag);
+
+		ResponseEntity<byte[]> revalidated = get("/api/products/categories", null, etag);
+		assertEquals(HttpStatus.NOT_MODIFIED, revalidated.getStatusCode());
+		assertEquals(etag, revalidated.getHeaders().getETag());
+		assertTrue(revalidated.getHeaders().getVary().contains(HttpHeaders.ACCEPT_ENCODING));
+		assertNull(revalidated.getBody());
+
+		// Either representation's validator revalidates
+		String gzipEtag = get("/api/products/categories", "gzip", null).getHeaders().getETag();
+		assertNotEquals(etag, gzipEtag);
+		assertEquals(HttpStatus.NOT_MODIFIED, get("/api/products/categories", null, gzipEtag).getStatusCode());
+		assertEquals(HttpStatus.OK, get("/api/products/categories", null, "\"stale\"").getStatusCode());
+	}
+
+	@Test
+	void gzipIsServedOnlyWhenAcceptEncodingAllowsIt() throws IOException {
+		ResponseEntity<byte[]> plain = get("/api/products", null, null);
+		assertTrue(plain.getHeaders().getVary().contains(HttpHeaders.ACCEPT_ENCODING));
+		assertNull(plain.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+
+		for (String acceptEncoding : new String[] {"gzip", "deflate, GZIP;q=0.8", "x-gzip", "*", "br;q=1.0, *;q=0.5"}) {
+			ResponseEntity<byte[]> gzipped = get("/api/products", acceptEncoding, null);
+			assertEquals("gzip", gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING), acceptEncoding);
+			assertArrayEquals(plain.getBody(), gunzip(gzipped.getBody()), acceptEncoding);
+		}
+
+		for (String acceptEncoding : new String[] {"br", "gzip;q=0", "x-gzip;q=0.0, *", "gzip;q=0.5, identity", "*;q=0", "notgzip"}) {
+			ResponseEntity<byte[]> response = get("/api/products", acceptEncoding, null);
+			assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING), acceptEncoding);
+			assertArrayEquals(plain.getBody(), response.getBody(), acceptEncoding);
+		}
+	}
+
+	@Test
+	void cursorPagesWalkTheWholeListing() {
+		List<Long> all = ids(rest.getForObject("/api/products", ProductDto[].class));
+		assertTrue(all.size() > 3, "expected more seeded products than one page");
+
+		List<Long> paged = new ArrayList<>();
+		String cursor = null;
+		do {
+			ResponseEntity<ProductDto[]> page = page("/api/products", cursor);
+			assertTrue(page.getBody().length <= 3);
+			paged.addAll(ids(page.getBody()));
+			cursor = page.getHeaders().getFirst("X-Next-Cursor");
+		} while (cursor != null);
+
+		assertEquals(all, paged);
+	}
+
+	@Test
+	void productAddedWhilePagingDoesNotShiftLaterPages() {
+		ResponseEntity<ProductDto[]> first = page("/api/products", null);
+		List<Long> expectedRest = ids(rest.getForObject("/api/products", ProductDto[].class));
+		expectedRest.removeAll(ids(first.getBody()));
+
+		ProductDto added = productService.createProduct(newProduct());
+		try {
+			List<Long> rest = new ArrayList<>();
+			String cursor = first.getHeaders().getFirst("X-Next-Cursor");
+			while (cursor != null) {
+				ResponseEntity<ProductDto[]> page = page("/api/products", cursor);
+				rest.addAll(ids(page.getBody()));
+				cursor = page.getHeaders().getFirst("X-Next-Cursor");
+			}
+
+			// Newest first: the new product sorts before the cursor, so nothing repeats or goes missing
+			assertEquals(expectedRest, rest);
+			assertFalse(rest.contains(added.getId()));
+		} finally {
+			productService.deleteProduct(added.getId());
+		}
+	}
+
+	@Test
+	void malformedCursorIsRejected() {
+		ResponseEntity<Map> response = rest.getForEntity("/api/products?cursor=not-a-cursor", Map.class);
+
+		assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+		assertEquals("Invalid cursor", response.getBody().get("message"));
+	}
+
+	private ResponseEntity<byte[]> get(String path, String acceptEncoding, String ifNoneMatch) {
+		HttpHeaders headers = new HttpHeaders();
+		if (acceptEncoding != null) {
+			headers.set(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+		}
+		if (ifNoneMatch != null) {
+			headers.setIfNoneMatch(ifNoneMatch);
+		}
+		return rest.exchange(path, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+	}
+
+	private ResponseEntity<ProductDto[]> page(String path, String cursor) {
+		String url = path + "?limit=3" + (cursor != null ? "&cursor=" + cursor : "");
+		ResponseEntity<ProductDto[]> page = rest.getForEntity(url, ProductDto[].class);
+		assertEquals(HttpStatus.OK, page.getStatusCode());
+		return page;
+	}
+
+	private static List<Long> ids(ProductDto[] products) {
+		return new ArrayList<>(Arrays.stream(products).map(ProductDto::getId).toList());
+	}
+
+	private static ProductDto newProduct() {
+		ProductDto product = new ProductDto();
+		product.setName("Cursor Test Print");
+		product.setImage("/images/cursor-test-print.jpg");
+		product.setPrice(new BigDecimal("12.00"));
+		product.setCategory("Prints");
+		product.setStockQuantity(1);
+		product.setActive(true);
+		return product;
+	}
+
+	private static byte[] gunzip(byte[] body) throws IOException {
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+			return in.readAllBytes();
+		}
+	}
+}
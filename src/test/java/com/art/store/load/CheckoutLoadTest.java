@@ -0,0 +1,193 @@
+package com.art.store.load;
+
+import com.art.store.entity.Product;
+import com.art.store.repository.ProductRepository;
+import com.art.store.support.CheckoutRequests;
+import com.art.store.support.FakeStripeServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives create order, create checkout session and the paid webhook at a fixed arrival rate
+ * against the fake Stripe server, then reports throughput and latency percentiles.
+ * Run with {@code mvn test -Pload-test}; tune with -Dload.rate, -Dload.duration-seconds,
+ * -Dload.stripe.latency-ms, -Dload.stripe.jitter-ms and -Dload.stripe.error-rate
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"app.stripe.bulkhead.max-concurrent=200",
+		"logging.level.com.art.store=WARN"
+})
+@ActiveProfiles("test")
+class CheckoutLoadTest {
+
+	private static final String WEBHOOK_SECRET = "whsec_checkout_load_test";
+
+	private static final FakeStripeServer stripe = FakeStripeServer.start(WEBHOOK_SECRET);
+
+	@DynamicPropertySource
+	static void stripeProperties(DynamicPropertyRegistry registry) {
+		registry.add("stripe.api.base", stripe::baseUrl);
+		registry.add("stripe.webhook.secret", () -> WEBHOOK_SECRET);
+	}
+
+	@Autowired
+	private TestRestTemplate rest;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@AfterAll
+	static void stopStripe() {
+		stripe.close();
+	}
+
+	@Test
+	void checkoutUnderLoad() throws InterruptedException {
+		int rate = Integer.getInteger("load.rate", 25);
+		int durationSeconds = Integer.getInteger("load.duration-seconds", 20);
+		double errorRate = Double.parseDouble(System.getProperty("load.stripe.error-rate", "0"));
+		double maxFailureRate = Double.parseDouble(System.getProperty("load.max-failure-rate", "0.01"));
+		stripe.setLatency(Long.getLong("load.stripe.latency-ms", 80), Long.getLong("load.stripe.jitter-ms", 40));
+		stripe.setErrorRate(errorRate);
+
+		List<Product> products = restock();
+		LatencyRecorder orders = new LatencyRecorder();
+		LatencyRecorder sessions = new LatencyRecorder();
+		LatencyRecorder webhooks = new LatencyRecorder();
+		LatencyRecorder checkouts = new LatencyRecorder();
+		AtomicLong failures = new AtomicLong();
+
+		ExecutorService users = Executors.newVirtualThreadPerTaskExecutor();
+		ScheduledExecutorService arrivals = Executors.newSingleThreadScheduledExecutor();
+		// Open loop: arrivals keep their schedule however slow the responses get
+		arrivals.scheduleAtFixedRate(() -> users.submit(() -> {
+			try {
+				long start = System.nanoTime();
+				String orderId = orders.time(() -> createOrder(products));
+				String sessionId = sessions.time(() -> createCheckoutSession(orderId));
+				String payload = stripe.completeCheckoutSession(sessionId);
+				webhooks.time(() -> postWebhook(payload));
+				checkouts.record(System.nanoTime() - start);
+			} catch (RuntimeException e) {
+				failures.incrementAndGet();
+			}
+		}), 0, TimeUnit.SECONDS.toNanos(1) / rate, TimeUnit.NANOSECONDS);
+
+		long started = System.nanoTime();
+		Thread.sleep(TimeUnit.SECONDS.toMillis(durationSeconds));
+		arrivals.shutdownNow();
+		users.shutdown();
+		users.awaitTermination(60, TimeUnit.SECONDS);
+		double elapsedSeconds = (System.nanoTime() - started) / 1e9;
+
+		long completed = checkouts.count();
+		System.out.printf("%nCheckout load: target %d/s for %ds, Stripe latency %d+%dms, Stripe error rate %.2f%n",
+				rate, durationSeconds, Long.getLong("load.stripe.latency-ms", 80), Long.getLong("load.stripe.jitter-ms", 40), errorRate);
+		System.out.printf("completed %d, failed %d, throughput %.1f checkouts/s%n", completed, failures.get(), completed / elapsedSeconds);
+		System.out.println(orders.summary("create order"));
+		System.out.println(sessions.summary("checkout session"));
+		System.out.println(webhooks.summary("webhook ack"));
+		System.out.println(checkouts.summary("end to end"));
+
+		assertTrue(completed > 0, "no checkout completed");
+		if (errorRate == 0) {
+			assertTrue(failures.get() <= maxFailureRate * (completed + failures.get()),
+					"failure rate above " + maxFailureRate);
+		}
+	}
+
+	private List<Product> restock() {
+		List<Product> products = productRepository.findAll();
+		for (Product product : products) {
+			product.setStockQuantity(1_000_000);
+		}
+		return productRepository.saveAll(products).subList(0, 2);
+	}
+
+	private String createOrder(List<Product> products) {
+		ResponseEntity<Map> response = rest.postForEntity("/api/orders", CheckoutRequests.order(products), Map.class);
+		return expect(response, 201, "orderId");
+	}
+
+	private String createCheckoutSession(String orderId) {
+		ResponseEntity<Map> response = rest.postForEntity("/api/payments/create-checkout-session",
+				Map.of("orderId", orderId), Map.class);
+		return expect(response, 200, "sessionId");
+	}
+
+	private String postWebhook(String payload) {
+		ResponseEntity<String> response = rest.postForEntity("/api/payments/webhook",
+				CheckoutRequests.webhook(payload, stripe.signatureFor(payload)), String.class);
+		if (response.getStatusCode().value() != 200) {
+			throw new IllegalStateException("webhook returned " + response.getStatusCode());
+		}
+		return response.getBody();
+	}
+
+	private static String expect(ResponseEntity<Map> response, int status, String field) {
+		if (response.getStatusCode().value() != status || response.getBody() == null) {
+			throw new IllegalStateException("unexpected response " + response.getStatusCode() + ": " + response.getBody());
+		}
+		return (String) response.getBody().get(field);
+	}
+
+	private interface Step {
+		String run();
+	}
+
+	private static final class LatencyRecorder {
+		private final ConcurrentLinkedQueue<Long> samples = new ConcurrentLinkedQueue<>();
+
+		String time(Step step) {
+			long start = System.nanoTime();
+			String result = step.run();
+			record(System.nanoTime() - start);
+			return result;
+		}
+
+		void record(long nanos) {
+			samples.add(nanos);
+		}
+
+		long count() {
+			return samples.size();
+		}
+
+		String summary(String name) {
+			long[] sorted = samples.stream().mapToLong(Long::longValue).toArray();
+			Arrays.sort(sorted);
+			return String.format("%-17s n=%-6d p50=%7.1fms p99=%7.1fms p999=%7.1fms max=%7.1fms",
+					name, sorted.length, percentile(sorted, 0.50), percentile(sorted, 0.99),
+					percentile(sorted, 0.999), percentile(sorted, 1.0));
+		}
+
+		private static double percentile(long[] sorted, double quantile) {
+			if (sorted.length == 0) {
+				return 0;
+			}
+			int index = (int) Math.ceil(quantile * sorted.length) - 1;
+			return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package com.art.store.load;
+
+import com.art.store.entity.Order;
+import com.art.store.entity.Product;
+import com.art.store.repository.OrderRepository;
+import com.art.store.repository.ProductRepository;
+import com.art.store.service.EmailOutboxDispatcher;
+import com.art.store.service.EmailOutboxService;
+import com.art.store.service.OrderService;
+import com.art.store.support.CheckoutRequests;
+import com.art.store.support.FakeSmtpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Fills the email outbox with paid orders and times one drain against the fake SMTP server,
+ * reporting messages per second and SMTP sessions opened.
+ * Run with {@code mvn test -Pload-test}; tune with -Dload.mail.orders, -Dload.mail.concurrency,
+ * -Dload.mail.batch-size and -Dload.smtp.latency-ms
+ */
+@Tag("load")
+@SpringBootTest(properties = {
+		"app.mail.outbox.concurrency=${load.mail.concurrency:4}",
+		"app.mail.outbox.batch-size=${load.mail.batch-size:50}",
+		"logging.level.com.art.store=WARN"
+})
+@ActiveProfiles("test")
+class EmailOutboxLoadTest {
+
+	private static final FakeSmtpServer smtp = FakeSmtpServer.start();
+
+	@DynamicPropertySource
+	static void mailProperties(DynamicPropertyRegistry registry) {
+		registry.add("spring.mail.host", smtp::host);
+		registry.add("spring.mail.port", smtp::port);
+	}
+
+	@Autowired
+	private EmailOutboxDispatcher dispatcher;
+
+	@Autowired
+	private EmailOutboxService outboxService;
+
+	@Autowired
+	private OrderService orderService;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Value("${app.mail.outbox.concurrency}")
+	private int concurrency;
+
+	@Value("${app.mail.outbox.batch-size}")
+	private int batchSize;
+
+	@AfterAll
+	static void stopSmtp() {
+		smtp.close();
+	}
+
+	@Test
+	void drainOutbox() {
+		int orders = Integer.getInteger("load.mail.orders", 500);
+		long latencyMillis = Long.getLong("load.smtp.latency-ms", 5);
+
+		List<Product> products = restock();
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		for (int i = 0; i < orders; i++) {
+			Long orderId = orderService.createOrder(CheckoutRequests.order(products)).getId();
+			transaction.executeWithoutResult(status -> {
+				Order order = orderRepository.findById(orderId).orElseThrow();
+				order.setPaymentStatus(Order.PaymentStatus.PAID);
+				order.setStatus(Order.OrderStatus.CONFIRMED);
+				outboxService.enqueueOrderPaid(orderId);
+			});
+		}
+		smtp.reset();
+		smtp.setLatency(latencyMillis);
+
+		long started = System.nanoTime();
+		dispatcher.drain();
+		double elapsedSeconds = (System.nanoTime() - started) / 1e9;
+
+		int sent = smtp.messageCount();
+		System.out.printf("%nEmail outbox: %d messages, %d senders, batches of %d, SMTP latency %dms%n",
+				orders * 2, concurrency, batchSize, latencyMillis);
+		System.out.printf("sent %d in %.2fs, throughput %.1f messages/s over %d SMTP sessions%n",
+				sent, elapsedSeconds, sent / elapsedSeconds, smtp.connectionCount());
+
+		assertEquals(orders * 2, sent);
+	}
+
+	private List<Product> restock() {
+		List<Product> products = productRepository.findAll();
+		for (Product product : products) {
+			product.setStockQuantity(1_000_000);
+		}
+		return productRepository.saveAll(products).subList(0, 2);
+	}
+}
@@ -0,0 +1,178 @@
+package com.art.store.service;
+
+import com.art.store.dto.OrderRequestDto;
+import com.art.store.entity.EmailOutboxMessage;
+import com.art.store.entity.Order;
+import com.art.store.entity.Product;
+import com.art.store.repository.EmailOutboxRepository;
+import com.art.store.repository.OrderRepository;
+import com.art.store.repository.ProductRepository;
+import com.art.store.support.CheckoutRequests;
+import com.art.store.support.FakeSmtpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+		"app.mail.outbox.batch-size=10",
+		"app.mail.outbox.concurrency=2",
+		"app.mail.outbox.retry-backoff-ms=0"
+})
+@ActiveProfiles("test")
+class EmailOutboxDispatcherTest {
+
+	private static final FakeSmtpServer smtp = FakeSmtpServer.start();
+
+	@DynamicPropertySource
+	static void mailProperties(DynamicPropertyRegistry registry) {
+		registry.add("spring.mail.host", smtp::host);
+		registry.add("spring.mail.port", smtp::port);
+	}
+
+	@Autowired
+	private EmailOutboxService outboxService;
+
+	@Autowired
+	private EmailOutboxDispatcher dispatcher;
+
+	@Autowired
+	private EmailOutboxRepository outboxRepository;
+
+	@Autowired
+	private OrderService orderService;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@AfterAll
+	static void stopSmtp() {
+		smtp.close();
+	}
+
+	@BeforeEach
+	void resetSmtp() {
+		smtp.reset();
+	}
+
+	@Test
+	void paidOrdersAreSentInBatchesOverOneConnectionPerBatch() {
+		List<Long> orderIds = new ArrayList<>();
+		for (int i = 0; i < 12; i++) {
+			orderIds.add(markPaid(createOrder("buyer@example.com")));
+		}
+
+		dispatcher.drain();
+
+		// 24 emails in batches of 10: three batches, three SMTP sessions
+		assertEquals(24, smtp.messageCount());
+		assertEquals(3, smtp.connectionCount());
+		for (Long orderId : orderIds) {
+			Map<EmailOutboxMessage.Kind, EmailOutboxMessage> messages = outboxFor(orderId);
+			assertEquals(2, messages.size());
+			messages.values().forEach(message -> assertEquals(EmailOutboxMessage.Status.SENT, message.getStatus()));
+		}
+		assertEquals(12, smtp.deliveries().stream().filter(to -> to.contains("buyer@example.com")).count());
+	}
+
+	@Test
+	void nothingIsQueuedWhenThePaymentTransactionRollsBack() {
+		Long orderId = createOrder("buyer@example.com");
+
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			outboxService.enqueueOrderPaid(orderId);
+			status.setRollbackOnly();
+		});
+
+		assertTrue(outboxFor(orderId).isEmpty());
+		assertThrows(IllegalTransactionStateException.class, () -> outboxService.enqueueOrderPaid(orderId));
+	}
+
+	@Test
+	void repeatedPaidTransitionQueuesEmailsOnce() {
+		Long orderId = markPaid(createOrder("buyer@example.com"));
+
+		// A second handler for the same order must not fail its payment transaction
+		markPaid(orderId);
+		dispatcher.drain();
+
+		assertEquals(2, outboxFor(orderId).size());
+		assertEquals(2, smtp.messageCount());
+	}
+
+	@Test
+	void refusedConnectionIsRetriedWithBackoff() {
+		Long orderId = markPaid(createOrder("buyer@example.com"));
+		smtp.refuseNextConnections(1);
+
+		dispatcher.drain();
+
+		assertEquals(2, smtp.messageCount());
+		for (EmailOutboxMessage message : outboxFor(orderId).values()) {
+			assertEquals(EmailOutboxMessage.Status.SENT, message.getStatus());
+			assertEquals(1, message.getAttempts());
+		}
+	}
+
+	@Test
+	void rejectedRecipientIsDeadLetteredWithoutRetrying() {
+		smtp.rejectRecipient("bounce@example.com");
+		Long orderId = markPaid(createOrder("bounce@example.com"));
+
+		dispatcher.drain();
+
+		Map<EmailOutboxMessage.Kind, EmailOutboxMessage> messages = outboxFor(orderId);
+		EmailOutboxMessage confirmation = messages.get(EmailOutboxMessage.Kind.CUSTOMER_CONFIRMATION);
+		assertEquals(EmailOutboxMessage.Status.DEAD, confirmation.getStatus());
+		assertEquals(1, confirmation.getAttempts());
+		assertEquals(EmailOutboxMessage.Status.SENT, messages.get(EmailOutboxMessage.Kind.ADMIN_NOTIFICATION).getStatus());
+		assertEquals(1, smtp.messageCount());
+	}
+
+	private Long createOrder(String email) {
+		List<Product> products = productRepository.findAll();
+		assertTrue(products.size() >= 2, "expected seeded products");
+		OrderRequestDto request = CheckoutRequests.order(products.subList(0, 2));
+		request.getCustomerInfo().setEmail(email);
+		return orderService.createOrder(request).getId();
+	}
+
+	// Same shape as the payment handlers: status change and outbox rows in one transaction
+	private Long markPaid(Long orderId) {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			Order order = orderRepository.findById(orderId).orElseThrow();
+			order.setPaymentStatus(Order.PaymentStatus.PAID);
+			order.setStatus(Order.OrderStatus.CONFIRMED);
+			outboxService.enqueueOrderPaid(orderId);
+		});
+		return orderId;
+	}
+
+	private Map<EmailOutboxMessage.Kind, EmailOutboxMessage> outboxFor(Long orderId) {
+		return outboxRepository.findAll().stream()
+				.filter(message -> message.getOrderId().equals(orderId))
+				.collect(Collectors.toMap(EmailOutboxMessage::getKind, message -> message));
+	}
+}
@@ -0,0 +1,180 @@
+package com.art.store.service;
+
+import com.art.store.dto.OrderHistoryPage;
+import com.art.store.dto.OrderRequestDto;
+import com.art.store.entity.Order;
+import com.art.store.entity.Product;
+import com.art.store.repository.ProductRepository;
+import com.art.store.support.CheckoutRequests;
+import com.art.store.support.SqlStatementCounter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class OrderServiceQueryCountTest {
+
+	@Autowired
+	private OrderService orderService;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Test
+	void createOrderLoadsProductsWithOneQueryRegardlessOfCartSize() {
+		List<Product> products = seededProducts();
+
+		SqlStatementCounter.reset();
+		orderService.createOrder(CheckoutRequests.order(products.subList(0, 1)));
+		long singleItemSelects = SqlStatementCounter.selects();
+
+		SqlStatementCounter.reset();
+		orderService.createOrder(CheckoutRequests.order(products.subList(0, 5)));
+		long fiveItemSelects = SqlStatementCounter.selects();
+
+		assertEquals(singleItemSelects, fiveItemSelects);
+	}
+
+	@Test
+	void createOrderWritesItemsInOneBatchRegardlessOfCartSize() {
+		List<Product> products = seededProducts();
+
+		SqlStatementCounter.reset();
+		orderService.createOrder(CheckoutRequests.order(products.subList(0, 1)));
+		long singleItemInserts = SqlStatementCounter.inserts();
+
+		SqlStatementCounter.reset();
+		orderService.createOrder(CheckoutRequests.order(products.subList(0, 5)));
+		long fiveItemInserts = SqlStatementCounter.inserts();
+
+		// One insert for the order, one batch for its items and one statistics change-feed row
+		assertEquals(3, singleItemInserts);
+		assertEquals(singleItemInserts, fiveItemInserts);
+	}
+
+	@Test
+	void loadingAnOrderDoesNotFetchItsItemsOrProducts() {
+		List<Product> products = seededProducts();
+		Order order = orderService.createOrder(CheckoutRequests.order(products.subList(0, 5)));
+
+		SqlStatementCounter.reset();
+		orderService.getOrderByOrderId(order.getOrderId()).orElseThrow();
+
+		assertEquals(1, SqlStatementCounter.selects());
+	}
+
+	@Test
+	void orderHistoryIsOneQueryRegardlessOfItemCount() {
+		List<Product> products = seededProducts();
+		orderService.createOrder(CheckoutRequests.order(products.subList(0, 5)));
+		orderService.createOrder(CheckoutRequests.order(products.subList(0, 3)));
+
+		SqlStatementCounter.reset();
+		List<Order> orders = orderService.getOrdersByEmail("buyer@example.com");
+
+		assertTrue(orders.size() >= 2);
+		assertEquals(1, SqlStatementCounter.selects());
+	}
+
+	@Test
+	void cancelOrderFetchesItemsAndProductsTogether() {
+		List<Product> products = seededProducts();
+		Order single = orderService.createOrder(CheckoutRequests.order(products.subList(0, 1)));
+		Order five = orderService.createOrder(CheckoutRequests.order(products.subList(0, 5)));
+
+		SqlStatementCounter.reset();
+		assertTrue(orderService.cancelOrder(single.getId()));
+		long singleItemSelects = SqlStatementCounter.selects();
+
+		SqlStatementCounter.reset();
+		assertTrue(orderService.cancelOrder(five.getId()));
+		long fiveItemSelects = SqlStatementCounter.selects();
+
+		// The order graph in one query, plus the product reload of the catalog rebuild after commit
+		assertEquals(2, singleItemSelects);
+		assertEquals(singleItemSelects, fiveItemSelects);
+	}
+
+	@Test
+	void lineWithoutEnoughStockRejectsTheWholeOrder() {
+		List<Product> products = seededProducts();
+		Product available = products.get(products.size() - 2);
+		Product soldOut = products.get(products.size() - 1);
+		int availableStock = available.getStockQuantity();
+		soldOut.setStockQuantity(0);
+		productRepository.save(soldOut);
+
+		RuntimeException failure = assertThrows(RuntimeException.class,
+				() -> orderService.createOrder(CheckoutRequests.order(List.of(available, soldOut))));
+		assertTrue(failure.getMessage().startsWith("Insufficient stock"), failure.getMessage());
+
+		// The conditional decrement of the other line was rolled back with the order
+		assertEquals(availableStock, stock(available));
+		assertEquals(0, stock(soldOut));
+	}
+
+	@Test
+	void cancelRestoresStockInPlace() {
+		List<Product> products = seededProducts();
+		Product product = products.get(products.size() - 3);
+		int initialStock = product.getStockQuantity();
+		Order cancelled = orderService.createOrder(CheckoutRequests.order(List.of(product)));
+		orderService.createOrder(CheckoutRequests.order(List.of(product)));
+		assertEquals(initialStock - 2, stock(product));
+
+		SqlStatementCounter.reset();
+		assertTrue(orderService.cancelOrder(cancelled.getId()));
+
+		// Only the order row goes through the entity; stock is an increment the other order's decrement survives
+		assertEquals(1, SqlStatementCounter.updates());
+		assertEquals(initialStock - 1, stock(product));
+	}
+
+	@Test
+	void orderHistoryPagesWithOneQueryEach() {
+		List<Product> products = seededProducts();
+		Order oldest = orderService.createOrder(historyOrder(products));
+		Order middle = orderService.createOrder(historyOrder(products));
+		Order newest = orderService.createOrder(historyOrder(products));
+
+		SqlStatementCounter.reset();
+		OrderHistoryPage first = orderService.getOrderHistory(" History@Example.com ", null, 2);
+		assertEquals(1, SqlStatementCounter.selects());
+		assertEquals(List.of(newest.getOrderId(), middle.getOrderId()),
+				first.getOrders().stream().map(summary -> summary.getOrderId()).toList());
+		assertNotNull(first.getNextCursor());
+
+		SqlStatementCounter.reset();
+		OrderHistoryPage second = orderService.getOrderHistory("history@example.com", first.getNextCursor(), 2);
+		assertEquals(1, SqlStatementCounter.selects());
+		assertEquals(List.of(oldest.getOrderId()),
+				second.getOrders().stream().map(summary -> summary.getOrderId()).toList());
+		assertNull(second.getNextCursor());
+	}
+
+	private OrderRequestDto historyOrder(List<Product> products) {
+		OrderRequestDto request = CheckoutRequests.order(products.subList(0, 1));
+		request.getCustomerInfo().setEmail("History@Example.com");
+		return request;
+	}
+
+	private int stock(Product product) {
+		return productRepository.findById(product.getId()).orElseThrow().getStockQuantity();
+	}
+
+	private List<Product> seededProducts() {
+		List<Product> products = productRepository.findAll();
+		assertTrue(products.size() >= 5, "expected seeded products");
+		return products;
+	}
+}
@@ -0,0 +1,57 @@
+package com.art.store.service;
+
+import com.art.store.entity.Order;
+import com.art.store.entity.Product;
+import com.art.store.repository.ProductRepository;
+import com.art.store.support.CheckoutRequests;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class OrderStatsServiceTest {
+
+	@Autowired
+	private OrderStatsService orderStatsService;
+
+	@Autowired
+	private OrderService orderService;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Test
+	void foldedRollupTracksCreatedAndCancelledOrders() {
+		List<Product> products = productRepository.findAll();
+		assertTrue(products.size() >= 2, "expected seeded products");
+		LocalDate today = LocalDate.now();
+
+		// Other tests share this database; compare against what the rollup held before
+		orderStatsService.foldPendingChanges();
+		Map<Order.OrderStatus, Long> countsBefore = orderStatsService.getOrderCountsByStatus(today, today);
+		BigDecimal revenueBefore = orderStatsService.getRevenue(today, today);
+		long unitsBefore = orderStatsService.getUnitsByProduct(today, today).getOrDefault(products.get(0).getId(), 0L);
+
+		Order kept = orderService.createOrder(CheckoutRequests.order(products.subList(0, 2)));
+		Order cancelled = orderService.createOrder(CheckoutRequests.order(products.subList(0, 1)));
+		assertTrue(orderService.cancelOrder(cancelled.getId()));
+		orderStatsService.foldPendingChanges();
+
+		Map<Order.OrderStatus, Long> counts = orderStatsService.getOrderCountsByStatus(today, today);
+		assertEquals(countsBefore.get(Order.OrderStatus.PENDING) + 1, counts.get(Order.OrderStatus.PENDING));
+		assertEquals(countsBefore.get(Order.OrderStatus.CANCELLED) + 1, counts.get(Order.OrderStatus.CANCELLED));
+		assertEquals(0, revenueBefore.add(kept.getTotalAmount()).compareTo(orderStatsService.getRevenue(today, today)));
+		assertEquals(unitsBefore + 1,
+				orderStatsService.getUnitsByProduct(today, today).get(products.get(0).getId()));
+	}
+}
@@ -0,0 +1,188 @@
+package com.art.store.service;
+
+import com.art.store.controller.StripePayloadEndpoint;
+import com.art.store.entity.Order;
+import com.art.store.entity.Payment;
+import com.art.store.entity.Product;
+import com.art.store.event.OrderStatusChangedEvent;
+import com.art.store.repository.ProductRepository;
+import com.art.store.support.CheckoutRequests;
+import com.art.store.support.FakeStripeServer;
+import com.stripe.exception.StripeException;
+import com.stripe.model.Event;
+import com.stripe.model.checkout.Session;
+import com.stripe.net.ApiResource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The guarded payment_intent transitions against H2: each moves a payment out of a non-final
+ * status once, replays change nothing, and an intent no payment knows about is retried
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@RecordApplicationEvents
+class PaymentIntentWebhookTest {
+
+	private static final FakeStripeServer stripe = FakeStripeServer.start("whsec_payment_intent_webhook_test");
+
+	@DynamicPropertySource
+	static void stripeProperties(DynamicPropertyRegistry registry) {
+		registry.add("stripe.api.base", stripe::baseUrl);
+	}
+
+	@Autowired
+	private PaymentService paymentService;
+
+	@Autowired
+	private OrderService orderService;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private StripePayloadEndpoint payloadEndpoint;
+
+	@Autowired
+	private ApplicationEvents applicationEvents;
+
+	@AfterAll
+	static void stopStripe() {
+		stripe.close();
+	}
+
+	@Test
+	void succeededIntentPaysOrderOnceAndLateFailureIsIgnored() throws StripeException {
+		Order order = createOrder();
+		String paymentIntentId = paymentService.createPaymentIntent(order, "usd").getPaymentIntentId();
+		Event succeeded = event(stripe.succeedPaymentIntent(paymentIntentId));
+
+		paymentService.handleStripeEvent(succeeded);
+		assertPaid(order);
+		assertTrue(payloadEndpoint.payload(order.getOrderId()).get("payload").contains(paymentIntentId));
+
+		// A replay and a failure delivered after the success both leave the payment alone
+		paymentService.handleStripeEvent(succeeded);
+		paymentService.handleStripeEvent(event(stripe.failPaymentIntent(paymentIntentId, "Your card was declined.")));
+		assertPaid(order);
+	}
+
+	@Test
+	void failedIntentRecordsReasonAndCanStillSucceed() throws StripeException {
+		Order order = createOrder();
+		String paymentIntentId = paymentService.createPaymentIntent(order, "usd").getPaymentIntentId();
+
+		paymentService.handleStripeEvent(event(stripe.failPaymentIntent(paymentIntentId, "Your card was declined.")));
+		Payment failed = paymentService.getPaymentByOrderId(order.getId()).orElseThrow();
+		assertEquals(Payment.PaymentStatus.FAILED, failed.getStatus());
+		assertEquals("Your card was declined.", failed.getFailureReason());
+		assertEquals(Order.PaymentStatus.FAILED, orderService.getOrderById(order.getId()).orElseThrow().getPaymentStatus());
+
+		paymentService.handleStripeEvent(event(stripe.succeedPaymentIntent(paymentIntentId)));
+		assertPaid(order);
+	}
+
+	@Test
+	void redeliveredFailureChangesNothing() throws StripeException {
+		Order order = createOrder();
+		String paymentIntentId = paymentService.createPaymentIntent(order, "usd").getPaymentIntentId();
+		Event failed = event(stripe.failPaymentIntent(paymentIntentId, "Your card was declined."));
+		paymentService.handleStripeEvent(failed);
+
+		applicationEvents.clear();
+		paymentService.handleStripeEvent(failed);
+
+		assertEquals(0, applicationEvents.stream(OrderStatusChangedEvent.class).count());
+		assertEquals(Payment.PaymentStatus.FAILED, paymentService.getPaymentByOrderId(order.getId()).orElseThrow().getStatus());
+	}
+
+	@Test
+	void declinedIntentIsReusedForTheRetry() throws StripeException {
+		Order order = createOrder();
+		String paymentIntentId = paymentService.createPaymentIntent(order, "usd").getPaymentIntentId();
+		paymentService.handleStripeEvent(event(stripe.failPaymentIntent(paymentIntentId, "Your card was declined.")));
+
+		assertEquals(paymentIntentId, paymentService.createPaymentIntent(order, "usd").getPaymentIntentId());
+		assertEquals(Payment.PaymentStatus.PENDING, paymentService.getPaymentByOrderId(order.getId()).orElseThrow().getStatus());
+		assertEquals(Order.PaymentStatus.PROCESSING, orderService.getOrderById(order.getId()).orElseThrow().getPaymentStatus());
+	}
+
+	@Test
+	void confirmReadingStaleStatusDoesNotUndoWebhook() throws StripeException {
+		Order order = createOrder();
+		String paymentIntentId = paymentService.createPaymentIntent(order, "usd").getPaymentIntentId();
+		paymentService.handleStripeEvent(event(stripe.succeedPaymentIntent(paymentIntentId)));
+
+		// The confirm's Stripe read raced the webhook and still saw the intent processing
+		stripe.processPaymentIntent(paymentIntentId);
+		Payment confirmed = paymentService.confirmPayment(paymentIntentId);
+
+		assertEquals(Payment.PaymentStatus.SUCCEEDED, confirmed.getStatus());
+		assertPaid(order);
+	}
+
+	@Test
+	void confirmAppliesProcessingToOpenPayment() throws StripeException {
+		Order order = createOrder();
+		String paymentIntentId = paymentService.createPaymentIntent(order, "usd").getPaymentIntentId();
+		stripe.processPaymentIntent(paymentIntentId);
+
+		assertEquals(Payment.PaymentStatus.PROCESSING, paymentService.confirmPayment(paymentIntentId).getStatus());
+		assertEquals(Order.PaymentStatus.PROCESSING, orderService.getOrderById(order.getId()).orElseThrow().getPaymentStatus());
+	}
+
+	@Test
+	void intentWithoutPaymentIsRetried() {
+		String paymentIntentId = stripe.createPaymentIntent(5000);
+
+		RuntimeException failure = assertThrows(RuntimeException.class,
+				() -> paymentService.handleStripeEvent(event(stripe.succeedPaymentIntent(paymentIntentId))));
+		assertTrue(failure.getMessage().contains(paymentIntentId), failure.getMessage());
+	}
+
+	@Test
+	void checkoutIntentSucceededBeforeSessionCompletedPaysOrder() throws StripeException {
+		Order order = createOrder();
+		Session session = paymentService.createCheckoutSession(order);
+		Event completed = event(stripe.completeCheckoutSession(session.getId()));
+		String paymentIntentId = ((Session) completed.getDataObjectDeserializer().getObject().orElseThrow()).getPaymentIntent();
+
+		// Stripe does not order its events: the intent's can arrive before the session's
+		paymentService.handleStripeEvent(event(stripe.succeedPaymentIntent(paymentIntentId)));
+		assertPaid(order);
+
+		paymentService.handleStripeEvent(completed);
+		assertPaid(order);
+		assertEquals(paymentIntentId, paymentService.getPaymentByOrderId(order.getId()).orElseThrow().getStripePaymentIntentId());
+	}
+
+	private Order createOrder() {
+		List<Product> products = productRepository.findAll();
+		assertTrue(products.size() >= 2, "expected seeded products");
+		return orderService.createOrder(CheckoutRequests.order(products.subList(0, 2)));
+	}
+
+	private void assertPaid(Order order) {
+		Order current = orderService.getOrderById(order.getId()).orElseThrow();
+		assertEquals(Order.PaymentStatus.PAID, current.getPaymentStatus());
+		assertEquals(Order.OrderStatus.CONFIRMED, current.getStatus());
+		assertEquals(Payment.PaymentStatus.SUCCEEDED, paymentService.getPaymentByOrderId(order.getId()).orElseThrow().getStatus());
+	}
+
+	private static Event event(String payload) {
+		return ApiResource.GSON.fromJson(payload, Event.class);
+	}
+}
@@ -0,0 +1,213 @@
+package com.art.store.service;
+
+import com.art.store.entity.Order;
+import com.art.store.entity.Payment;
+import com.art.store.entity.Product;
+import com.art.store.repository.ProductRepository;
+import com.art.store.support.CheckoutRequests;
+import com.art.store.support.FakeStripeServer;
+import com.art.store.support.SqlStatementCounter;
+import com.stripe.exception.StripeException;
+import com.stripe.model.Event;
+import com.stripe.net.ApiResource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class PaymentServiceQueryCountTest {
+
+	private static final FakeStripeServer stripe = FakeStripeServer.start("whsec_query_count_test");
+
+	@DynamicPropertySource
+	static void stripeProperties(DynamicPropertyRegistry registry) {
+		registry.add("stripe.api.base", stripe::baseUrl);
+	}
+
+	@Autowired
+	private PaymentService paymentService;
+
+	@Autowired
+	private OrderService orderService;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@AfterAll
+	static void stopStripe() {
+		stripe.close();
+	}
+
+	@Test
+	void createCheckoutSessionQueriesDoNotGrowWithItemCount() throws StripeException {
+		List<Product> products = seededProducts();
+		Order single = orderService.createOrder(CheckoutRequests.order(products.subList(0, 1)));
+		Order five = orderService.createOrder(CheckoutRequests.order(products.subList(0, 5)));
+
+		SqlStatementCounter.reset();
+		paymentService.createCheckoutSession(single);
+		long singleItemSelects = SqlStatementCounter.selects();
+
+		SqlStatementCounter.reset();
+		paymentService.createCheckoutSession(five);
+		long fiveItemSelects = SqlStatementCounter.selects();
+
+		// Read phase: order graph and payment; write phase: order, payment check and payment
+		assertTrue(fiveItemSelects <= 5, "selects: " + fiveItemSelects);
+		assertEquals(singleItemSelects, fiveItemSelects);
+	}
+
+	@Test
+	void completedCheckoutWebhookDoesNotLoadItems() throws StripeException {
+		List<Product> products = seededProducts();
+		Event single = completedCheckout(orderService.createOrder(CheckoutRequests.order(products.subList(0, 1))));
+		Event five = completedCheckout(orderService.createOrder(CheckoutRequests.order(products.subList(0, 5))));
+
+		SqlStatementCounter.reset();
+		paymentService.handleStripeEvent(single);
+		long singleItemSelects = SqlStatementCounter.selects();
+
+		SqlStatementCounter.reset();
+		paymentService.handleStripeEvent(five);
+		long fiveItemSelects = SqlStatementCounter.selects();
+
+		// The payment and its order, nothing else
+		assertTrue(fiveItemSelects <= 2, "selects: " + fiveItemSelects);
+		assertEquals(singleItemSelects, fiveItemSelects);
+	}
+
+	@Test
+	void createPaymentIntentQueriesDoNotGrowWithItemCount() throws StripeException {
+		List<Product> products = seededProducts();
+		Order single = orderService.createOrder(CheckoutRequests.order(products.subList(0, 1)));
+		Order five = orderService.createOrder(CheckoutRequests.order(products.subList(0, 5)));
+
+		SqlStatementCounter.reset();
+		paymentService.createPaymentIntent(single, "usd");
+		long singleItemSelects = SqlStatementCounter.selects();
+
+		SqlStatementCounter.reset();
+		paymentService.createPaymentIntent(five, "usd");
+		long fiveItemSelects = SqlStatementCounter.selects();
+
+		// Read phase: order and payment; write phase: order, payment check and payment
+		assertTrue(fiveItemSelects <= 5, "selects: " + fiveItemSelects);
+		assertEquals(singleItemSelects, fiveItemSelects);
+	}
+
+	@Test
+	void confirmPaymentQueriesDoNotGrowWithItemCount() throws StripeException {
+		List<Product> products = seededProducts();
+		String single = paymentService.createPaymentIntent(orderService.createOrder(CheckoutRequests.order(products.subList(0, 1))), "usd").getPaymentIntentId();
+		String five = paymentService.createPaymentIntent(orderService.createOrder(CheckoutRequests.order(products.subList(0, 5))), "usd").getPaymentIntentId();
+		stripe.succeedPaymentIntent(single);
+		stripe.succeedPaymentIntent(five);
+
+		SqlStatementCounter.reset();
+		paymentService.confirmPayment(single);
+		long singleItemSelects = SqlStatementCounter.selects();
+
+		SqlStatementCounter.reset();
+		paymentService.confirmPayment(five);
+		long fiveItemSelects = SqlStatementCounter.selects();
+
+		// Payment check in the read; in the write the order's new state, the paid-email check
+		// under the order lock and the payment, never its items
+		assertTrue(fiveItemSelects <= 5, "selects: " + fiveItemSelects);
+		assertEquals(singleItemSelects, fiveItemSelects);
+	}
+
+	@Test
+	void paymentIntentWebhooksDoNotLoadItems() throws StripeException {
+		List<Product> products = seededProducts();
+		String single = paymentService.createPaymentIntent(orderService.createOrder(CheckoutRequests.order(products.subList(0, 1))), "usd").getPaymentIntentId();
+		String five = paymentService.createPaymentIntent(orderService.createOrder(CheckoutRequests.order(products.subList(0, 5))), "usd").getPaymentIntentId();
+
+		SqlStatementCounter.reset();
+		paymentService.handleStripeEvent(event(stripe.failPaymentIntent(single, "Your card was declined.")));
+		long singleFailedSelects = SqlStatementCounter.selects();
+
+		SqlStatementCounter.reset();
+		paymentService.handleStripeEvent(event(stripe.failPaymentIntent(five, "Your card was declined.")));
+		long fiveFailedSelects = SqlStatementCounter.selects();
+
+		SqlStatementCounter.reset();
+		paymentService.handleStripeEvent(event(stripe.succeedPaymentIntent(single)));
+		long singleSucceededSelects = SqlStatementCounter.selects();
+
+		SqlStatementCounter.reset();
+		paymentService.handleStripeEvent(event(stripe.succeedPaymentIntent(five)));
+		long fiveSucceededSelects = SqlStatementCounter.selects();
+
+		// Two guarded updates and one projection of the order's new state, whatever the item count
+		assertTrue(fiveFailedSelects <= 1, "selects: " + fiveFailedSelects);
+		assertTrue(fiveSucceededSelects <= 1, "selects: " + fiveSucceededSelects);
+		assertEquals(2, SqlStatementCounter.updates());
+		assertEquals(singleFailedSelects, fiveFailedSelects);
+		assertEquals(singleSucceededSelects, fiveSucceededSelects);
+	}
+
+	@Test
+	void stripeCallsHoldNoDatabaseConnection() throws Exception {
+		List<Product> products = seededProducts();
+		String paymentIntentId = paymentService.createPaymentIntent(orderService.createOrder(CheckoutRequests.order(products.subList(0, 2))), "usd").getPaymentIntentId();
+		stripe.succeedPaymentIntent(paymentIntentId);
+		HikariPoolMXBean pool = ((HikariDataSource) dataSource).getHikariPoolMXBean();
+
+		long requestsBefore = stripe.requestCount();
+		stripe.setLatency(500, 0);
+		try {
+			CompletableFuture<Payment> confirmed = CompletableFuture.supplyAsync(() -> {
+				try {
+					return paymentService.confirmPayment(paymentIntentId);
+				} catch (StripeException e) {
+					throw new IllegalStateException(e);
+				}
+			});
+			while (stripe.requestCount() == requestsBefore) {
+				Thread.sleep(5);
+			}
+
+			// The read transaction has ended and the write has not begun while Stripe answers
+			assertEquals(0, pool.getActiveConnections());
+			assertEquals(Payment.PaymentStatus.SUCCEEDED, confirmed.get(5, TimeUnit.SECONDS).getStatus());
+		} finally {
+			stripe.setLatency(0, 0);
+		}
+	}
+
+	private Event completedCheckout(Order order) throws StripeException {
+		String sessionId = paymentService.createCheckoutSession(order).getId();
+		return event(stripe.completeCheckoutSession(sessionId));
+	}
+
+	private static Event event(String payload) {
+		return ApiResource.GSON.fromJson(payload, Event.class);
+	}
+
+	private List<Product> seededProducts() throws StripeException {
+		List<Product> products = productRepository.findAll();
+		assertTrue(products.size() >= 5, "expected seeded products");
+		// Reserve the first block of order, item and payment ids so sequence calls do not skew the counts
+		paymentService.createCheckoutSession(orderService.createOrder(CheckoutRequests.order(products.subList(0, 1))));
+		return products;
+	}
+}
@@ -0,0 +1,149 @@
+package com.art.store.service;
+
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.InvalidRequestException;
+import com.stripe.exception.StripeException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Circuit and bulkhead transitions of the Stripe call guard, driven with calls that fail or
+ * block on demand instead of a Stripe server
+ */
+@SpringBootTest(properties = {
+		"app.stripe.circuit.failure-threshold=2",
+		"app.stripe.circuit.open-ms=100",
+		"app.stripe.retry.max-attempts=1",
+		"app.stripe.bulkhead.max-concurrent=1",
+		"app.stripe.bulkhead.max-wait-ms=20"
+})
+@ActiveProfiles("test")
+class StripeCallGuardTest {
+
+	private static final long OPEN_MS = 100;
+
+	@Autowired
+	private StripeCallGuard guard;
+
+	@BeforeEach
+	void closeCircuit() throws Exception {
+		if (guard.getCircuitState() != StripeCallGuard.CircuitState.CLOSED) {
+			Thread.sleep(OPEN_MS);
+			guard.call("test", StripeCallGuard.Kind.READ, null, options -> "ok");
+		}
+		assertEquals(StripeCallGuard.CircuitState.CLOSED, guard.getCircuitState());
+	}
+
+	@Test
+	void transientFailuresOpenCircuitAndRejectWithoutCalling() {
+		failTransiently();
+		assertEquals(StripeCallGuard.CircuitState.CLOSED, guard.getCircuitState());
+		failTransiently();
+		assertEquals(StripeCallGuard.CircuitState.OPEN, guard.getCircuitState());
+
+		AtomicInteger calls = new AtomicInteger();
+		assertThrows(StripeUnavailableException.class,
+				() -> guard.call("test", StripeCallGuard.Kind.READ, null, options -> calls.incrementAndGet()));
+		assertEquals(0, calls.get());
+	}
+
+	@Test
+	void successfulTrialClosesCircuit() throws Exception {
+		openCircuit();
+		Thread.sleep(OPEN_MS);
+
+		assertEquals("ok", guard.call("test", StripeCallGuard.Kind.READ, null, options -> "ok"));
+		assertEquals(StripeCallGuard.CircuitState.CLOSED, guard.getCircuitState());
+	}
+
+	@Test
+	void failedTrialReopensCircuit() throws Exception {
+		openCircuit();
+		Thread.sleep(OPEN_MS);
+
+		failTransiently();
+		assertEquals(StripeCallGuard.CircuitState.OPEN, guard.getCircuitState());
+	}
+
+	@Test
+	void trialThrowingUncheckedExceptionReopensCircuit() throws Exception {
+		openCircuit();
+		Thread.sleep(OPEN_MS);
+
+		assertThrows(IllegalStateException.class, () -> guard.call("test", StripeCallGuard.Kind.READ, null, options -> {
+			throw new IllegalStateException("response could not be mapped");
+		}));
+		assertEquals(StripeCallGuard.CircuitState.OPEN, guard.getCircuitState());
+	}
+
+	@Test
+	void clientErrorsDoNotCountAgainstCircuit() {
+		for (int i = 0; i < 3; i++) {
+			assertThrows(InvalidRequestException.class, () -> guard.call("test", StripeCallGuard.Kind.READ, null, options -> {
+				throw new InvalidRequestException("No such price", "price", "req_test", "resource_missing", 400, null);
+			}));
+		}
+		assertEquals(StripeCallGuard.CircuitState.CLOSED, guard.getCircuitState());
+	}
+
+	@Test
+	void fullBulkheadRejectsAndFreesItsPermitAfterwards() throws Exception {
+		CountDownLatch inside = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<String> holder = CompletableFuture.supplyAsync(() -> {
+			try {
+				return guard.call("test", StripeCallGuard.Kind.READ, null, options -> {
+					inside.countDown();
+					await(release);
+					return "held";
+				});
+			} catch (StripeException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		assertTrue(inside.await(5, TimeUnit.SECONDS));
+
+		StripeUnavailableException rejected = assertThrows(StripeUnavailableException.class,
+				() -> guard.call("test", StripeCallGuard.Kind.READ, null, options -> "ok"));
+		assertTrue(rejected.getMessage().contains("bulkhead_full"), rejected.getMessage());
+
+		release.countDown();
+		assertEquals("held", holder.get(5, TimeUnit.SECONDS));
+		assertEquals("ok", guard.call("test", StripeCallGuard.Kind.READ, null, options -> "ok"));
+		// A full bulkhead is backpressure, not a Stripe failure
+		assertEquals(StripeCallGuard.CircuitState.CLOSED, guard.getCircuitState());
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			assertTrue(latch.await(5, TimeUnit.SECONDS));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void openCircuit() {
+		failTransiently();
+		failTransiently();
+		assertEquals(StripeCallGuard.CircuitState.OPEN, guard.getCircuitState());
+	}
+
+	private void failTransiently() {
+		assertThrows(ApiConnectionException.class, () -> guard.call("test", StripeCallGuard.Kind.READ, null, options -> {
+			throw new ApiConnectionException("connection reset");
+		}));
+	}
+}
@@ -0,0 +1,108 @@
+package com.art.store.service;
+
+import com.art.store.entity.Order;
+import com.art.store.entity.Product;
+import com.art.store.repository.ProductRepository;
+import com.art.store.support.CheckoutRequests;
+import com.art.store.support.FakeStripeServer;
+import com.stripe.exception.StripeException;
+import com.stripe.model.checkout.Session;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The batched Product/Price sync against the fake Stripe server, and checkout falling back to
+ * inline prices when the registry still points at a Price that has been archived
+ */
+@SpringBootTest(properties = "app.stripe.price-sync.batch-size=3")
+@ActiveProfiles("test")
+class StripePriceSyncServiceTest {
+
+	private static final FakeStripeServer stripe = FakeStripeServer.start("whsec_price_sync_test");
+
+	@DynamicPropertySource
+	static void stripeProperties(DynamicPropertyRegistry registry) {
+		registry.add("stripe.api.base", stripe::baseUrl);
+	}
+
+	@Autowired
+	private StripePriceSyncService syncService;
+
+	@Autowired
+	private StripePriceRegistry priceRegistry;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private OrderService orderService;
+
+	@Autowired
+	private PaymentService paymentService;
+
+	@AfterAll
+	static void stopStripe() {
+		stripe.close();
+	}
+
+	@Test
+	void oneRunSyncsEveryBatch() {
+		syncService.syncPrices();
+
+		long active = productRepository.findAll().stream().filter(Product::getActive).count();
+		assertTrue(active > 3, "expected more seeded products than one batch");
+		assertTrue(productRepository.findNeedingStripeSync(PageRequest.of(0, 100)).isEmpty());
+		assertEquals(active, priceRegistry.size());
+
+		// Nothing left to sync, so a second run makes no Stripe calls
+		long requestsBefore = stripe.requestCount();
+		syncService.syncPrices();
+		assertEquals(requestsBefore, stripe.requestCount());
+	}
+
+	@Test
+	void priceChangeCreatesNewPriceAndArchivesOldOne() {
+		syncService.syncPrices();
+		Product product = productRepository.findAll().get(0);
+		String oldPriceId = product.getStripePriceId();
+		BigDecimal newPrice = product.getPrice().add(BigDecimal.ONE);
+		product.setPrice(newPrice);
+		productRepository.save(product);
+
+		syncService.syncPrices();
+
+		String newPriceId = productRepository.findById(product.getId()).orElseThrow().getStripePriceId();
+		assertNotEquals(oldPriceId, newPriceId);
+		assertFalse(stripe.isPriceActive(oldPriceId));
+		assertTrue(stripe.isPriceActive(newPriceId));
+		assertEquals(newPriceId, priceRegistry.priceIdFor(product.getId(), newPrice).orElseThrow());
+	}
+
+	@Test
+	void checkoutFallsBackToInlinePricesWhenSyncedPriceWasArchived() throws StripeException {
+		syncService.syncPrices();
+		List<Product> products = productRepository.findAll().subList(1, 3);
+		Order order = orderService.createOrder(CheckoutRequests.order(products));
+		String priceId = priceRegistry.priceIdFor(products.get(0).getId(), products.get(0).getPrice()).orElseThrow();
+
+		// Another instance's sync replaced the Price; this registry has not reloaded yet
+		stripe.archivePrice(priceId);
+
+		Session session = paymentService.createCheckoutSession(order);
+		assertEquals(order.getTotalAmount().movePointRight(2).longValueExact(), session.getAmountTotal());
+	}
+}
@@ -0,0 +1,60 @@
+package com.art.store.support;
+
+import com.art.store.dto.OrderRequestDto;
+import com.art.store.entity.Product;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Request bodies for driving checkout in tests
+ */
+public final class CheckoutRequests {
+
+	private CheckoutRequests() {
+	}
+
+	/** An order for one of each product */
+	public static OrderRequestDto order(List<Product> products) {
+		List<OrderRequestDto.CartItemDto> cart = new ArrayList<>();
+		BigDecimal total = BigDecimal.ZERO;
+		for (Product product : products) {
+			OrderRequestDto.CartItemDto item = new OrderRequestDto.CartItemDto();
+			item.setId(product.getId());
+			item.setName(product.getName());
+			item.setPrice(product.getPrice());
+			item.setQuantity(1);
+			cart.add(item);
+			total = total.add(product.getPrice());
+		}
+
+		OrderRequestDto.CustomerInfoDto customer = new OrderRequestDto.CustomerInfoDto();
+		customer.setEmail("buyer@example.com");
+		customer.setFirstName("Test");
+		customer.setLastName("Buyer");
+		customer.setAddress("1 Main St");
+		customer.setCity("Springfield");
+		customer.setState("OR");
+		customer.setZipCode("97477");
+		customer.setCountry("US");
+		customer.setSameAsBilling(true);
+
+		OrderRequestDto request = new OrderRequestDto();
+		request.setCart(cart);
+		request.setTotal(total);
+		request.setCustomerInfo(customer);
+		return request;
+	}
+
+	/** A webhook delivery as Stripe would post it */
+	public static HttpEntity<String> webhook(String payload, String signature) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		headers.set("Stripe-Signature", signature);
+		return new HttpEntity<>(payload, headers);
+	}
+}
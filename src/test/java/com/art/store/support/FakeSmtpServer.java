@@ -0,0 +1,172 @@
+package com.art.store.support;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process SMTP server that accepts just enough of the protocol for JavaMail to deliver
+ * to it. Records each accepted message's recipients, counts connections, and can inject
+ * per-message latency, refused connections and rejected recipients
+ */
+public class FakeSmtpServer implements AutoCloseable {
+
+	private final ServerSocket serverSocket;
+	private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+	private final List<List<String>> deliveries = new CopyOnWriteArrayList<>();
+	private final Set<String> rejectedRecipients = ConcurrentHashMap.newKeySet();
+	private final AtomicLong connectionCount = new AtomicLong();
+	private final AtomicInteger connectionsToRefuse = new AtomicInteger();
+
+	private volatile long latencyMillis;
+
+	private FakeSmtpServer() throws IOException {
+		this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		connections.submit(this::acceptLoop);
+	}
+
+	public static FakeSmtpServer start() {
+		try {
+			return new FakeSmtpServer();
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not start fake SMTP server", e);
+		}
+	}
+
+	public String host() {
+		return serverSocket.getInetAddress().getHostAddress();
+	}
+
+	public int port() {
+		return serverSocket.getLocalPort();
+	}
+
+	/** Delay the reply to every message body, as a remote relay would */
+	public void setLatency(long latencyMillis) {
+		this.latencyMillis = latencyMillis;
+	}
+
+	/** Answer RCPT TO for this address with a permanent 550 */
+	public void rejectRecipient(String address) {
+		rejectedRecipients.add(address.toLowerCase(Locale.ROOT));
+	}
+
+	/** Greet the next {@code count} connections with 421 and hang up */
+	public void refuseNextConnections(int count) {
+		connectionsToRefuse.set(count);
+	}
+
+	/** Recipients of each accepted message, in acceptance order */
+	public List<List<String>> deliveries() {
+		return List.copyOf(deliveries);
+	}
+
+	public int messageCount() {
+		return deliveries.size();
+	}
+
+	public long connectionCount() {
+		return connectionCount.get();
+	}
+
+	public void reset() {
+		deliveries.clear();
+		rejectedRecipients.clear();
+		connectionCount.set(0);
+		connectionsToRefuse.set(0);
+		latencyMillis = 0;
+	}
+
+	@Override
+	public void close() {
+		try {
+			serverSocket.close();
+		} catch (IOException ignored) {
+			// already closed
+		}
+		connections.shutdownNow();
+	}
+
+	private void acceptLoop() {
+		while (!serverSocket.isClosed()) {
+			try {
+				Socket socket = serverSocket.accept();
+				connections.submit(() -> session(socket));
+			} catch (IOException e) {
+				return;
+			}
+		}
+	}
+
+	private void session(Socket socket) {
+		connectionCount.incrementAndGet();
+		try (socket;
+			 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+			 OutputStream out = socket.getOutputStream()) {
+			if (connectionsToRefuse.getAndUpdate(n -> Math.max(n - 1, 0)) > 0) {
+				reply(out, "421 fake.smtp Service not available");
+				return;
+			}
+			reply(out, "220 fake.smtp ESMTP");
+
+			List<String> recipients = new CopyOnWriteArrayList<>();
+			String line;
+			while ((line = in.readLine()) != null) {
+				String command = line.toUpperCase(Locale.ROOT);
+				if (command.startsWith("EHLO") || command.startsWith("HELO")) {
+					reply(out, "250 fake.smtp");
+				} else if (command.startsWith("MAIL FROM")) {
+					recipients.clear();
+					reply(out, "250 OK");
+				} else if (command.startsWith("RCPT TO")) {
+					String address = line.substring(line.indexOf('<') + 1, line.lastIndexOf('>')).toLowerCase(Locale.ROOT);
+					if (rejectedRecipients.contains(address)) {
+						reply(out, "550 5.1.1 No such user");
+					} else {
+						recipients.add(address);
+						reply(out, "250 OK");
+					}
+				} else if (command.equals("DATA")) {
+					reply(out, "354 End data with <CR><LF>.<CR><LF>");
+					while ((line = in.readLine()) != null && !line.equals(".")) {
+						// message body is not kept
+					}
+					if (latencyMillis > 0) {
+						Thread.sleep(latencyMillis);
+					}
+					deliveries.add(List.copyOf(recipients));
+					reply(out, "250 OK queued");
+				} else if (command.equals("QUIT")) {
+					reply(out, "221 Bye");
+					return;
+				} else {
+					// RSET, NOOP and anything else
+					reply(out, "250 OK");
+				}
+			}
+		} catch (IOException e) {
+			// client went away
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void reply(OutputStream out, String line) throws IOException {
+		out.write((line + "\r\n").getBytes(StandardCharsets.US_ASCII));
+		out.flush();
+	}
+}
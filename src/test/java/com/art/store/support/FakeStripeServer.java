@@ -0,0 +1,397 @@
+package com.art.store.support;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.stripe.Stripe;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the parts of the Stripe API the store uses: PaymentIntent and
+ * Checkout Session create/retrieve, and Product and Price create/update. Latency and failures can be injected, and completed
+ * sessions and settled intents produce webhook payloads signed the way {@code Webhook.constructEvent} expects
+ */
+public class FakeStripeServer implements AutoCloseable {
+
+	private static final Gson GSON = new Gson();
+
+	private final HttpServer server;
+	private final String webhookSecret;
+	private final Map<String, JsonObject> paymentIntents = new ConcurrentHashMap<>();
+	private final Map<String, JsonObject> sessions = new ConcurrentHashMap<>();
+	private final Map<String, JsonObject> products = new ConcurrentHashMap<>();
+	private final Map<String, JsonObject> prices = new ConcurrentHashMap<>();
+	private final Map<String, String> idempotentResponses = new ConcurrentHashMap<>();
+	private final AtomicLong ids = new AtomicLong();
+	private final AtomicLong requests = new AtomicLong();
+
+	private volatile long latencyMillis;
+	private volatile long latencyJitterMillis;
+	private volatile double errorRate;
+
+	private FakeStripeServer(String webhookSecret) throws IOException {
+		this.webhookSecret = webhookSecret;
+		this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		this.server.createContext("/v1/payment_intents", exchange -> handle(exchange, paymentIntents, "pi", this::newPaymentIntent));
+		this.server.createContext("/v1/checkout/sessions", exchange -> handle(exchange, sessions, "cs_test", this::newSession));
+		this.server.createContext("/v1/products", exchange -> handle(exchange, products, "prod", this::newProduct));
+		this.server.createContext("/v1/prices", exchange -> handle(exchange, prices, "price", this::newPrice));
+		this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+		this.server.start();
+	}
+
+	public static FakeStripeServer start(String webhookSecret) {
+		try {
+			return new FakeStripeServer(webhookSecret);
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not start fake Stripe server", e);
+		}
+	}
+
+	public String baseUrl() {
+		return "http://localhost:" + server.getAddress().getPort();
+	}
+
+	/** Delay every response by {@code latencyMillis} plus up to {@code jitterMillis} */
+	public void setLatency(long latencyMillis, long jitterMillis) {
+		this.latencyMillis = latencyMillis;
+		this.latencyJitterMillis = jitterMillis;
+	}
+
+	/** Fraction of requests, from 0 to 1, answered with a 500 api_error */
+	public void setErrorRate(double errorRate) {
+		this.errorRate = errorRate;
+	}
+
+	public long requestCount() {
+		return requests.get();
+	}
+
+	/**
+	 * Mark the session as paid and return the matching checkout.session.completed event
+	 * payload, ready to be posted to the webhook endpoint with {@link #signatureFor(String)}
+	 */
+	public String completeCheckoutSession(String sessionId) {
+		JsonObject session = sessions.get(sessionId);
+		if (session == null) {
+			throw new IllegalArgumentException("Unknown session: " + sessionId);
+		}
+		JsonObject paymentIntent = newPaymentIntent("pi_" + ids.incrementAndGet(), Map.of(
+				"amount", session.get("amount_total").getAsString(),
+				"currency", session.get("currency").getAsString()));
+		paymentIntent.addProperty("status", "succeeded");
+		paymentIntent.add("metadata", session.getAsJsonObject("metadata").deepCopy());
+		paymentIntents.put(paymentIntent.get("id").getAsString(), paymentIntent);
+
+		session.addProperty("status", "complete");
+		session.addProperty("payment_status", "paid");
+		session.addProperty("payment_intent", paymentIntent.get("id").getAsString());
+		return event("checkout.session.completed", session);
+	}
+
+	/** An intent created directly on the account, with no order metadata; returns its id */
+	public String createPaymentIntent(long amountInCents) {
+		JsonObject paymentIntent = newPaymentIntent("pi_" + ids.incrementAndGet(), Map.of("amount", Long.toString(amountInCents)));
+		paymentIntents.put(paymentIntent.get("id").getAsString(), paymentIntent);
+		return paymentIntent.get("id").getAsString();
+	}
+
+	/** Mark the intent as paid and return the matching payment_intent.succeeded event payload */
+	public String succeedPaymentIntent(String paymentIntentId) {
+		JsonObject paymentIntent = paymentIntent(paymentIntentId);
+		paymentIntent.addProperty("status", "succeeded");
+		return event("payment_intent.succeeded", paymentIntent);
+	}
+
+	/** Move the intent to processing and return the matching payment_intent.processing event payload */
+	public String processPaymentIntent(String paymentIntentId) {
+		JsonObject paymentIntent = paymentIntent(paymentIntentId);
+		paymentIntent.addProperty("status", "processing");
+		return event("payment_intent.processing", paymentIntent);
+	}
+
+	/** Decline the intent's payment and return the matching payment_intent.payment_failed event payload */
+	public String failPaymentIntent(String paymentIntentId, String declineMessage) {
+		JsonObject paymentIntent = paymentIntent(paymentIntentId);
+		JsonObject error = new JsonObject();
+		error.addProperty("type", "card_error");
+		error.addProperty("code", "card_declined");
+		error.addProperty("message", declineMessage);
+		paymentIntent.add("last_payment_error", error);
+		paymentIntent.addProperty("status", "requires_payment_method");
+		return event("payment_intent.payment_failed", paymentIntent);
+	}
+
+	/** Deactivate a Price, as another instance's price sync would */
+	public void archivePrice(String priceId) {
+		JsonObject price = prices.get(priceId);
+		if (price == null) {
+			throw new IllegalArgumentException("Unknown price: " + priceId);
+		}
+		price.addProperty("active", false);
+	}
+
+	public boolean isPriceActive(String priceId) {
+		JsonObject price = prices.get(priceId);
+		return price != null && price.get("active").getAsBoolean();
+	}
+
+	public int priceCount() {
+		return prices.size();
+	}
+
+	/** Stripe-Signature header value for the payload, signed with the webhook secret */
+	public String signatureFor(String payload) {
+		long timestamp = System.currentTimeMillis() / 1000;
+		try {
+			Mac mac = Mac.getInstance("HmacSHA256");
+			mac.init(new SecretKeySpec(webhookSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+			byte[] signature = mac.doFinal((timestamp + "." + payload).getBytes(StandardCharsets.UTF_8));
+			return "t=" + timestamp + ",v1=" + HexFormat.of().formatHex(signature);
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+	}
+
+	private JsonObject paymentIntent(String paymentIntentId) {
+		JsonObject paymentIntent = paymentIntents.get(paymentIntentId);
+		if (paymentIntent == null) {
+			throw new IllegalArgumentException("Unknown payment intent: " + paymentIntentId);
+		}
+		return paymentIntent;
+	}
+
+	private interface ObjectFactory {
+		JsonObject create(String id, Map<String, String> form);
+	}
+
+	/** A 400 invalid_request_error naming the offending param, as Stripe reports it */
+	private static final class InvalidRequest extends RuntimeException {
+		private final String param;
+
+		private InvalidRequest(String message, String param) {
+			super(message);
+			this.param = param;
+		}
+	}
+
+	private void handle(HttpExchange exchange, Map<String, JsonObject> store, String idPrefix, ObjectFactory factory) throws IOException {
+		requests.incrementAndGet();
+		try (exchange) {
+			delay();
+			if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+				respond(exchange, 500, "{\"error\":{\"type\":\"api_error\",\"message\":\"Injected failure\"}}");
+				return;
+			}
+
+			String path = exchange.getRequestURI().getPath();
+			String base = exchange.getHttpContext().getPath();
+			if ("POST".equals(exchange.getRequestMethod()) && path.equals(base)) {
+				String idempotencyKey = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+				if (idempotencyKey != null && idempotentResponses.containsKey(idempotencyKey)) {
+					respond(exchange, 200, idempotentResponses.get(idempotencyKey));
+					return;
+				}
+				String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+				JsonObject created;
+				try {
+					created = factory.create(idPrefix + "_" + ids.incrementAndGet(), parseForm(body));
+				} catch (InvalidRequest e) {
+					JsonObject error = new JsonObject();
+					error.addProperty("type", "invalid_request_error");
+					error.addProperty("message", e.getMessage());
+					error.addProperty("param", e.param);
+					JsonObject response = new JsonObject();
+					response.add("error", error);
+					respond(exchange, 400, GSON.toJson(response));
+					return;
+				}
+				store.put(created.get("id").getAsString(), created);
+				String json = GSON.toJson(created);
+				if (idempotencyKey != null) {
+					idempotentResponses.put(idempotencyKey, json);
+				}
+				respond(exchange, 200, json);
+			} else if ("POST".equals(exchange.getRequestMethod()) && path.startsWith(base + "/")) {
+				JsonObject object = store.get(path.substring(base.length() + 1));
+				if (object == null) {
+					respond(exchange, 404, "{\"error\":{\"type\":\"invalid_request_error\",\"message\":\"No such object\"}}");
+					return;
+				}
+				parseForm(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)).forEach((key, value) -> {
+					if (value.equals("true") || value.equals("false")) {
+						object.addProperty(key, Boolean.parseBoolean(value));
+					} else if (!key.contains("[")) {
+						object.addProperty(key, value);
+					}
+				});
+				respond(exchange, 200, GSON.toJson(object));
+			} else if ("GET".equals(exchange.getRequestMethod()) && path.startsWith(base + "/")) {
+				JsonObject object = store.get(path.substring(base.length() + 1));
+				if (object == null) {
+					respond(exchange, 404, "{\"error\":{\"type\":\"invalid_request_error\",\"message\":\"No such object\"}}");
+				} else {
+					respond(exchange, 200, GSON.toJson(object));
+				}
+			} else {
+				respond(exchange, 404, "{\"error\":{\"type\":\"invalid_request_error\",\"message\":\"Unrecognized request URL\"}}");
+			}
+		}
+	}
+
+	private JsonObject newPaymentIntent(String id, Map<String, String> form) {
+		JsonObject paymentIntent = new JsonObject();
+		paymentIntent.addProperty("id", id);
+		paymentIntent.addProperty("object", "payment_intent");
+		paymentIntent.addProperty("amount", Long.parseLong(form.getOrDefault("amount", "0")));
+		paymentIntent.addProperty("currency", form.getOrDefault("currency", "usd"));
+		paymentIntent.addProperty("status", "requires_payment_method");
+		paymentIntent.addProperty("client_secret", id + "_secret_" + ids.incrementAndGet());
+		paymentIntent.addProperty("receipt_email", form.get("receipt_email"));
+		paymentIntent.add("metadata", metadata(form, "metadata"));
+		paymentIntent.addProperty("livemode", false);
+		return paymentIntent;
+	}
+
+	private JsonObject newSession(String id, Map<String, String> form) {
+		long amountTotal = 0;
+		for (int i = 0; form.containsKey("line_items[" + i + "][quantity]"); i++) {
+			long quantity = Long.parseLong(form.get("line_items[" + i + "][quantity]"));
+			long unitAmount = Long.parseLong(form.getOrDefault("line_items[" + i + "][price_data][unit_amount]", "0"));
+			String priceId = form.get("line_items[" + i + "][price]");
+			if (priceId != null) {
+				JsonObject price = prices.get(priceId);
+				if (price == null || !price.get("active").getAsBoolean()) {
+					throw new InvalidRequest("The price specified is inactive. This field only accepts active prices.",
+							"line_items[" + i + "][price]");
+				}
+				unitAmount = price.get("unit_amount").getAsLong();
+			}
+			amountTotal += quantity * unitAmount;
+		}
+
+		JsonObject session = new JsonObject();
+		session.addProperty("id", id);
+		session.addProperty("object", "checkout.session");
+		session.addProperty("mode", "payment");
+		session.addProperty("status", "open");
+		session.addProperty("payment_status", "unpaid");
+		session.addProperty("amount_total", amountTotal);
+		session.addProperty("currency", "usd");
+		session.addProperty("customer_email", form.get("customer_email"));
+		session.addProperty("success_url", form.get("success_url"));
+		session.addProperty("cancel_url", form.get("cancel_url"));
+		session.addProperty("url", baseUrl() + "/pay/" + id);
+		session.add("metadata", metadata(form, "metadata"));
+		session.addProperty("livemode", false);
+		return session;
+	}
+
+	private JsonObject newProduct(String id, Map<String, String> form) {
+		JsonObject product = new JsonObject();
+		product.addProperty("id", id);
+		product.addProperty("object", "product");
+		product.addProperty("name", form.get("name"));
+		product.addProperty("active", true);
+		product.add("metadata", metadata(form, "metadata"));
+		product.addProperty("livemode", false);
+		return product;
+	}
+
+	private JsonObject newPrice(String id, Map<String, String> form) {
+		JsonObject price = new JsonObject();
+		price.addProperty("id", id);
+		price.addProperty("object", "price");
+		price.addProperty("product", form.get("product"));
+		price.addProperty("unit_amount", Long.parseLong(form.getOrDefault("unit_amount", "0")));
+		price.addProperty("currency", form.getOrDefault("currency", "usd"));
+		price.addProperty("active", true);
+		price.addProperty("livemode", false);
+		return price;
+	}
+
+	private String event(String type, JsonObject object) {
+		// "id" first, as Stripe sends it
+		JsonObject event = new JsonObject();
+		event.addProperty("id", "evt_" + ids.incrementAndGet());
+		event.addProperty("object", "event");
+		event.addProperty("api_version", Stripe.API_VERSION);
+		event.addProperty("created", System.currentTimeMillis() / 1000);
+		event.addProperty("type", type);
+		event.addProperty("livemode", false);
+		event.addProperty("pending_webhooks", 1);
+		JsonObject data = new JsonObject();
+		data.add("object", object.deepCopy());
+		event.add("data", data);
+		return GSON.toJson(event);
+	}
+
+	private static JsonObject metadata(Map<String, String> form, String prefix) {
+		JsonObject metadata = new JsonObject();
+		form.forEach((key, value) -> {
+			if (key.startsWith(prefix + "[") && key.endsWith("]")) {
+				metadata.addProperty(key.substring(prefix.length() + 1, key.length() - 1), value);
+			}
+		});
+		return metadata;
+	}
+
+	private static Map<String, String> parseForm(String body) {
+		Map<String, String> form = new LinkedHashMap<>();
+		for (String pair : body.split("&")) {
+			if (pair.isEmpty()) {
+				continue;
+			}
+			int split = pair.indexOf('=');
+			String key = URLDecoder.decode(split < 0 ? pair : pair.substring(0, split), StandardCharsets.UTF_8);
+			String value = split < 0 ? "" : URLDecoder.decode(pair.substring(split + 1), StandardCharsets.UTF_8);
+			form.put(key, value);
+		}
+		return form;
+	}
+
+	private void delay() {
+		long millis = latencyMillis;
+		if (latencyJitterMillis > 0) {
+			millis += ThreadLocalRandom.current().nextLong(latencyJitterMillis + 1);
+		}
+		if (millis > 0) {
+			try {
+				Thread.sleep(millis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+		byte[] body = json.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.getResponseHeaders().set("Request-Id", "req_fake_" + System.nanoTime());
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+}
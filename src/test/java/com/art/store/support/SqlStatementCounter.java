@@ -0,0 +1,75 @@
+package com.art.store.support;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the SQL statements Hibernate prepares. With JDBC batching a batch is
+ * prepared once, so a batched insert counts as a single statement. Sequence
+ * calls for pooled ids are counted separately: when the next block is fetched
+ * depends on every earlier insert in the test context, not on the code under test.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final AtomicLong SELECTS = new AtomicLong();
+    private static final AtomicLong INSERTS = new AtomicLong();
+    private static final AtomicLong UPDATES = new AtomicLong();
+    private static final AtomicLong DELETES = new AtomicLong();
+    private static final AtomicLong SEQUENCE_CALLS = new AtomicLong();
+
+    @Override
+    public String inspect(String sql) {
+        String statement = sql.stripLeading().toLowerCase(Locale.ROOT);
+        if (isSequenceCall(statement)) {
+            SEQUENCE_CALLS.incrementAndGet();
+        } else if (statement.startsWith("select") || statement.startsWith("with")) {
+            SELECTS.incrementAndGet();
+        } else if (statement.startsWith("insert")) {
+            INSERTS.incrementAndGet();
+        } else if (statement.startsWith("update")) {
+            UPDATES.incrementAndGet();
+        } else if (statement.startsWith("delete")) {
+            DELETES.incrementAndGet();
+        }
+        return sql;
+    }
+
+    public static void reset() {
+        SELECTS.set(0);
+        INSERTS.set(0);
+        UPDATES.set(0);
+        DELETES.set(0);
+        SEQUENCE_CALLS.set(0);
+    }
+
+    public static long selects() {
+        return SELECTS.get();
+    }
+
+    public static long inserts() {
+        return INSERTS.get();
+    }
+
+    public static long updates() {
+        return UPDATES.get();
+    }
+
+    public static long deletes() {
+        return DELETES.get();
+    }
+
+    public static long sequenceCalls() {
+        return SEQUENCE_CALLS.get();
+    }
+
+    public static long total() {
+        return selects() + inserts() + updates() + deletes();
+    }
+
+    // H2 renders "next value for seq", Postgres "nextval('seq')"
+    private static boolean isSequenceCall(String statement) {
+        return statement.startsWith("select") && (statement.contains("next value for") || statement.contains("nextval("));
+    }
+}